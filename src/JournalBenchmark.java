@@ -0,0 +1,112 @@
+import com.oriomri.taskmanager.dao.ITasksDAO;
+import com.oriomri.taskmanager.dao.JournalTasksDAO;
+import com.oriomri.taskmanager.dao.TasksDAO;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark comparing the insert and update throughput of the journal DAO
+ * with the Derby DAO.
+ * Usage: java JournalBenchmark [taskCount]
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class JournalBenchmark {
+    
+    //private variables declaration
+    private static final int DEFAULT_TASK_COUNT = 10000;
+    private static final int BATCH_SIZE = 500;
+    
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASK_COUNT;
+        System.out.println("🚀 Journal vs Derby benchmark with " + taskCount + " tasks...\n");
+        
+        try {
+            Path directory = Files.createTempDirectory("journal-benchmark");
+            Path unsynced = directory.resolve("unsynced.journal");
+            Path synced = directory.resolve("synced.journal");
+            
+            JournalTasksDAO journal = new JournalTasksDAO(unsynced, false);
+            run("Journal (no sync)", journal, taskCount);
+            journal.close();
+            
+            journal = new JournalTasksDAO(synced, true);
+            run("Journal (sync every call)", journal, taskCount);
+            journal.close();
+            
+            TasksDAO derby = TasksDAO.openDatabase("benchdb");
+            derby.deleteTasks();
+            run("Derby", derby, taskCount);
+            derby.deleteTasks();
+            derby.closeConnection();
+            
+            Files.deleteIfExists(unsynced);
+            Files.deleteIfExists(synced);
+            Files.deleteIfExists(directory);
+            System.out.println("\n🎉 Benchmark finished");
+        } catch (TaskManagerException | IOException e) {
+            System.err.println("❌ Benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Measures single-row inserts, single-row updates and batched inserts on one DAO.
+     * 
+     * @param name the name printed for the DAO
+     * @param dao the empty DAO to measure
+     * @param taskCount the number of tasks per measurement
+     * @throws TaskManagerException if the DAO fails
+     */
+    private static void run(String name, ITasksDAO dao, int taskCount) throws TaskManagerException {
+        System.out.println("📋 " + name);
+        
+        long start = System.nanoTime();
+        for (int id = 1; id <= taskCount; id++) {
+            dao.addTask(new Task(id, "Task " + id, "Description of task " + id));
+        }
+        report("inserts", taskCount, start);
+        
+        start = System.nanoTime();
+        for (int id = 1; id <= taskCount; id++) {
+            dao.updateTask(new Task(id, "Task " + id, "Updated task " + id, TaskState.IN_PROGRESS));
+        }
+        report("updates", taskCount, start);
+        
+        start = System.nanoTime();
+        for (int first = 1; first <= taskCount; first += BATCH_SIZE) {
+            int size = Math.min(BATCH_SIZE, taskCount - first + 1);
+            ITask[] batch = new ITask[size];
+            for (int i = 0; i < size; i++) {
+                int id = taskCount + first + i;
+                batch[i] = new Task(id, "Task " + id, "Description of task " + id);
+            }
+            dao.addTasks(batch);
+        }
+        report("batched inserts (" + BATCH_SIZE + " per batch)", taskCount, start);
+        
+        if (dao.countTasks() != 2 * taskCount) {
+            System.out.println("❌ Expected " + (2 * taskCount) + " tasks, found " + dao.countTasks());
+        }
+    }
+    
+    /**
+     * Prints the throughput of a measurement.
+     * 
+     * @param operation the measured operation
+     * @param count the number of operations
+     * @param startNanos the start time of the measurement
+     */
+    private static void report(String operation, int count, long startNanos) {
+        long millis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+        System.out.println(String.format("   ✅ %,d %s in %,d ms (%,d ops/s)",
+                count, operation, millis, count * 1000L / millis));
+    }
+}
@@ -0,0 +1,154 @@
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.search.SearchHit;
+import com.oriomri.taskmanager.search.TaskSearchIndex;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Benchmark measuring keyword search on the inverted index against scanning every
+ * task with String.contains. Titles and descriptions are drawn from a generated
+ * vocabulary with a skewed word frequency, so queries range from very common to rare words.
+ * Usage: java SearchBenchmark [taskCount]
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SearchBenchmark {
+    
+    //private variables declaration
+    private static final int DEFAULT_TASK_COUNT = 1000000;
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final int TITLE_WORDS = 3;
+    private static final int DESCRIPTION_WORDS = 8;
+    private static final int UPDATE_COUNT = 100000;
+    private static final int SEARCH_ROUNDS = 200;
+    private static final int SCAN_ROUNDS = 3;
+    private static final int LIMIT = 10;
+    
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASK_COUNT;
+        System.out.println("🚀 Search benchmark with " + taskCount + " tasks...\n");
+        
+        Random random = new Random(42);
+        ITask[] tasks = new ITask[taskCount];
+        for (int i = 0; i < taskCount; i++) {
+            tasks[i] = new Task(i + 1, words(random, TITLE_WORDS), words(random, DESCRIPTION_WORDS));
+        }
+        
+        System.out.println("📋 Building the index");
+        TaskSearchIndex index = new TaskSearchIndex();
+        long start = System.nanoTime();
+        index.indexAll(tasks);
+        long millis = (System.nanoTime() - start) / 1000000;
+        System.out.println(String.format("   ✅ indexed %,d tasks (%,d words) in %,d ms",
+                index.size(), index.getTermCount(), millis));
+        
+        start = System.nanoTime();
+        for (int i = 0; i < UPDATE_COUNT; i++) {
+            int id = random.nextInt(taskCount) + 1;
+            ITask updated = new Task(id, words(random, TITLE_WORDS), words(random, DESCRIPTION_WORDS));
+            tasks[id - 1] = updated;
+            index.onTaskUpdated(updated);
+        }
+        millis = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println(String.format("   ✅ %,d incremental updates in %,d ms (%,d updates/s)",
+                UPDATE_COUNT, millis, UPDATE_COUNT * 1000L / millis));
+        
+        System.out.println("\n📋 Ranked search, top " + LIMIT);
+        String[] queries = {
+            word(0), word(50), word(2000), word(VOCABULARY_SIZE / 2),
+            word(50) + " " + word(2000), word(300) + " " + word(5000) + " " + word(15000)
+        };
+        for (String query : queries) {
+            timeSearch(index, query);
+        }
+        
+        System.out.println("\n📋 Scan with String.contains");
+        for (String query : new String[] {word(2000), word(VOCABULARY_SIZE / 2)}) {
+            timeScan(tasks, query);
+        }
+        System.out.println("\n🎉 Benchmark finished");
+    }
+    
+    /**
+     * Times ranked and all-words searches for one query.
+     * 
+     * @param index the index to search
+     * @param query the query
+     */
+    private static void timeSearch(TaskSearchIndex index, String query) {
+        SearchHit[] hits = index.search(query, LIMIT);
+        int matches = index.searchAll(query).length;
+        long start = System.nanoTime();
+        for (int i = 0; i < SEARCH_ROUNDS; i++) {
+            hits = index.search(query, LIMIT);
+        }
+        double rankedMicros = (System.nanoTime() - start) / 1000.0 / SEARCH_ROUNDS;
+        start = System.nanoTime();
+        for (int i = 0; i < SEARCH_ROUNDS; i++) {
+            matches = index.searchAll(query).length;
+        }
+        double allMicros = (System.nanoTime() - start) / 1000.0 / SEARCH_ROUNDS;
+        System.out.println(String.format("   ✅ \"%s\": ranked %,.1f us (%d hits), all words %,.1f us (%,d matches)",
+                query, rankedMicros, hits.length, allMicros, matches));
+    }
+    
+    /**
+     * Times scanning every task for a word, as done without the index.
+     * 
+     * @param tasks the tasks to scan
+     * @param query the word to look for
+     */
+    private static void timeScan(ITask[] tasks, String query) {
+        int matches = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < SCAN_ROUNDS; round++) {
+            matches = 0;
+            for (ITask task : tasks) {
+                if (task.getTitle().toLowerCase(Locale.ROOT).contains(query)
+                        || task.getDescription().toLowerCase(Locale.ROOT).contains(query)) {
+                    matches++;
+                }
+            }
+        }
+        double millis = (System.nanoTime() - start) / 1000000.0 / SCAN_ROUNDS;
+        System.out.println(String.format("   ✅ \"%s\": scan %,.1f ms (%,d substring matches)", query, millis, matches));
+    }
+    
+    /**
+     * Generates text of random vocabulary words. Word ranks are log-uniform,
+     * so a few words are very common and most are rare.
+     * 
+     * @param random the random source
+     * @param count the number of words
+     * @return the words separated by spaces
+     */
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word((int) Math.pow(VOCABULARY_SIZE, random.nextDouble()) - 1));
+        }
+        return text.toString();
+    }
+    
+    /**
+     * Spells the vocabulary word of a rank in letters only, so it is one index word.
+     * 
+     * @param rank the word rank, 0 for the most common word
+     * @return the word
+     */
+    private static String word(int rank) {
+        StringBuilder word = new StringBuilder("w");
+        int value = rank;
+        do {
+            word.append((char) ('a' + value % 26));
+            value /= 26;
+        } while (value > 0);
+        return word.toString();
+    }
+}
@@ -0,0 +1,129 @@
+import com.oriomri.taskmanager.dao.ShardedTasksDAO;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Benchmark measuring write throughput of the sharded Derby DAO against the shard count.
+ * Single-row inserts come from several writer threads at once; batched inserts come
+ * from one thread and are split across the shards by the DAO.
+ * Usage: java ShardBenchmark [taskCount] [writerThreads] [shardCount...]
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class ShardBenchmark {
+    
+    //private variables declaration
+    private static final int DEFAULT_TASK_COUNT = 8000;
+    private static final int DEFAULT_WRITER_THREADS = 8;
+    private static final int[] DEFAULT_SHARD_COUNTS = {1, 2, 4, 8};
+    private static final int BATCH_SIZE = 500;
+    
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASK_COUNT;
+        int writerThreads = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WRITER_THREADS;
+        int[] shardCounts = DEFAULT_SHARD_COUNTS;
+        if (args.length > 2) {
+            shardCounts = new int[args.length - 2];
+            for (int i = 2; i < args.length; i++) {
+                shardCounts[i - 2] = Integer.parseInt(args[i]);
+            }
+        }
+        System.out.println("🚀 Shard benchmark with " + taskCount + " tasks and "
+                + writerThreads + " writer threads...\n");
+        
+        try {
+            //a first pass over every shard count pays for class loading, JIT compilation
+            //and database creation, so the measured pass does not depend on the order
+            System.out.println("🔥 Warm-up pass (not measured)");
+            for (int shardCount : shardCounts) {
+                run(shardCount, taskCount, writerThreads);
+            }
+            System.out.println("\n📊 Measured pass");
+            for (int shardCount : shardCounts) {
+                run(shardCount, taskCount, writerThreads);
+            }
+            System.out.println("\n🎉 Benchmark finished");
+        } catch (TaskManagerException | InterruptedException | ExecutionException e) {
+            System.err.println("❌ Benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Measures concurrent single-row inserts and batched inserts on one shard count.
+     * 
+     * @param shardCount the number of shard databases
+     * @param taskCount the number of tasks per measurement
+     * @param writerThreads the number of threads doing single-row inserts
+     * @throws TaskManagerException if the DAO fails
+     * @throws InterruptedException if interrupted while waiting for the writers
+     * @throws ExecutionException if a writer fails
+     */
+    private static void run(int shardCount, int taskCount, int writerThreads)
+            throws TaskManagerException, InterruptedException, ExecutionException {
+        System.out.println("📋 " + shardCount + (shardCount == 1 ? " shard" : " shards"));
+        ShardedTasksDAO dao = ShardedTasksDAO.openDerbyShards("benchshards" + shardCount, shardCount);
+        ExecutorService writers = Executors.newFixedThreadPool(writerThreads);
+        try {
+            dao.deleteTasks();
+            
+            long start = System.nanoTime();
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < writerThreads; t++) {
+                int writer = t;
+                futures.add(writers.submit(() -> {
+                    for (int id = writer + 1; id <= taskCount; id += writerThreads) {
+                        dao.addTask(new Task(id, "Task " + id, "Description of task " + id));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+            report("concurrent inserts", taskCount, start);
+            
+            start = System.nanoTime();
+            for (int first = 1; first <= taskCount; first += BATCH_SIZE) {
+                int size = Math.min(BATCH_SIZE, taskCount - first + 1);
+                ITask[] batch = new ITask[size];
+                for (int i = 0; i < size; i++) {
+                    int id = taskCount + first + i;
+                    batch[i] = new Task(id, "Task " + id, "Description of task " + id);
+                }
+                dao.addTasks(batch);
+            }
+            report("batched inserts (" + BATCH_SIZE + " per batch)", taskCount, start);
+            
+            if (dao.countTasks() != 2 * taskCount) {
+                System.out.println("❌ Expected " + (2 * taskCount) + " tasks, found " + dao.countTasks());
+            }
+            dao.deleteTasks();
+        } finally {
+            writers.shutdown();
+            dao.close();
+        }
+    }
+    
+    /**
+     * Prints the throughput of a measurement.
+     * 
+     * @param operation the measured operation
+     * @param count the number of operations
+     * @param startNanos the start time of the measurement
+     */
+    private static void report(String operation, int count, long startNanos) {
+        long millis = Math.max(1, (System.nanoTime() - startNanos) / 1000000);
+        System.out.println(String.format("   ✅ %,d %s in %,d ms (%,d ops/s)",
+                count, operation, millis, count * 1000L / millis));
+    }
+}
@@ -0,0 +1,126 @@
+import com.oriomri.taskmanager.dao.BatchResult;
+import com.oriomri.taskmanager.dao.ITasksDAO;
+import com.oriomri.taskmanager.dao.InMemoryTasksDAO;
+import com.oriomri.taskmanager.dao.TaskSnapshot;
+import com.oriomri.taskmanager.dao.TasksDAO;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark timing binary snapshot export and import, in memory for the full
+ * task set and through Derby for a smaller one.
+ * Usage: java SnapshotBenchmark [taskCount] [derbyTaskCount]
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SnapshotBenchmark {
+    
+    //private variables declaration
+    private static final int DEFAULT_TASK_COUNT = 1000000;
+    private static final int DEFAULT_DERBY_TASK_COUNT = 100000;
+    private static final int BATCH_SIZE = 10000;
+    
+    public static void main(String[] args) {
+        int taskCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TASK_COUNT;
+        int derbyTaskCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_DERBY_TASK_COUNT;
+        System.out.println("🚀 Snapshot benchmark with " + taskCount + " tasks in memory and "
+                + derbyTaskCount + " tasks in Derby...\n");
+        
+        try {
+            Path directory = Files.createTempDirectory("snapshot-benchmark");
+            Path file = directory.resolve("tasks.snapshot");
+            Path derbyFile = directory.resolve("derby.snapshot");
+            
+            System.out.println("📋 In-memory store");
+            InMemoryTasksDAO memory = new InMemoryTasksDAO();
+            fill(memory, taskCount);
+            
+            long start = System.nanoTime();
+            long exported = TaskSnapshot.exportTasks(memory, file);
+            report("exported " + exported + " tasks (" + Files.size(file) / (1024 * 1024) + " MB)", start);
+            
+            start = System.nanoTime();
+            long verified = TaskSnapshot.verify(file);
+            report("verified " + verified + " tasks", start);
+            
+            memory = null;
+            start = System.nanoTime();
+            InMemoryTasksDAO loaded = TaskSnapshot.loadInMemory(file);
+            report("loaded " + loaded.countTasks() + " tasks into a new in-memory store", start);
+            loaded = null;
+            
+            System.out.println("\n📋 Derby");
+            InMemoryTasksDAO source = new InMemoryTasksDAO();
+            fill(source, derbyTaskCount);
+            TaskSnapshot.exportTasks(source, derbyFile);
+            source = null;
+            
+            TasksDAO derby = TasksDAO.openDatabase("benchdb");
+            derby.deleteTasks();
+            start = System.nanoTime();
+            BatchResult result = TaskSnapshot.importTasks(derbyFile, derby);
+            report("imported " + result.getSucceededIds().length + " tasks into Derby", start);
+            
+            start = System.nanoTime();
+            ITask[] all = derby.getTasks();
+            report("read " + all.length + " tasks with getTasks()", start);
+            all = null;
+            
+            start = System.nanoTime();
+            exported = TaskSnapshot.exportTasks(derby, derbyFile);
+            report("exported " + exported + " tasks from Derby", start);
+            
+            start = System.nanoTime();
+            loaded = TaskSnapshot.loadInMemory(derbyFile);
+            report("loaded " + loaded.countTasks() + " tasks into memory without booting Derby", start);
+            
+            derby.deleteTasks();
+            derby.closeConnection();
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(derbyFile);
+            Files.deleteIfExists(directory);
+            System.out.println("\n🎉 Benchmark finished");
+        } catch (TaskManagerException | IOException e) {
+            System.err.println("❌ Benchmark failed: " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Adds generated tasks to a DAO in batches.
+     * 
+     * @param dao the DAO to fill
+     * @param taskCount the number of tasks to add
+     * @throws TaskManagerException if adding fails
+     */
+    private static void fill(ITasksDAO dao, int taskCount) throws TaskManagerException {
+        TaskState[] states = TaskState.values();
+        for (int first = 1; first <= taskCount; first += BATCH_SIZE) {
+            int size = Math.min(BATCH_SIZE, taskCount - first + 1);
+            ITask[] batch = new ITask[size];
+            for (int i = 0; i < size; i++) {
+                int id = first + i;
+                batch[i] = new Task(id, "Task " + id, "Description of task number " + id, states[id % states.length]);
+            }
+            dao.addTasks(batch);
+        }
+    }
+    
+    /**
+     * Prints the duration of a measurement.
+     * 
+     * @param what the measured step
+     * @param startNanos the start time of the measurement
+     */
+    private static void report(String what, long startNanos) {
+        long millis = (System.nanoTime() - startNanos) / 1000000;
+        System.out.println(String.format("   ✅ %s in %,d ms", what, millis));
+    }
+}
@@ -0,0 +1,143 @@
+package com.oriomri.taskmanager.dao;
+
+import java.util.Arrays;
+
+/**
+ * Result of a batch mutation on the tasks table.
+ * Records, for every row of the batch in input order, whether it was applied.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class BatchResult {
+    
+    //private variables declaration
+    private final int[] ids;
+    private final boolean[] failed;
+    private final int failureCount;
+    
+    /**
+     * Constructs a batch result.
+     * 
+     * @param ids the task IDs of the batch rows in input order
+     * @param failed for each row, whether it failed to apply
+     */
+    public BatchResult(int[] ids, boolean[] failed) {
+        if (ids == null || failed == null || ids.length != failed.length) {
+            throw new IllegalArgumentException("IDs and failure flags must be non-null and of equal length");
+        }
+        this.ids = Arrays.copyOf(ids, ids.length);
+        this.failed = Arrays.copyOf(failed, failed.length);
+        
+        int count = 0;
+        for (boolean rowFailed : failed) {
+            if (rowFailed) {
+                count++;
+            }
+        }
+        this.failureCount = count;
+    }
+    
+    /**
+     * Gets the number of rows in the batch.
+     * 
+     * @return the batch size
+     */
+    public int size() {
+        return ids.length;
+    }
+    
+    /**
+     * Gets the task ID of the row at the given position.
+     * 
+     * @param index the position of the row in the batch
+     * @return the task ID of the row
+     */
+    public int getId(int index) {
+        return ids[index];
+    }
+    
+    /**
+     * Checks whether the row at the given position was applied.
+     * 
+     * @param index the position of the row in the batch
+     * @return true if the row was applied, false if it failed
+     */
+    public boolean isSucceeded(int index) {
+        return !failed[index];
+    }
+    
+    /**
+     * Gets the number of rows that were applied.
+     * 
+     * @return the number of successful rows
+     */
+    public int getSuccessCount() {
+        return ids.length - failureCount;
+    }
+    
+    /**
+     * Gets the number of rows that failed.
+     * 
+     * @return the number of failed rows
+     */
+    public int getFailureCount() {
+        return failureCount;
+    }
+    
+    /**
+     * Checks whether any row of the batch failed.
+     * 
+     * @return true if at least one row failed
+     */
+    public boolean hasFailures() {
+        return failureCount > 0;
+    }
+    
+    /**
+     * Gets the IDs of the rows that were applied, in input order.
+     * 
+     * @return the IDs of the successful rows
+     */
+    public int[] getSucceededIds() {
+        return collectIds(false);
+    }
+    
+    /**
+     * Gets the IDs of the rows that failed, in input order.
+     * 
+     * @return the IDs of the failed rows
+     */
+    public int[] getFailedIds() {
+        return collectIds(true);
+    }
+    
+    /**
+     * Collects the IDs of the rows with the given failure flag.
+     * 
+     * @param wantFailed true to collect failed rows, false for successful rows
+     * @return the matching IDs in input order
+     */
+    private int[] collectIds(boolean wantFailed) {
+        int[] result = new int[wantFailed ? failureCount : ids.length - failureCount];
+        int position = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (failed[i] == wantFailed) {
+                result[position++] = ids[i];
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns a string representation of this batch result.
+     * 
+     * @return a string containing the batch counts and failed IDs
+     */
+    @Override
+    public String toString() {
+        return "BatchResult{size=" + ids.length +
+               ", succeeded=" + getSuccessCount() +
+               ", failedIds=" + Arrays.toString(getFailedIds()) + '}';
+    }
+}
@@ -0,0 +1,23 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Selects how a CachingTasksDAO chooses which cached task to evict when it is full.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public enum CacheEvictionPolicy {
+    
+    /**
+     * Evicts the least recently used task.
+     */
+    LRU,
+    
+    /**
+     * W-TinyLFU style eviction. New tasks enter a small LRU window; when the
+     * window overflows, its oldest task is admitted to the main LRU region only
+     * if it has been requested more often than the task it would replace.
+     * Keeps a hot working set cached through bursts of one-off reads.
+     */
+    TINY_LFU
+}
@@ -0,0 +1,754 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.filter.ITaskFilter;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read-through cache in front of another ITasksDAO.
+ * Single-task reads and the full task list are served from memory after the
+ * first load; every write goes to the wrapped DAO and then invalidates the
+ * affected cache entries (write-through invalidation). The number of cached
+ * tasks is bounded and the eviction policy is chosen at construction.
+ * Other queries (pages, state and title lookups, streaming, summaries) are
+ * passed straight to the wrapped DAO. When the wrapped DAO is a TasksDAO, the
+ * cached task list is dropped after each archive run, since getTasks() no
+ * longer returns the archived tasks.
+ * 
+ * Cached tasks are stored and returned as copies, so changing a returned task
+ * does not change the cache until it is saved with updateTask.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class CachingTasksDAO implements ITasksDAO {
+    
+    //marker cached for IDs the wrapped DAO reported as missing
+    private static final ITask NOT_FOUND = new Task(0, "not found", "");
+    
+    //private variables declaration
+    private final ITasksDAO delegate;
+    private final int maxEntries;
+    private final CacheEvictionPolicy policy;
+    private final LinkedHashMap<Integer, ITask> window;
+    private final LinkedHashMap<Integer, ITask> main;
+    private final int windowCapacity;
+    private final FrequencySketch sketch;
+    private ITask[] allTasks;
+    private long writeEpoch;
+    private long hits;
+    private long misses;
+    private long evictions;
+    
+    /**
+     * Constructs a caching DAO.
+     * 
+     * @param delegate the DAO that stores the tasks
+     * @param maxEntries the maximum number of tasks kept in the cache
+     * @param policy the eviction policy used when the cache is full
+     */
+    public CachingTasksDAO(ITasksDAO delegate, int maxEntries, CacheEvictionPolicy policy) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("Delegate DAO cannot be null");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        if (policy == null) {
+            throw new IllegalArgumentException("Eviction policy cannot be null");
+        }
+        this.delegate = delegate;
+        this.maxEntries = maxEntries;
+        this.policy = policy;
+        
+        //LRU keeps everything in the window; TinyLFU uses a 1% window in front of the main region
+        this.windowCapacity = policy == CacheEvictionPolicy.LRU ? maxEntries : Math.max(1, maxEntries / 100);
+        this.window = new LinkedHashMap<>(16, 0.75f, true);
+        this.main = new LinkedHashMap<>(16, 0.75f, true);
+        this.sketch = policy == CacheEvictionPolicy.TINY_LFU ? new FrequencySketch(maxEntries) : null;
+        
+        //single tasks stay valid, since getTask() still finds archived tasks
+        if (delegate instanceof TasksDAO) {
+            ((TasksDAO) delegate).addArchiveListener(this::invalidateTaskList);
+        }
+    }
+    
+    /**
+     * Retrieves all tasks, from the cache when the list has been loaded before.
+     * The list is cached only while it fits within the cache size.
+     * 
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks() throws TaskManagerException {
+        long epoch;
+        synchronized (this) {
+            if (allTasks != null) {
+                hits++;
+                return copyOf(allTasks);
+            }
+            misses++;
+            epoch = writeEpoch;
+        }
+        
+        ITask[] tasks = delegate.getTasks();
+        if (tasks.length <= maxEntries) {
+            ITask[] snapshot = copyOf(tasks);
+            synchronized (this) {
+                //a write that finished during the load may not be visible in the result
+                if (epoch == writeEpoch) {
+                    allTasks = snapshot;
+                }
+            }
+        }
+        return tasks;
+    }
+    
+    /**
+     * Retrieves all tasks, reading only the columns of the given projection.
+     * FULL reads are served like getTasks(); SUMMARY reads go to the wrapped DAO.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(TaskProjection projection) throws TaskManagerException {
+        if (projection == TaskProjection.FULL) {
+            return getTasks();
+        }
+        return delegate.getTasks(projection);
+    }
+    
+    /**
+     * Retrieves all tasks, optionally including archived tasks.
+     * Reads that include archived tasks always go to the wrapped DAO.
+     * 
+     * @param includeArchived true to also return archived tasks
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(boolean includeArchived) throws TaskManagerException {
+        return includeArchived ? delegate.getTasks(true) : getTasks();
+    }
+    
+    /**
+     * Retrieves the tasks that match a filter from the wrapped DAO,
+     * so the filter is evaluated where the data is.
+     * 
+     * @param filter the filter to match
+     * @return the matching tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] findTasks(ITaskFilter filter) throws TaskManagerException {
+        return delegate.findTasks(filter);
+    }
+    
+    /**
+     * Retrieves a specific task by its ID, loading it into the cache on a miss.
+     * Missing tasks are cached as well, until a write touches their ID.
+     * 
+     * @param id the unique identifier of the task to retrieve
+     * @return the task with the specified ID, or null if not found
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask getTask(int id) throws TaskManagerException {
+        long epoch;
+        synchronized (this) {
+            if (sketch != null) {
+                sketch.increment(id);
+            }
+            ITask cached = lookup(id);
+            if (cached != null) {
+                hits++;
+                return cached == NOT_FOUND ? null : copyOf(cached);
+            }
+            misses++;
+            epoch = writeEpoch;
+        }
+        
+        ITask task = delegate.getTask(id);
+        ITask entry = task == null ? NOT_FOUND : copyOf(task);
+        synchronized (this) {
+            //a write that finished during the load may not be visible in the result
+            if (epoch == writeEpoch) {
+                insert(id, entry);
+            }
+        }
+        return task;
+    }
+    
+    /**
+     * Retrieves one page of tasks from the wrapped DAO.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        return delegate.getTasksPage(afterId, limit, state);
+    }
+    
+    /**
+     * Retrieves one page of tasks from the wrapped DAO, reading only the columns of the given projection.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        return delegate.getTasksPage(afterId, limit, state, projection);
+    }
+    
+    /**
+     * Retrieves all tasks in the given state from the wrapped DAO.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        return delegate.getTasksByState(state);
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix from the wrapped DAO.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        return delegate.getTasksByTitlePrefix(prefix);
+    }
+    
+    /**
+     * Reads the change log of the wrapped DAO.
+     * 
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read and the sequence to continue from
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    @Override
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        return delegate.getChangesSince(sequence, limit);
+    }
+    
+    /**
+     * Gets the latest change sequence of the wrapped DAO.
+     * 
+     * @return the latest change sequence
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    @Override
+    public long getLatestChangeSequence() throws TaskManagerException {
+        return delegate.getLatestChangeSequence();
+    }
+    
+    /**
+     * Trims the change log of the wrapped DAO.
+     * 
+     * @param sequence the last sequence number to trim
+     * @throws TaskManagerException if the change log cannot be trimmed
+     */
+    @Override
+    public void trimChanges(long sequence) throws TaskManagerException {
+        delegate.trimChanges(sequence);
+    }
+    
+    /**
+     * Counts the tasks in the wrapped DAO.
+     * 
+     * @return the total number of tasks
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    @Override
+    public int countTasks() throws TaskManagerException {
+        return delegate.countTasks();
+    }
+    
+    /**
+     * Counts the tasks in each state in the wrapped DAO.
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    @Override
+    public Map<TaskState, Integer> countTasksByState() throws TaskManagerException {
+        return delegate.countTasksByState();
+    }
+    
+    /**
+     * Streams all tasks from the wrapped DAO to the given handler.
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        delegate.forEachTask(fetchSize, handler);
+    }
+    
+    /**
+     * Streams all tasks from the wrapped DAO, optionally including archived tasks.
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param includeArchived true to also stream archived tasks
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, boolean includeArchived, ITaskStreamHandler handler)
+            throws TaskManagerException {
+        delegate.forEachTask(fetchSize, includeArchived, handler);
+    }
+    
+    /**
+     * Allocates a new unique task ID through the wrapped DAO.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new block of IDs cannot be reserved
+     */
+    @Override
+    public int nextTaskId() throws TaskManagerException {
+        return delegate.nextTaskId();
+    }
+    
+    /**
+     * Adds a new task and invalidates its cache entry.
+     * 
+     * @param task the task to add
+     * @throws TaskManagerException if an error occurs during addition
+     */
+    @Override
+    public void addTask(ITask task) throws TaskManagerException {
+        try {
+            delegate.addTask(task);
+        } finally {
+            if (task != null) {
+                invalidate(task.getId());
+            }
+        }
+    }
+    
+    /**
+     * Updates an existing task and invalidates its cache entry.
+     * 
+     * @param task the task to update
+     * @throws TaskManagerException if an error occurs during update
+     */
+    @Override
+    public void updateTask(ITask task) throws TaskManagerException {
+        try {
+            delegate.updateTask(task);
+        } finally {
+            if (task != null) {
+                invalidate(task.getId());
+            }
+        }
+    }
+    
+    /**
+     * Updates an existing task if its version matches and invalidates its cache entry.
+     * The entry is invalidated on a version conflict too, since the cached copy is stale.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws TaskManagerException if the version does not match or an error occurs during update
+     */
+    @Override
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        try {
+            return delegate.updateTask(task, expectedVersion);
+        } finally {
+            if (task != null) {
+                invalidate(task.getId());
+            }
+        }
+    }
+    
+    /**
+     * Saves a task and invalidates its cache entry, including a cached "not found".
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if an error occurs during saving
+     */
+    @Override
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        try {
+            return delegate.saveTask(task);
+        } finally {
+            if (task != null) {
+                invalidate(task.getId());
+            }
+        }
+    }
+    
+    /**
+     * Deletes all tasks and clears the cache.
+     * 
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTasks() throws TaskManagerException {
+        try {
+            delegate.deleteTasks();
+        } finally {
+            invalidateAll();
+        }
+    }
+    
+    /**
+     * Deletes a specific task and invalidates its cache entry.
+     * 
+     * @param id the unique identifier of the task to delete
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTask(int id) throws TaskManagerException {
+        try {
+            delegate.deleteTask(id);
+        } finally {
+            invalidate(id);
+        }
+    }
+    
+    /**
+     * Adds several tasks and invalidates their cache entries.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        try {
+            return delegate.addTasks(tasks);
+        } finally {
+            invalidate(tasks);
+        }
+    }
+    
+    /**
+     * Updates several tasks and invalidates their cache entries.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        try {
+            return delegate.updateTasks(tasks);
+        } finally {
+            invalidate(tasks);
+        }
+    }
+    
+    /**
+     * Saves several tasks and invalidates their cache entries.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        try {
+            return delegate.saveTasks(tasks);
+        } finally {
+            invalidate(tasks);
+        }
+    }
+    
+    /**
+     * Deletes several tasks and invalidates their cache entries.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult deleteTasks(int[] ids) throws TaskManagerException {
+        try {
+            return delegate.deleteTasks(ids);
+        } finally {
+            invalidate(ids);
+        }
+    }
+    
+    /**
+     * Preloads hot tasks into the cache: up to hotTasks tasks in each of the
+     * TO_DO and IN_PROGRESS states, lowest IDs first. Preloaded tasks do not
+     * count as hits or misses.
+     * 
+     * @param hotTasks the number of active tasks per state to preload
+     * @throws TaskManagerException if the tasks cannot be read
+     */
+    public void warmUp(int hotTasks) throws TaskManagerException {
+        if (hotTasks <= 0) {
+            throw new IllegalArgumentException("Number of hot tasks must be positive");
+        }
+        
+        for (TaskState state : new TaskState[] {TaskState.TO_DO, TaskState.IN_PROGRESS}) {
+            long epoch;
+            synchronized (this) {
+                epoch = writeEpoch;
+            }
+            ITask[] tasks = delegate.getTasksPage(-1, hotTasks, state);
+            synchronized (this) {
+                //skip the preload if a write finished during the load
+                if (epoch == writeEpoch) {
+                    for (ITask task : tasks) {
+                        insert(task.getId(), copyOf(task));
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes every entry from the cache.
+     * Call this after the tasks were changed without going through this DAO.
+     */
+    public synchronized void invalidateAll() {
+        writeEpoch++;
+        allTasks = null;
+        window.clear();
+        main.clear();
+    }
+    
+    /**
+     * Gets the wrapped DAO.
+     * 
+     * @return the DAO that stores the tasks
+     */
+    public ITasksDAO getDelegate() {
+        return delegate;
+    }
+    
+    /**
+     * Gets the eviction policy of this cache.
+     * 
+     * @return the eviction policy
+     */
+    public CacheEvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+    
+    /**
+     * Gets the maximum number of tasks kept in the cache.
+     * 
+     * @return the cache capacity
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+    
+    /**
+     * Gets the number of tasks currently cached.
+     * 
+     * @return the number of cache entries
+     */
+    public synchronized int size() {
+        return window.size() + main.size();
+    }
+    
+    /**
+     * Gets the number of reads served from the cache.
+     * 
+     * @return the number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    /**
+     * Gets the number of reads that went to the wrapped DAO.
+     * 
+     * @return the number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+    /**
+     * Gets the fraction of cached reads served from memory.
+     * 
+     * @return the hit ratio between 0 and 1, or 0 if nothing was read yet
+     */
+    public synchronized double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+    
+    /**
+     * Gets the number of tasks dropped to keep the cache within its size,
+     * including tasks TinyLFU declined to admit.
+     * 
+     * @return the number of evictions
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+    
+    /**
+     * Finds a cached entry, refreshing its recency.
+     * 
+     * @param id the task ID
+     * @return the cached entry, or null if the ID is not cached
+     */
+    private ITask lookup(int id) {
+        ITask cached = window.get(id);
+        return cached != null ? cached : main.get(id);
+    }
+    
+    /**
+     * Inserts an entry into the window and evicts as required by the policy.
+     * 
+     * @param id the task ID
+     * @param entry the task copy or NOT_FOUND
+     */
+    private void insert(int id, ITask entry) {
+        if (main.containsKey(id)) {
+            main.put(id, entry);
+            return;
+        }
+        window.put(id, entry);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+        
+        Iterator<Map.Entry<Integer, ITask>> oldest = window.entrySet().iterator();
+        Map.Entry<Integer, ITask> candidate = oldest.next();
+        oldest.remove();
+        if (policy == CacheEvictionPolicy.LRU) {
+            evictions++;
+            return;
+        }
+        
+        //TinyLFU admission: the window's oldest task replaces main's LRU victim only if it is more popular
+        if (main.size() < maxEntries - windowCapacity) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+        Iterator<Map.Entry<Integer, ITask>> victims = main.entrySet().iterator();
+        if (victims.hasNext()) {
+            Map.Entry<Integer, ITask> victim = victims.next();
+            if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+                victims.remove();
+                main.put(candidate.getKey(), candidate.getValue());
+            }
+        }
+        evictions++;
+    }
+    
+    /**
+     * Removes one ID from both cache regions.
+     * 
+     * @param id the task ID
+     */
+    private void remove(int id) {
+        window.remove(id);
+        main.remove(id);
+    }
+    
+    /**
+     * Invalidates the cached task list only, for example after tasks were archived.
+     */
+    private synchronized void invalidateTaskList() {
+        writeEpoch++;
+        allTasks = null;
+    }
+    
+    /**
+     * Invalidates the entry of one task and the cached task list.
+     * 
+     * @param id the task ID
+     */
+    private synchronized void invalidate(int id) {
+        writeEpoch++;
+        allTasks = null;
+        remove(id);
+    }
+    
+    /**
+     * Invalidates the entries of a batch of tasks and the cached task list.
+     * 
+     * @param tasks the tasks of the batch
+     */
+    private synchronized void invalidate(ITask[] tasks) {
+        writeEpoch++;
+        allTasks = null;
+        if (tasks != null) {
+            for (ITask task : tasks) {
+                if (task != null) {
+                    remove(task.getId());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Invalidates the entries of a batch of task IDs and the cached task list.
+     * 
+     * @param ids the task IDs of the batch
+     */
+    private synchronized void invalidate(int[] ids) {
+        writeEpoch++;
+        allTasks = null;
+        if (ids != null) {
+            for (int id : ids) {
+                remove(id);
+            }
+        }
+    }
+    
+    /**
+     * Creates an independent copy of a task, including its version.
+     * 
+     * @param task the task to copy
+     * @return a new task with the same values
+     */
+    private static ITask copyOf(ITask task) {
+        return new Task(task.getId(), task.getTitle(), task.getDescription(), task.getState(), task.getVersion());
+    }
+    
+    /**
+     * Creates independent copies of the given tasks.
+     * 
+     * @param tasks the tasks to copy
+     * @return an array of new tasks with the same values
+     */
+    private static ITask[] copyOf(ITask[] tasks) {
+        ITask[] copies = new ITask[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            copies[i] = copyOf(tasks[i]);
+        }
+        return copies;
+    }
+}
@@ -0,0 +1,122 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Bounded in-memory change log for the DAOs that keep their tasks in memory.
+ * Entries get consecutive sequence numbers and are kept in a ring of parallel
+ * arrays, so appending allocates nothing; when the ring is full the oldest
+ * entry is trimmed. Sequence numbers start at the creation time in microseconds,
+ * so a sequence remembered from an earlier run is older than every retained
+ * entry and is reported as requiring a resync.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class ChangeLog {
+    
+    static final String RETAINED_CHANGES_PROPERTY = "taskmanager.changes.retained";
+    static final int DEFAULT_RETAINED_CHANGES = 100000;
+    
+    //private variables declaration
+    private final int[] taskIds;
+    private final TaskChangeType[] types;
+    private long latestSequence;
+    private long trimmedThrough; //entries up to this sequence are gone
+    
+    /**
+     * Constructs an empty change log.
+     * 
+     * @param retainedChanges the maximum number of entries kept
+     */
+    ChangeLog(int retainedChanges) {
+        if (retainedChanges <= 0) {
+            throw new IllegalArgumentException("Retained changes must be positive");
+        }
+        this.taskIds = new int[retainedChanges];
+        this.types = new TaskChangeType[retainedChanges];
+        this.latestSequence = System.currentTimeMillis() * 1000;
+        this.trimmedThrough = latestSequence;
+    }
+    
+    /**
+     * Gets the number of changes to retain, from the
+     * {@code taskmanager.changes.retained} system property.
+     * 
+     * @return the configured number of retained changes
+     */
+    static int configuredRetention() {
+        return Math.max(1, Integer.getInteger(RETAINED_CHANGES_PROPERTY, DEFAULT_RETAINED_CHANGES));
+    }
+    
+    /**
+     * Appends a change, trimming the oldest entry if the log is full.
+     * 
+     * @param type the kind of mutation
+     * @param taskId the ID of the changed task, or 0 for CLEARED
+     */
+    synchronized void append(TaskChangeType type, int taskId) {
+        latestSequence++;
+        int slot = slotOf(latestSequence);
+        taskIds[slot] = taskId;
+        types[slot] = type;
+        trimmedThrough = Math.max(trimmedThrough, latestSequence - taskIds.length);
+    }
+    
+    /**
+     * Records that tasks changed in ways that could not be logged entry by entry,
+     * for example a clear that failed on some shards. Every reader positioned
+     * before this point is reported as requiring a resync.
+     */
+    synchronized void requireResync() {
+        latestSequence++;
+        trimmedThrough = latestSequence;
+    }
+    
+    /**
+     * Reads the entries after a sequence number, without task values.
+     * 
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of entries to read
+     * @return the entries read, with null tasks
+     */
+    synchronized TaskChanges read(long sequence, int limit) {
+        if (sequence < trimmedThrough || sequence > latestSequence) {
+            return new TaskChanges(new TaskChange[0], sequence, true);
+        }
+        int count = (int) Math.min(limit, latestSequence - sequence);
+        TaskChange[] changes = new TaskChange[count];
+        for (int i = 0; i < count; i++) {
+            long entry = sequence + 1 + i;
+            int slot = slotOf(entry);
+            changes[i] = new TaskChange(entry, types[slot], taskIds[slot], null);
+        }
+        return new TaskChanges(changes, sequence + count, false);
+    }
+    
+    /**
+     * Gets the sequence number of the latest change.
+     * 
+     * @return the latest sequence number
+     */
+    synchronized long getLatestSequence() {
+        return latestSequence;
+    }
+    
+    /**
+     * Trims the entries up to a sequence number. The latest entry is always kept.
+     * 
+     * @param sequence the last sequence number to trim
+     */
+    synchronized void trimThrough(long sequence) {
+        trimmedThrough = Math.max(trimmedThrough, Math.min(sequence, latestSequence - 1));
+    }
+    
+    /**
+     * Gets the ring slot of a sequence number.
+     * 
+     * @param sequence the sequence number
+     * @return the index into the entry arrays
+     */
+    private int slotOf(long sequence) {
+        return (int) Math.floorMod(sequence, (long) taskIds.length);
+    }
+}
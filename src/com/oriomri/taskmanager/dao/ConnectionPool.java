@@ -0,0 +1,294 @@
+package com.oriomri.taskmanager.dao;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of embedded database connections.
+ * Connections are opened lazily up to the configured maximum and handed out
+ * to one caller at a time, so concurrent DAO calls run on separate connections.
+ * The pool records how long callers wait to acquire a connection.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class ConnectionPool {
+    
+    //private variables declaration
+    private final String databaseUrl;
+    private final int maxSize;
+    private final long acquireTimeoutMillis;
+    private final BlockingQueue<PooledConnection> idleConnections;
+    private final List<PooledConnection> allConnections;
+    private final AtomicLong acquireCount;
+    private final AtomicLong totalWaitNanos;
+    private final AtomicLong maxWaitNanos;
+    private volatile boolean closed;
+    
+    /**
+     * Constructs a connection pool for the given database.
+     * 
+     * @param databaseUrl the JDBC URL used to open new connections
+     * @param maxSize the maximum number of open connections
+     * @param acquireTimeoutMillis how long a caller waits for a free connection
+     */
+    public ConnectionPool(String databaseUrl, int maxSize, long acquireTimeoutMillis) {
+        if (databaseUrl == null || databaseUrl.trim().isEmpty()) {
+            throw new IllegalArgumentException("Database URL cannot be null or empty");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Pool size must be positive");
+        }
+        if (acquireTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Acquire timeout must be positive");
+        }
+        this.databaseUrl = databaseUrl;
+        this.maxSize = maxSize;
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.idleConnections = new ArrayBlockingQueue<>(maxSize);
+        this.allConnections = new CopyOnWriteArrayList<>();
+        this.acquireCount = new AtomicLong();
+        this.totalWaitNanos = new AtomicLong();
+        this.maxWaitNanos = new AtomicLong();
+    }
+    
+    /**
+     * Borrows a connection from the pool, opening a new one if the pool is not full.
+     * The caller must close the returned connection to give it back.
+     * 
+     * @return a pooled connection reserved for the caller
+     * @throws SQLException if no connection becomes available or opening one fails
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        
+        PooledConnection pooled = idleConnections.poll();
+        if (pooled == null) {
+            pooled = openIfBelowLimit();
+        }
+        if (pooled == null) {
+            try {
+                pooled = idleConnections.poll(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a database connection", e);
+            }
+            if (pooled == null) {
+                throw new SQLException("Timed out after " + acquireTimeoutMillis
+                        + " ms waiting for a database connection");
+            }
+        }
+        
+        recordWait(System.nanoTime() - start);
+        return pooled;
+    }
+    
+    /**
+     * Opens connections ahead of demand until the given number are open, and
+     * prepares the given statements on each new connection before it becomes
+     * available, so callers never wait for the connection or the statements.
+     * 
+     * @param count the number of connections that should be open, capped at the maximum size
+     * @param statements the SQL of the statements to prepare on each new connection
+     * @return the number of connections opened
+     * @throws SQLException if a connection cannot be opened or a statement cannot be prepared
+     */
+    public int prestart(int count, String... statements) throws SQLException {
+        int opened = 0;
+        while (!closed && allConnections.size() < Math.min(count, maxSize)) {
+            PooledConnection pooled = openIfBelowLimit();
+            if (pooled == null) {
+                break;
+            }
+            try {
+                for (String sql : statements) {
+                    pooled.prepare(sql);
+                }
+            } finally {
+                release(pooled);
+            }
+            opened++;
+        }
+        return opened;
+    }
+    
+    /**
+     * Opens a new connection if the pool has not reached its maximum size.
+     * 
+     * @return the new connection, or null if the pool is full
+     * @throws SQLException if opening the connection fails
+     */
+    private PooledConnection openIfBelowLimit() throws SQLException {
+        synchronized (allConnections) {
+            if (allConnections.size() >= maxSize) {
+                return null;
+            }
+            Connection connection = DriverManager.getConnection(databaseUrl);
+            PooledConnection pooled = new PooledConnection(this, connection);
+            allConnections.add(pooled);
+            return pooled;
+        }
+    }
+    
+    /**
+     * Returns a connection to the pool.
+     * Any open transaction is rolled back and auto-commit is restored,
+     * and connections that are no longer usable are discarded.
+     * 
+     * @param pooled the connection being returned
+     */
+    void release(PooledConnection pooled) {
+        Connection connection = pooled.getConnection();
+        try {
+            if (closed || connection.isClosed()) {
+                discard(pooled);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+        if (!idleConnections.offer(pooled)) {
+            discard(pooled);
+        }
+    }
+    
+    /**
+     * Removes a connection from the pool and closes it.
+     * 
+     * @param pooled the connection to discard
+     */
+    private void discard(PooledConnection pooled) {
+        synchronized (allConnections) {
+            allConnections.remove(pooled);
+        }
+        pooled.closePhysical();
+    }
+    
+    /**
+     * Records the time a caller waited to acquire a connection.
+     * 
+     * @param waitNanos the wait time in nanoseconds
+     */
+    private void recordWait(long waitNanos) {
+        acquireCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+    
+    /**
+     * Gets the maximum number of connections this pool opens.
+     * 
+     * @return the maximum pool size
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * Gets the number of physical connections currently open.
+     * 
+     * @return the number of open connections
+     */
+    public int getOpenConnections() {
+        return allConnections.size();
+    }
+    
+    /**
+     * Gets the number of open connections not currently borrowed.
+     * 
+     * @return the number of idle connections
+     */
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+    
+    /**
+     * Gets the number of successful acquire calls.
+     * 
+     * @return the number of acquired connections
+     */
+    public long getAcquireCount() {
+        return acquireCount.get();
+    }
+    
+    /**
+     * Gets the total time callers spent waiting to acquire connections.
+     * 
+     * @return the total acquire wait time in nanoseconds
+     */
+    public long getTotalAcquireWaitNanos() {
+        return totalWaitNanos.get();
+    }
+    
+    /**
+     * Gets the longest time a single caller waited to acquire a connection.
+     * 
+     * @return the maximum acquire wait time in nanoseconds
+     */
+    public long getMaxAcquireWaitNanos() {
+        return maxWaitNanos.get();
+    }
+    
+    /**
+     * Gets the average time callers waited to acquire a connection.
+     * 
+     * @return the average acquire wait time in nanoseconds
+     */
+    public long getAverageAcquireWaitNanos() {
+        long count = acquireCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / count;
+    }
+    
+    /**
+     * Gets the statement cache hits summed over all open connections.
+     * 
+     * @return the total number of statement cache hits
+     */
+    public long getStatementCacheHits() {
+        long hits = 0;
+        for (PooledConnection pooled : allConnections) {
+            hits += pooled.getStatementCache().getHits();
+        }
+        return hits;
+    }
+    
+    /**
+     * Gets the statement cache misses summed over all open connections.
+     * 
+     * @return the total number of statement cache misses
+     */
+    public long getStatementCacheMisses() {
+        long misses = 0;
+        for (PooledConnection pooled : allConnections) {
+            misses += pooled.getStatementCache().getMisses();
+        }
+        return misses;
+    }
+    
+    /**
+     * Closes the pool and every idle connection.
+     * Connections still borrowed are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        PooledConnection pooled;
+        while ((pooled = idleConnections.poll()) != null) {
+            discard(pooled);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+
+import java.util.Map;
+
+/**
+ * Group of summary tasks whose descriptions are loaded together.
+ * The first description requested from any task of the group loads the
+ * descriptions of the whole group in a single query.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class DescriptionBatch {
+    
+    //private variables declaration
+    private final TasksDAO tasksDAO;
+    private final int[] ids;
+    private Map<Integer, String> descriptions;
+    
+    /**
+     * Constructs a description batch for the given task IDs.
+     * 
+     * @param tasksDAO the DAO used to load the descriptions
+     * @param ids the IDs of the tasks in the group
+     */
+    DescriptionBatch(TasksDAO tasksDAO, int[] ids) {
+        this.tasksDAO = tasksDAO;
+        this.ids = ids;
+    }
+    
+    /**
+     * Gets the description of a task in this group, loading the group on first use.
+     * 
+     * @param id the task ID
+     * @return the task description, or an empty string if the task no longer exists
+     * @throws TaskManagerException if the descriptions cannot be loaded
+     */
+    synchronized String descriptionOf(int id) throws TaskManagerException {
+        if (descriptions == null) {
+            descriptions = tasksDAO.loadDescriptions(ids);
+        }
+        String description = descriptions.get(id);
+        return description == null ? "" : description;
+    }
+}
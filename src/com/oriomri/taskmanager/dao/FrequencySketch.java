@@ -0,0 +1,92 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Approximate access counter for task IDs (a count-min sketch).
+ * Each ID is counted in one small saturating counter per row and its frequency
+ * is the minimum of those counters. All counters are halved periodically so
+ * that tasks which used to be popular lose their weight over time.
+ * This class is not thread-safe; callers synchronize access.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class FrequencySketch {
+    
+    private static final int DEPTH = 4;
+    private static final int MAX_COUNT = 15;
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+    
+    //private variables declaration
+    private final byte[][] counters;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+    
+    /**
+     * Constructs a sketch sized for the given number of cached entries.
+     * 
+     * @param maxEntries the capacity of the cache using this sketch
+     */
+    FrequencySketch(int maxEntries) {
+        int width = Integer.highestOneBit(Math.max(64, maxEntries) - 1) << 1;
+        this.counters = new byte[DEPTH][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * Math.max(64, maxEntries);
+    }
+    
+    /**
+     * Records one access to the given task ID.
+     * 
+     * @param id the task ID
+     */
+    void increment(int id) {
+        for (int row = 0; row < DEPTH; row++) {
+            int index = indexOf(id, row);
+            if (counters[row][index] < MAX_COUNT) {
+                counters[row][index]++;
+            }
+        }
+        if (++additions >= sampleSize) {
+            reset();
+        }
+    }
+    
+    /**
+     * Estimates how often the given task ID was accessed recently.
+     * 
+     * @param id the task ID
+     * @return the estimated access count
+     */
+    int frequency(int id) {
+        int frequency = MAX_COUNT;
+        for (int row = 0; row < DEPTH; row++) {
+            frequency = Math.min(frequency, counters[row][indexOf(id, row)]);
+        }
+        return frequency;
+    }
+    
+    /**
+     * Halves every counter (aging).
+     */
+    private void reset() {
+        for (byte[] row : counters) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+    
+    /**
+     * Computes the counter position of an ID in the given row.
+     * 
+     * @param id the task ID
+     * @param row the sketch row
+     * @return the counter index within the row
+     */
+    private int indexOf(int id, int row) {
+        int hash = id * SEEDS[row];
+        hash ^= hash >>> 16;
+        return hash & mask;
+    }
+}
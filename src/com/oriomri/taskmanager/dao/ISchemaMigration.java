@@ -0,0 +1,47 @@
+package com.oriomri.taskmanager.dao;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Interface for a single versioned step of the database schema.
+ * Migrations are applied in ascending version order by the SchemaMigrator,
+ * each one inside its own transaction.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public interface ISchemaMigration {
+    
+    /**
+     * Gets the schema version this migration upgrades the database to.
+     * 
+     * @return the target schema version
+     */
+    int getVersion();
+    
+    /**
+     * Gets a short description of the migration.
+     * 
+     * @return the migration description
+     */
+    String getDescription();
+    
+    /**
+     * Checks whether the changes of this migration are already present in a
+     * database created before schema versioning was introduced.
+     * 
+     * @param connection the database connection
+     * @return true if the migration does not need to be applied
+     * @throws SQLException if the schema cannot be inspected
+     */
+    boolean isAlreadyApplied(Connection connection) throws SQLException;
+    
+    /**
+     * Applies the migration.
+     * 
+     * @param connection the database connection, with auto-commit disabled
+     * @throws SQLException if the migration fails
+     */
+    void migrate(Connection connection) throws SQLException;
+}
@@ -0,0 +1,24 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+
+/**
+ * Callback that receives tasks one at a time while they are streamed from the database.
+ * Used for exports and reports that must walk every task without holding them all in memory.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ITaskStreamHandler {
+    
+    /**
+     * Handles the next task of the stream.
+     * 
+     * @param task the current task
+     * @return true to continue with the next task, false to stop the stream early
+     * @throws TaskManagerException if handling the task fails, which also stops the stream
+     */
+    boolean handle(ITask task) throws TaskManagerException;
+}
@@ -1,7 +1,14 @@
 package com.oriomri.taskmanager.dao;
 
 import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.StaleTaskVersionException;
 import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.filter.ITaskFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Interface for Data Access Object operations on tasks.
@@ -21,6 +28,51 @@ public interface ITasksDAO {
      */
     ITask[] getTasks() throws TaskManagerException;
     
+    /**
+     * Retrieves all tasks from the database, reading only the columns of the given projection.
+     * With SUMMARY, descriptions are not read by the query and are loaded on demand.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    ITask[] getTasks(TaskProjection projection) throws TaskManagerException;
+    
+    /**
+     * Retrieves all tasks, optionally including tasks the DAO has moved to an archive tier.
+     * The other bulk reads and counts only cover active (non-archived) tasks, so they
+     * stay proportional to active work. DAOs without an archive tier return getTasks().
+     * 
+     * @param includeArchived true to also return archived tasks
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    default ITask[] getTasks(boolean includeArchived) throws TaskManagerException {
+        return getTasks();
+    }
+    
+    /**
+     * Retrieves the tasks that match a filter.
+     * The default implementation applies the filter in memory to getTasks();
+     * DAOs backed by a database let it evaluate the parts of the filter it can.
+     * 
+     * @param filter the filter to match
+     * @return the matching tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    default ITask[] findTasks(ITaskFilter filter) throws TaskManagerException {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        List<ITask> matches = new ArrayList<>();
+        for (ITask task : getTasks()) {
+            if (filter.matches(task)) {
+                matches.add(task);
+            }
+        }
+        return matches.toArray(new ITask[0]);
+    }
+    
     /**
      * Retrieves a specific task by its ID.
      * 
@@ -30,6 +82,141 @@ public interface ITasksDAO {
      */
     ITask getTask(int id) throws TaskManagerException;
     
+    /**
+     * Retrieves one page of tasks ordered by ID, starting after the given ID.
+     * Pages are addressed by the last ID of the previous page (keyset pagination),
+     * so fetching a page costs the same no matter how deep into the table it is.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException;
+    
+    /**
+     * Retrieves one page of tasks ordered by ID, reading only the columns of the given projection.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException;
+    
+    /**
+     * Retrieves all tasks in the given state, ordered by ID.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    ITask[] getTasksByState(TaskState state) throws TaskManagerException;
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix, ordered by title.
+     * The comparison is case-sensitive.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException;
+    
+    /**
+     * Counts the tasks without loading them.
+     * 
+     * @return the total number of tasks
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    int countTasks() throws TaskManagerException;
+    
+    /**
+     * Counts the tasks in each state without loading them.
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    Map<TaskState, Integer> countTasksByState() throws TaskManagerException;
+    
+    /**
+     * Reads the change log after a sequence number, so a consumer can keep a copy
+     * of the tasks in sync without re-reading the whole table. Every add, update,
+     * save and delete is recorded with an increasing sequence number.
+     * A consumer starts from getLatestChangeSequence(), reads all tasks once, and
+     * then passes the last sequence of each result to the next call.
+     * 
+     * @param sequence the last sequence number the consumer has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes in sequence order; if isResyncRequired() is true the
+     *         consumer fell behind the retained changes and must re-read all tasks
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException;
+    
+    /**
+     * Gets the sequence number of the latest recorded change.
+     * 
+     * @return the latest change sequence
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    long getLatestChangeSequence() throws TaskManagerException;
+    
+    /**
+     * Trims the recorded changes up to a sequence number, for example once every
+     * consumer has read them. Older changes are also trimmed automatically once
+     * more than the retained number of changes (system property
+     * {@code taskmanager.changes.retained}, 100000 by default) were recorded.
+     * The latest change is always kept.
+     * 
+     * @param sequence the last sequence number to trim
+     * @throws TaskManagerException if the change log cannot be trimmed
+     */
+    void trimChanges(long sequence) throws TaskManagerException;
+    
+    /**
+     * Streams all tasks in ascending ID order to the given handler.
+     * Only one row is held in memory at a time; the underlying cursor stays open
+     * until the handler returns false, throws, or the last task has been handled,
+     * and is closed in every case.
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException;
+    
+    /**
+     * Streams all tasks to the given handler, optionally including archived tasks,
+     * for example to export or index the full task set. Tasks come in ascending ID
+     * order; a DAO that spreads tasks over several stores may stream them store by
+     * store. DAOs without an archive tier stream forEachTask(fetchSize, handler).
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param includeArchived true to also stream archived tasks
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    default void forEachTask(int fetchSize, boolean includeArchived, ITaskStreamHandler handler)
+            throws TaskManagerException {
+        forEachTask(fetchSize, handler);
+    }
+    
+    /**
+     * Allocates a new unique task ID for a task that is about to be added.
+     * IDs are handed out from blocks reserved in storage, so concurrent callers
+     * and other processes sharing the storage never receive the same ID, and most
+     * calls do not touch storage. IDs are increasing but may have gaps.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new block of IDs cannot be reserved
+     */
+    int nextTaskId() throws TaskManagerException;
+    
     /**
      * Adds a new task to the database.
      * 
@@ -40,12 +227,38 @@ public interface ITasksDAO {
     
     /**
      * Updates an existing task in the database.
+     * The update is unconditional and increments the stored version.
      * 
      * @param task the task to update
      * @throws TaskManagerException if an error occurs during update
      */
     void updateTask(ITask task) throws TaskManagerException;
     
+    /**
+     * Updates an existing task only if its stored version still equals the expected
+     * version (compare-and-set), so concurrent writers cannot overwrite each other
+     * without holding a lock.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws StaleTaskVersionException if the stored version differs from the expected version
+     * @throws TaskManagerException if the task does not exist or an error occurs during update
+     */
+    int updateTask(ITask task, int expectedVersion) throws TaskManagerException;
+    
+    /**
+     * Saves a task whether or not it exists (upsert): inserts it if no task has
+     * its ID, otherwise updates the existing task and increments its version.
+     * The existence check and the write are one atomic operation, so no other
+     * writer can add or delete the task in between.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if an error occurs during saving
+     */
+    SaveOutcome saveTask(ITask task) throws TaskManagerException;
+    
     /**
      * Deletes all tasks from the database.
      * 
@@ -60,4 +273,46 @@ public interface ITasksDAO {
      * @throws TaskManagerException if an error occurs during deletion
      */
     void deleteTask(int id) throws TaskManagerException;
+    
+    /**
+     * Adds several tasks to the database in a single transaction.
+     * Rows that cannot be inserted are reported in the result instead of
+     * aborting the whole batch.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    BatchResult addTasks(ITask[] tasks) throws TaskManagerException;
+    
+    /**
+     * Updates several existing tasks in the database in a single transaction.
+     * Tasks that do not exist are reported as failed rows.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    BatchResult updateTasks(ITask[] tasks) throws TaskManagerException;
+    
+    /**
+     * Saves (upserts) several tasks in a single transaction.
+     * Rows that cannot be saved are reported in the result instead of
+     * aborting the whole batch.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException;
+    
+    /**
+     * Deletes several tasks by their IDs in a single transaction.
+     * IDs that do not exist are reported as failed rows.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    BatchResult deleteTasks(int[] ids) throws TaskManagerException;
 }
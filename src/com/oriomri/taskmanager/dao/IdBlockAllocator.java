@@ -0,0 +1,130 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+
+/**
+ * Hands out task IDs from blocks reserved in storage.
+ * A whole block of consecutive IDs is reserved with one call to the block
+ * source, and the IDs of the block are then handed out from memory, so most
+ * allocations do not touch storage. IDs left in a block when the process
+ * stops are never used, which leaves gaps in the ID sequence.
+ * Tasks stored with IDs chosen by the caller are reported through skipIdsBelow,
+ * and IDs at or below them are skipped, even inside an already reserved block.
+ * The block source is called without holding the allocator's monitor, so a
+ * source that takes the owner's locks never waits on a thread in skipIdsBelow.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class IdBlockAllocator {
+    
+    //private variables declaration
+    private final int blockSize;
+    private final BlockSource source;
+    private final Object reserveLock;
+    private int nextId;
+    private int blockEnd;
+    private long floor;
+    private long reservedBlocks;
+    
+    /**
+     * Constructs an allocator with no block reserved yet.
+     * 
+     * @param blockSize the number of IDs per block
+     * @param source reserves the next block in storage
+     */
+    IdBlockAllocator(int blockSize, BlockSource source) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Block size must be positive");
+        }
+        this.blockSize = blockSize;
+        this.source = source;
+        this.reserveLock = new Object();
+    }
+    
+    /**
+     * Allocates the next ID, reserving a new block when the current one is used up.
+     * 
+     * @return a task ID that was not handed out before
+     * @throws TaskManagerException if a new block cannot be reserved
+     */
+    int nextId() throws TaskManagerException {
+        synchronized (this) {
+            if (hasIdLeft()) {
+                return nextId++;
+            }
+        }
+        
+        //one thread reserves at a time, and the others wait here for its block
+        synchronized (reserveLock) {
+            synchronized (this) {
+                if (hasIdLeft()) {
+                    return nextId++;
+                }
+            }
+            int reserved = source.reserveBlock(blockSize);
+            synchronized (this) {
+                //a block behind the floor or the previous block is moved up, so IDs are never handed out twice
+                long start = Math.max(reserved, Math.max(floor, blockEnd));
+                if (start >= Integer.MAX_VALUE) {
+                    throw new TaskManagerException("No task IDs left to allocate");
+                }
+                nextId = (int) start;
+                //the last block may end at Integer.MAX_VALUE
+                blockEnd = (int) Math.min(start + blockSize, Integer.MAX_VALUE);
+                reservedBlocks++;
+                return nextId++;
+            }
+        }
+    }
+    
+    /**
+     * Moves past the floor and checks whether the current block still has an ID.
+     * Must be called while holding the allocator's monitor.
+     * 
+     * @return true if nextId can be handed out
+     */
+    private boolean hasIdLeft() {
+        if (nextId < floor) {
+            nextId = (int) Math.min(floor, blockEnd);
+        }
+        return nextId < blockEnd;
+    }
+    
+    /**
+     * Makes sure IDs below the given value are never handed out from now on,
+     * for example because a task with a caller-chosen ID was stored.
+     * 
+     * @param id the lowest ID that may still be handed out
+     */
+    synchronized void skipIdsBelow(long id) {
+        if (id > floor) {
+            floor = id;
+        }
+    }
+    
+    /**
+     * Gets the number of blocks reserved by this allocator.
+     * 
+     * @return the number of reserved blocks
+     */
+    synchronized long getReservedBlocks() {
+        return reservedBlocks;
+    }
+    
+    /**
+     * Reserves blocks of IDs in storage.
+     */
+    @FunctionalInterface
+    interface BlockSource {
+        
+        /**
+         * Reserves the next block of IDs.
+         * 
+         * @param blockSize the number of IDs in the block
+         * @return the first ID of the reserved block
+         * @throws TaskManagerException if the block cannot be reserved
+         */
+        int reserveBlock(int blockSize) throws TaskManagerException;
+    }
+}
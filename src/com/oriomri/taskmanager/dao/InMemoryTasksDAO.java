@@ -0,0 +1,1001 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.StaleTaskVersionException;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory implementation of the Data Access Object for tasks.
+ * Tasks are kept in primitive int-keyed hash maps split into lock stripes:
+ * an ID always lives in the same stripe, and each stripe has its own
+ * read/write lock, so calls on different IDs rarely contend.
+ * Sorted indexes on the ID, on the state and ID, and on the title and ID are
+ * updated under the same stripe lock as the maps, so pages, state lookups and
+ * title prefix lookups read only the tasks they return instead of sorting the
+ * whole table, like the indexes of TasksDAO.
+ * 
+ * The DAO follows the same rules as TasksDAO: titles are limited to the
+ * column length, adding an existing ID fails, updating or deleting a missing
+ * ID throws the same not-found exception, and batches report failed rows.
+ * Tasks are copied on the way in and out, like rows of a table.
+ * Nothing is persisted; the data is lost when the process exits.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class InMemoryTasksDAO implements ITasksDAO {
+    
+    private static final int DEFAULT_STRIPES = 16;
+    private static final Comparator<ITask> BY_ID = Comparator.comparingInt(ITask::getId);
+    
+    //private variables declaration
+    private final IntTaskMap[] maps;
+    private final ReentrantReadWriteLock[] locks;
+    private final int stripeShift;
+    private final AtomicLong nextId;
+    private final ChangeLog changeLog;
+    private final ConcurrentSkipListSet<Integer> idIndex;
+    private final Map<TaskState, ConcurrentSkipListSet<Integer>> stateIndex;
+    private final ConcurrentSkipListMap<TitleKey, ITask> titleIndex;
+    
+    /**
+     * Constructs an empty in-memory DAO with the default number of lock stripes.
+     */
+    public InMemoryTasksDAO() {
+        this(DEFAULT_STRIPES);
+    }
+    
+    /**
+     * Constructs an empty in-memory DAO.
+     * 
+     * @param stripes the number of lock stripes, a power of two
+     */
+    public InMemoryTasksDAO(int stripes) {
+        if (stripes <= 0 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a positive power of two");
+        }
+        this.maps = new IntTaskMap[stripes];
+        this.locks = new ReentrantReadWriteLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            maps[i] = new IntTaskMap();
+            locks[i] = new ReentrantReadWriteLock();
+        }
+        //stripes use the high bits of the hash, IntTaskMap uses the low bits
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(stripes);
+        this.nextId = new AtomicLong(1);
+        this.changeLog = new ChangeLog(ChangeLog.configuredRetention());
+        this.idIndex = new ConcurrentSkipListSet<>();
+        this.stateIndex = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            stateIndex.put(state, new ConcurrentSkipListSet<>());
+        }
+        this.titleIndex = new ConcurrentSkipListMap<>();
+    }
+    
+    /**
+     * Retrieves all tasks.
+     * 
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks() throws TaskManagerException {
+        List<ITask> tasks = snapshot();
+        tasks.sort(BY_ID);
+        return copyOf(tasks);
+    }
+    
+    /**
+     * Retrieves all tasks. Both projections return complete tasks,
+     * since descriptions are already in memory.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(TaskProjection projection) throws TaskManagerException {
+        return getTasks();
+    }
+    
+    /**
+     * Retrieves a specific task by its ID.
+     * 
+     * @param id the unique identifier of the task to retrieve
+     * @return the task with the specified ID, or null if not found
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask getTask(int id) throws TaskManagerException {
+        ITask task = storedTask(id);
+        return task == null ? null : copyOf(task);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID, starting after the given ID.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        return getTasksPage(afterId, limit, state, TaskProjection.FULL);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID. Both projections return complete tasks.
+     * The page is read from the ID index, or from the index of the state, starting
+     * after afterId, so its cost does not depend on how deep the page is.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+        
+        NavigableSet<Integer> ids = state == null ? idIndex : stateIndex.get(state);
+        List<ITask> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Integer id : ids.tailSet(afterId, false)) {
+            //the index may briefly list a task that was just deleted or moved to another state
+            ITask task = storedTask(id);
+            if (task != null && (state == null || task.getState() == state)) {
+                page.add(task);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return copyOf(page);
+    }
+    
+    /**
+     * Retrieves all tasks in the given state, ordered by ID, from the index of the state.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        if (state == null) {
+            throw new IllegalArgumentException("Task state cannot be null");
+        }
+        
+        List<ITask> matches = new ArrayList<>();
+        for (Integer id : stateIndex.get(state)) {
+            ITask task = storedTask(id);
+            if (task != null && task.getState() == state) {
+                matches.add(task);
+            }
+        }
+        return copyOf(matches);
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix, ordered by title.
+     * The comparison is case-sensitive. The matching titles are one range of the
+     * title index, so only the matching tasks are read.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Title prefix cannot be null");
+        }
+        
+        List<ITask> matches = new ArrayList<>();
+        Set<Integer> seen = new HashSet<>();
+        for (ITask task : titleIndex.tailMap(new TitleKey(prefix, Integer.MIN_VALUE)).values()) {
+            if (!task.getTitle().startsWith(prefix)) {
+                break;
+            }
+            //a task renamed during the scan can be listed under both titles; keep the entry that was current
+            if (storedTask(task.getId()) == task && seen.add(task.getId())) {
+                matches.add(task);
+            }
+        }
+        return copyOf(matches);
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order to the given handler.
+     * The ID index is walked and tasks are looked up fetchSize at a time,
+     * so tasks deleted during the stream are skipped and no lock is held while
+     * the handler runs.
+     * 
+     * @param fetchSize the number of tasks looked up per step
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+        
+        int afterId = -1;
+        while (true) {
+            ITask[] chunk = getTasksPage(afterId, fetchSize, null);
+            for (ITask task : chunk) {
+                if (!handler.handle(task)) {
+                    return;
+                }
+            }
+            if (chunk.length < fetchSize) {
+                return;
+            }
+            afterId = chunk[chunk.length - 1].getId();
+        }
+    }
+    
+    /**
+     * Allocates a new unique task ID.
+     * IDs come from a counter kept above the highest ID ever stored,
+     * so no storage needs to be reserved.
+     * 
+     * @return a task ID that was not allocated or stored before
+     * @throws TaskManagerException if all positive int IDs are used up
+     */
+    @Override
+    public int nextTaskId() throws TaskManagerException {
+        long id = nextId.getAndIncrement();
+        if (id > Integer.MAX_VALUE) {
+            throw new TaskManagerException("No task IDs left to allocate");
+        }
+        return (int) id;
+    }
+    
+    /**
+     * Gets the ID the next call to nextTaskId would return.
+     * 
+     * @return the next task ID
+     */
+    long peekNextTaskId() {
+        return nextId.get();
+    }
+    
+    /**
+     * Moves the ID counter forward so that IDs below the given value are never allocated.
+     * 
+     * @param id the lowest ID that may still be allocated
+     */
+    void skipIdsBelow(long id) {
+        nextId.accumulateAndGet(id, Math::max);
+    }
+    
+    /**
+     * Keeps the ID counter above a stored ID.
+     * 
+     * @param id the ID of a stored task
+     */
+    private void noteStoredId(int id) {
+        skipIdsBelow((long) id + 1);
+    }
+    
+    /**
+     * Adds a new task.
+     * 
+     * @param task the task to add
+     * @throws TaskManagerException if a task with the same ID exists or the task is invalid
+     */
+    @Override
+    public void addTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Task stored = storedCopyOf(task, "Failed to add task");
+        stored.setVersion(0);
+        
+        int stripe = stripeOf(task.getId());
+        locks[stripe].writeLock().lock();
+        try {
+            if (maps[stripe].containsKey(task.getId())) {
+                throw new TaskManagerException("Failed to add task: task with ID " + task.getId() + " already exists");
+            }
+            store(maps[stripe], stored);
+            noteStoredId(task.getId());
+            changeLog.append(TaskChangeType.ADDED, task.getId());
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Updates an existing task and increments its version.
+     * 
+     * @param task the task to update
+     * @throws TaskManagerException if the task does not exist or is invalid
+     */
+    @Override
+    public void updateTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Task stored = storedCopyOf(task, "Failed to update task");
+        
+        int stripe = stripeOf(task.getId());
+        locks[stripe].writeLock().lock();
+        try {
+            ITask existing = maps[stripe].get(task.getId());
+            if (existing == null) {
+                throw new TaskManagerException("Task with ID " + task.getId() + " not found for update");
+            }
+            stored.setVersion(existing.getVersion() + 1);
+            store(maps[stripe], stored);
+            changeLog.append(TaskChangeType.UPDATED, task.getId());
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Updates an existing task only if its stored version equals the expected version.
+     * The check and the update happen under the write lock of the task's stripe.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws StaleTaskVersionException if the stored version differs from the expected version
+     * @throws TaskManagerException if the task does not exist or is invalid
+     */
+    @Override
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Task stored = storedCopyOf(task, "Failed to update task");
+        
+        int stripe = stripeOf(task.getId());
+        locks[stripe].writeLock().lock();
+        try {
+            ITask existing = maps[stripe].get(task.getId());
+            if (existing == null) {
+                throw new TaskManagerException("Task with ID " + task.getId() + " not found for update");
+            }
+            if (existing.getVersion() != expectedVersion) {
+                throw new StaleTaskVersionException(task.getId(), expectedVersion, existing.getVersion());
+            }
+            stored.setVersion(expectedVersion + 1);
+            store(maps[stripe], stored);
+            changeLog.append(TaskChangeType.UPDATED, task.getId());
+            return stored.getVersion();
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Saves a task, inserting it or replacing the task with the same ID.
+     * The existence check and the write happen under the write lock of the task's stripe.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if the task is invalid
+     */
+    @Override
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Task stored = storedCopyOf(task, "Failed to save task");
+        
+        int stripe = stripeOf(task.getId());
+        locks[stripe].writeLock().lock();
+        try {
+            return save(maps[stripe], stored);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Deletes all tasks.
+     * 
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTasks() throws TaskManagerException {
+        lockAll();
+        try {
+            clearAll();
+            changeLog.append(TaskChangeType.CLEARED, 0);
+        } finally {
+            unlockAll();
+        }
+    }
+    
+    /**
+     * Deletes a specific task by its ID.
+     * 
+     * @param id the unique identifier of the task to delete
+     * @throws TaskManagerException if the task does not exist
+     */
+    @Override
+    public void deleteTask(int id) throws TaskManagerException {
+        int stripe = stripeOf(id);
+        locks[stripe].writeLock().lock();
+        try {
+            if (unstore(maps[stripe], id) == null) {
+                throw new TaskManagerException("Task with ID " + id + " not found for deletion");
+            }
+            changeLog.append(TaskChangeType.DELETED, id);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Adds several tasks atomically with respect to other calls.
+     * Rows with an existing ID or invalid values are reported as failed.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        boolean[] failed = new boolean[ids.length];
+        
+        lockAll();
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                IntTaskMap map = maps[stripeOf(ids[i])];
+                Task stored = storedCopyOrNull(tasks[i]);
+                if (stored == null || map.containsKey(ids[i])) {
+                    failed[i] = true;
+                } else {
+                    stored.setVersion(0);
+                    store(map, stored);
+                    noteStoredId(ids[i]);
+                    changeLog.append(TaskChangeType.ADDED, ids[i]);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return new BatchResult(ids, failed);
+    }
+    
+    /**
+     * Updates several tasks atomically with respect to other calls.
+     * Tasks that do not exist or have invalid values are reported as failed.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        boolean[] failed = new boolean[ids.length];
+        
+        lockAll();
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                IntTaskMap map = maps[stripeOf(ids[i])];
+                Task stored = storedCopyOrNull(tasks[i]);
+                ITask existing = map.get(ids[i]);
+                if (stored == null || existing == null) {
+                    failed[i] = true;
+                } else {
+                    stored.setVersion(existing.getVersion() + 1);
+                    store(map, stored);
+                    changeLog.append(TaskChangeType.UPDATED, ids[i]);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return new BatchResult(ids, failed);
+    }
+    
+    /**
+     * Saves several tasks atomically with respect to other calls.
+     * Tasks with invalid values are reported as failed.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        SaveOutcome[] outcomes = new SaveOutcome[ids.length];
+        
+        lockAll();
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                Task stored = storedCopyOrNull(tasks[i]);
+                if (stored != null) {
+                    outcomes[i] = save(maps[stripeOf(ids[i])], stored);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return new SaveBatchResult(ids, outcomes);
+    }
+    
+    /**
+     * Inserts or replaces a stored task copy, setting its version.
+     * Called with the write lock of the task's stripe held.
+     * 
+     * @param map the map of the task's stripe
+     * @param stored the copy to store
+     * @return whether the task was inserted or updated
+     */
+    private SaveOutcome save(IntTaskMap map, Task stored) {
+        ITask existing = map.get(stored.getId());
+        stored.setVersion(existing == null ? 0 : existing.getVersion() + 1);
+        store(map, stored);
+        if (existing == null) {
+            noteStoredId(stored.getId());
+            changeLog.append(TaskChangeType.ADDED, stored.getId());
+            return SaveOutcome.INSERTED;
+        }
+        changeLog.append(TaskChangeType.UPDATED, stored.getId());
+        return SaveOutcome.UPDATED;
+    }
+    
+    /**
+     * Deletes several tasks atomically with respect to other calls.
+     * IDs that do not exist are reported as failed.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult deleteTasks(int[] ids) throws TaskManagerException {
+        if (ids == null) {
+            throw new IllegalArgumentException("Task IDs cannot be null");
+        }
+        boolean[] failed = new boolean[ids.length];
+        
+        lockAll();
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                failed[i] = unstore(maps[stripeOf(ids[i])], ids[i]) == null;
+                if (!failed[i]) {
+                    changeLog.append(TaskChangeType.DELETED, ids[i]);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return new BatchResult(ids, failed);
+    }
+    
+    /**
+     * Stores a task, replacing any task with the same ID and keeping its version.
+     * Used when tasks are restored from storage that already applied the column rules.
+     * 
+     * @param task the task to store
+     */
+    void putTask(ITask task) {
+        ITask stored = copyOf(task);
+        int stripe = stripeOf(stored.getId());
+        locks[stripe].writeLock().lock();
+        try {
+            store(maps[stripe], stored);
+            noteStoredId(stored.getId());
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes a task if it is present.
+     * Used when tasks are restored from storage that already applied the column rules.
+     * 
+     * @param id the task ID
+     */
+    void removeTask(int id) {
+        int stripe = stripeOf(id);
+        locks[stripe].writeLock().lock();
+        try {
+            unstore(maps[stripe], id);
+        } finally {
+            locks[stripe].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes every task.
+     * Used when tasks are restored from storage; like putTask and removeTask,
+     * this is not recorded in the change log.
+     */
+    void removeAllTasks() {
+        lockAll();
+        try {
+            clearAll();
+        } finally {
+            unlockAll();
+        }
+    }
+    
+    /**
+     * Reads the changes after a sequence number from the in-memory change log,
+     * together with the current values of the changed tasks.
+     * The log is not persisted, so sequences from an earlier run require a resync.
+     * 
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read and the sequence to continue from
+     * @throws TaskManagerException if a changed task cannot be read
+     */
+    @Override
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Change limit must be positive");
+        }
+        TaskChanges entries = changeLog.read(sequence, limit);
+        if (entries.isResyncRequired()) {
+            return entries;
+        }
+        
+        //tasks are looked up after reading the log, never while holding its lock
+        TaskChange[] changes = entries.getChanges();
+        for (int i = 0; i < changes.length; i++) {
+            TaskChange entry = changes[i];
+            ITask task = entry.getType() == TaskChangeType.CLEARED ? null : getTask(entry.getTaskId());
+            changes[i] = new TaskChange(entry.getSequence(), entry.getType(), entry.getTaskId(), task);
+        }
+        return new TaskChanges(changes, entries.getLastSequence(), false);
+    }
+    
+    /**
+     * Gets the sequence number of the latest change.
+     * 
+     * @return the latest change sequence
+     */
+    @Override
+    public long getLatestChangeSequence() {
+        return changeLog.getLatestSequence();
+    }
+    
+    /**
+     * Trims the changes up to a sequence number from the change log.
+     * The latest change is always kept.
+     * 
+     * @param sequence the last sequence number to trim
+     */
+    @Override
+    public void trimChanges(long sequence) {
+        changeLog.trimThrough(sequence);
+    }
+    
+    /**
+     * Counts the tasks.
+     * 
+     * @return the total number of tasks
+     */
+    @Override
+    public int countTasks() {
+        return size();
+    }
+    
+    /**
+     * Counts the tasks in each state from counters maintained on every change,
+     * so the cost does not depend on the number of tasks.
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     */
+    @Override
+    public Map<TaskState, Integer> countTasksByState() {
+        int[] counts = new int[TaskState.values().length];
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                for (TaskState state : TaskState.values()) {
+                    counts[state.ordinal()] += maps[stripe].countByState(state);
+                }
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        
+        Map<TaskState, Integer> result = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            result.put(state, counts[state.ordinal()]);
+        }
+        return result;
+    }
+    
+    /**
+     * Gets the number of stored tasks.
+     * 
+     * @return the number of tasks
+     */
+    public int size() {
+        int size = 0;
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                size += maps[stripe].size();
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Gets the stored instance of a task under the read lock of its stripe.
+     * The returned task must not be handed out.
+     * 
+     * @param id the task ID
+     * @return the stored task, or null if the ID is not present
+     */
+    private ITask storedTask(int id) {
+        int stripe = stripeOf(id);
+        locks[stripe].readLock().lock();
+        try {
+            return maps[stripe].get(id);
+        } finally {
+            locks[stripe].readLock().unlock();
+        }
+    }
+    
+    /**
+     * Stores a task copy in its stripe's map and updates the indexes.
+     * Called with the write lock of the task's stripe held. The new index entries
+     * are added before the old ones are removed, so a reader never misses the task.
+     * 
+     * @param map the map of the task's stripe
+     * @param stored the copy to store
+     * @return the task that was replaced, or null
+     */
+    private ITask store(IntTaskMap map, ITask stored) {
+        int id = stored.getId();
+        ITask previous = map.put(id, stored);
+        idIndex.add(id);
+        stateIndex.get(stored.getState()).add(id);
+        titleIndex.put(new TitleKey(stored.getTitle(), id), stored);
+        if (previous != null) {
+            if (previous.getState() != stored.getState()) {
+                stateIndex.get(previous.getState()).remove(id);
+            }
+            if (!previous.getTitle().equals(stored.getTitle())) {
+                titleIndex.remove(new TitleKey(previous.getTitle(), id));
+            }
+        }
+        return previous;
+    }
+    
+    /**
+     * Removes a task from its stripe's map and from the indexes.
+     * Called with the write lock of the task's stripe held.
+     * 
+     * @param map the map of the task's stripe
+     * @param id the task ID
+     * @return the removed task, or null if the ID was not present
+     */
+    private ITask unstore(IntTaskMap map, int id) {
+        ITask removed = map.remove(id);
+        if (removed != null) {
+            idIndex.remove(id);
+            stateIndex.get(removed.getState()).remove(id);
+            titleIndex.remove(new TitleKey(removed.getTitle(), id));
+        }
+        return removed;
+    }
+    
+    /**
+     * Removes every task from the maps and the indexes.
+     * Called with the write locks of all stripes held.
+     */
+    private void clearAll() {
+        for (IntTaskMap map : maps) {
+            map.clear();
+        }
+        idIndex.clear();
+        for (ConcurrentSkipListSet<Integer> ids : stateIndex.values()) {
+            ids.clear();
+        }
+        titleIndex.clear();
+    }
+    
+    /**
+     * Collects the stored tasks of every stripe, locking one stripe at a time.
+     * The returned tasks are the stored instances and must not be handed out.
+     * 
+     * @return the stored tasks in no particular order
+     */
+    private List<ITask> snapshot() {
+        List<ITask> tasks = new ArrayList<>();
+        for (int stripe = 0; stripe < maps.length; stripe++) {
+            locks[stripe].readLock().lock();
+            try {
+                maps[stripe].collectValues(tasks);
+            } finally {
+                locks[stripe].readLock().unlock();
+            }
+        }
+        return tasks;
+    }
+    
+    /**
+     * Acquires the write locks of all stripes, always in stripe order.
+     */
+    private void lockAll() {
+        for (ReentrantReadWriteLock lock : locks) {
+            lock.writeLock().lock();
+        }
+    }
+    
+    /**
+     * Releases the write locks of all stripes.
+     */
+    private void unlockAll() {
+        for (int i = locks.length - 1; i >= 0; i--) {
+            locks[i].writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Computes the stripe an ID belongs to.
+     * 
+     * @param id the task ID
+     * @return the stripe index
+     */
+    private int stripeOf(int id) {
+        return maps.length == 1 ? 0 : mix(id) >>> stripeShift;
+    }
+    
+    /**
+     * Spreads the bits of a task ID, so consecutive IDs land in different slots and stripes.
+     * 
+     * @param id the task ID
+     * @return the mixed hash of the ID
+     */
+    static int mix(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+    
+    /**
+     * Creates the copy of a task that is stored, applying the column rules of TasksDAO.
+     * 
+     * @param task the task to store
+     * @param errorMessage the message used if the task breaks a column rule
+     * @return a new task with the same values
+     * @throws TaskManagerException if the task cannot be stored
+     */
+    private static Task storedCopyOf(ITask task, String errorMessage) throws TaskManagerException {
+        Task stored = storedCopyOrNull(task);
+        if (stored == null) {
+            throw new TaskManagerException(errorMessage + ": task with ID " + task.getId() + " has invalid values");
+        }
+        return stored;
+    }
+    
+    /**
+     * Creates the copy of a task that is stored, or returns null if the task
+     * breaks a column rule of TasksDAO (for example a title longer than the column).
+     * 
+     * @param task the task to store
+     * @return a new task with the same values, or null if the task cannot be stored
+     */
+    private static Task storedCopyOrNull(ITask task) {
+        String title = task.getTitle();
+        if (title == null || title.length() > TasksSchema.MAX_TITLE_LENGTH || task.getState() == null) {
+            return null;
+        }
+        try {
+            return copyOf(task);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Collects the IDs of a batch of tasks, validating that no task is null.
+     * 
+     * @param tasks the tasks of the batch
+     * @return the task IDs in input order
+     */
+    private static int[] idsOf(ITask[] tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+        int[] ids = new int[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            if (tasks[i] == null) {
+                throw new IllegalArgumentException("Task cannot be null");
+            }
+            ids[i] = tasks[i].getId();
+        }
+        return ids;
+    }
+    
+    /**
+     * Creates an independent copy of a task, including its version.
+     * 
+     * @param task the task to copy
+     * @return a new task with the same values
+     */
+    private static Task copyOf(ITask task) {
+        String description = task.getDescription();
+        return new Task(task.getId(), task.getTitle(), description == null ? "" : description,
+                task.getState(), task.getVersion());
+    }
+    
+    /**
+     * Creates independent copies of the given tasks.
+     * 
+     * @param tasks the tasks to copy
+     * @return an array of new tasks with the same values
+     */
+    private static ITask[] copyOf(List<ITask> tasks) {
+        ITask[] copies = new ITask[tasks.size()];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = copyOf(tasks.get(i));
+        }
+        return copies;
+    }
+    
+    /**
+     * Key of the title index: the title, then the ID, so equal titles stay apart.
+     */
+    private static final class TitleKey implements Comparable<TitleKey> {
+        
+        //private variables declaration
+        private final String title;
+        private final int id;
+        
+        TitleKey(String title, int id) {
+            this.title = title;
+            this.id = id;
+        }
+        
+        @Override
+        public int compareTo(TitleKey other) {
+            int order = title.compareTo(other.title);
+            return order != 0 ? order : Integer.compare(id, other.id);
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof TitleKey && compareTo((TitleKey) other) == 0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * title.hashCode() + id;
+        }
+    }
+}
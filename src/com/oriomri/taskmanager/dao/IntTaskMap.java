@@ -0,0 +1,240 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.TaskState;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hash map from primitive int task IDs to tasks.
+ * Uses open addressing with linear probing over parallel key and value arrays,
+ * so IDs are never boxed and a lookup touches no per-entry objects.
+ * Removal shifts the following entries back instead of leaving tombstones.
+ * The number of tasks in each state is kept up to date on every change,
+ * so state counts cost no scan.
+ * This class is not thread-safe; callers synchronize access.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class IntTaskMap {
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    //private variables declaration
+    private int[] keys;
+    private ITask[] values; //a null value marks an empty slot
+    private int mask;
+    private int size;
+    private final int[] stateCounts;
+    
+    /**
+     * Constructs an empty map.
+     */
+    IntTaskMap() {
+        stateCounts = new int[TaskState.values().length];
+        allocate(MIN_CAPACITY);
+    }
+    
+    /**
+     * Gets the task stored under an ID.
+     * 
+     * @param id the task ID
+     * @return the task, or null if the ID is not present
+     */
+    ITask get(int id) {
+        int index = indexOf(id);
+        while (values[index] != null) {
+            if (keys[index] == id) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Checks whether an ID is present.
+     * 
+     * @param id the task ID
+     * @return true if the map holds a task for the ID
+     */
+    boolean containsKey(int id) {
+        return get(id) != null;
+    }
+    
+    /**
+     * Stores a task under an ID, replacing any previous task.
+     * 
+     * @param id the task ID
+     * @param task the task to store, not null
+     * @return the previous task, or null if the ID was not present
+     */
+    ITask put(int id, ITask task) {
+        int index = indexOf(id);
+        while (values[index] != null) {
+            if (keys[index] == id) {
+                ITask previous = values[index];
+                values[index] = task;
+                stateCounts[previous.getState().ordinal()]--;
+                stateCounts[task.getState().ordinal()]++;
+                return previous;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = id;
+        values[index] = task;
+        stateCounts[task.getState().ordinal()]++;
+        
+        //keep the load factor at or below 1/2 so probe sequences stay short
+        if (++size > (mask + 1) / 2) {
+            rehash((mask + 1) * 2);
+        }
+        return null;
+    }
+    
+    /**
+     * Removes the task stored under an ID.
+     * 
+     * @param id the task ID
+     * @return the removed task, or null if the ID was not present
+     */
+    ITask remove(int id) {
+        int index = indexOf(id);
+        while (values[index] != null) {
+            if (keys[index] == id) {
+                ITask removed = values[index];
+                shiftBack(index);
+                size--;
+                stateCounts[removed.getState().ordinal()]--;
+                return removed;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+    
+    /**
+     * Removes every task and shrinks the table back to its initial capacity.
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+        Arrays.fill(stateCounts, 0);
+    }
+    
+    /**
+     * Gets the number of stored tasks.
+     * 
+     * @return the number of entries
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Gets the number of stored tasks in a state.
+     * 
+     * @param state the task state
+     * @return the number of entries whose task is in that state
+     */
+    int countByState(TaskState state) {
+        return stateCounts[state.ordinal()];
+    }
+    
+    /**
+     * Adds every stored task to a list, in table order.
+     * 
+     * @param target the list that receives the tasks
+     */
+    void collectValues(List<ITask> target) {
+        for (ITask value : values) {
+            if (value != null) {
+                target.add(value);
+            }
+        }
+    }
+    
+    /**
+     * Copies every stored ID into an array, in table order.
+     * 
+     * @param target the array that receives the IDs
+     * @param offset the position of the first copied ID
+     * @return the position after the last copied ID
+     */
+    int collectKeys(int[] target, int offset) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                target[offset++] = keys[i];
+            }
+        }
+        return offset;
+    }
+    
+    /**
+     * Fills the hole left at a removed slot by moving back later entries of
+     * the same probe run whose home slot is not between the hole and themselves.
+     * 
+     * @param hole the slot that was just emptied
+     */
+    private void shiftBack(int hole) {
+        int index = hole;
+        while (true) {
+            index = (index + 1) & mask;
+            if (values[index] == null) {
+                break;
+            }
+            int home = indexOf(keys[index]);
+            //move the entry if its home slot lies cyclically outside (hole, index]
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                keys[hole] = keys[index];
+                values[hole] = values[index];
+                hole = index;
+            }
+        }
+        values[hole] = null;
+    }
+    
+    /**
+     * Moves every entry into a table of the given capacity.
+     * 
+     * @param capacity the new table capacity, a power of two
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        ITask[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int index = indexOf(oldKeys[i]);
+                while (values[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Allocates empty key and value arrays.
+     * 
+     * @param capacity the table capacity, a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new ITask[capacity];
+        mask = capacity - 1;
+    }
+    
+    /**
+     * Computes the home slot of an ID.
+     * 
+     * @param id the task ID
+     * @return the first slot probed for the ID
+     */
+    private int indexOf(int id) {
+        return InMemoryTasksDAO.mix(id) & mask;
+    }
+}
@@ -0,0 +1,965 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.StaleTaskVersionException;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Data Access Object that persists tasks in an append-only journal file.
+ * Every mutation appends a record to the journal through memory-mapped regions
+ * of the file, and the current tasks are kept in memory, indexed by ID, in an
+ * InMemoryTasksDAO that serves all reads. Writes are cheap sequential appends
+ * with no SQL or JDBC involved.
+ * 
+ * Each record carries its length and a CRC32 checksum. On startup the journal
+ * is replayed to rebuild the tasks, stopping at the first incomplete or
+ * corrupt record, which is where a crash interrupted the last write; the
+ * file is cut back to that point. A background thread compacts the journal,
+ * rewriting it with one record per live task once superseded records
+ * outnumber live ones.
+ * 
+ * Records reach the operating system as soon as they are written, so they
+ * survive a crash of the process. With syncWrites they are also forced to
+ * the disk before each call returns, which survives a power loss as well.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class JournalTasksDAO implements ITasksDAO {
+    
+    private static final int MAGIC = 0x544A4E4C; //"TJNL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8; //payload length and CRC32
+    private static final long REGION_SIZE = 16L * 1024 * 1024;
+    private static final long MIN_DEAD_RECORDS_FOR_COMPACTION = 10000;
+    private static final int COMPACTION_BUFFER_SIZE = 1 << 20;
+    private static final byte PUT_RECORD = 1;
+    private static final byte DELETE_RECORD = 2;
+    private static final byte CLEAR_RECORD = 3;
+    private static final byte RESERVE_IDS_RECORD = 4;
+    private static final byte VERSIONED_PUT_RECORD = 5;
+    private static final int ID_BLOCK_SIZE = 100;
+    
+    //private variables declaration
+    private final Path journalFile;
+    private final boolean syncWrites;
+    private final InMemoryTasksDAO tasks;
+    private final Object journalLock;
+    private final ExecutorService compactor;
+    private final AtomicBoolean compactionScheduled;
+    private final IdBlockAllocator idAllocator;
+    private FileChannel channel;
+    private MappedByteBuffer region;
+    private long position;
+    private long recordCount;
+    private long compactionCount;
+    private long reservedIdLimit;
+    private ByteBuffer recordBuffer;
+    private IOException writeFailure;
+    private boolean closed;
+    
+    /**
+     * Opens the journal at the given path, creating it if it does not exist,
+     * and replays it to restore the stored tasks.
+     * 
+     * @param journalFile the journal file
+     * @param syncWrites whether every call forces its records to the disk before returning
+     * @throws TaskManagerException if the journal cannot be opened or is not a task journal
+     */
+    public JournalTasksDAO(Path journalFile, boolean syncWrites) throws TaskManagerException {
+        if (journalFile == null) {
+            throw new IllegalArgumentException("Journal file cannot be null");
+        }
+        this.journalFile = journalFile;
+        this.syncWrites = syncWrites;
+        this.tasks = new InMemoryTasksDAO();
+        this.journalLock = new Object();
+        this.compactionScheduled = new AtomicBoolean();
+        this.recordBuffer = ByteBuffer.allocate(4096);
+        this.idAllocator = new IdBlockAllocator(ID_BLOCK_SIZE, this::reserveIdBlock);
+        this.compactor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        try {
+            open();
+        } catch (IOException e) {
+            compactor.shutdown();
+            throw new TaskManagerException("Failed to open task journal: " + journalFile, e);
+        }
+    }
+    
+    /**
+     * Opens the journal file, writing the file header to a new journal
+     * or replaying an existing one.
+     * 
+     * @throws IOException if the file cannot be read or written
+     * @throws TaskManagerException if the file is not a task journal
+     */
+    private void open() throws IOException, TaskManagerException {
+        Path parent = journalFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(journalFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        
+        if (channel.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+            position = FILE_HEADER_SIZE;
+        } else {
+            position = replay();
+            if (position < channel.size()) {
+                //drop the torn record left by a crash so new records follow valid ones
+                channel.truncate(position);
+            }
+        }
+    }
+    
+    /**
+     * Replays the journal records into the in-memory tasks.
+     * 
+     * @return the file offset after the last valid record
+     * @throws IOException if the file cannot be read
+     * @throws TaskManagerException if the file is not a task journal
+     */
+    private long replay() throws IOException, TaskManagerException {
+        long size = channel.size();
+        channel.position(0);
+        //the stream is not closed because that would close the channel
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), 1 << 16));
+        
+        if (size < FILE_HEADER_SIZE || in.readInt() != MAGIC) {
+            throw new TaskManagerException("Not a task journal: " + journalFile);
+        }
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new TaskManagerException("Unsupported task journal version " + version + ": " + journalFile);
+        }
+        
+        long end = FILE_HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        try {
+            while (end + RECORD_HEADER_SIZE <= size) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > size - end - RECORD_HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                applyRecord(ByteBuffer.wrap(payload));
+                end += RECORD_HEADER_SIZE + length;
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            //the last record is incomplete; the journal ends after the previous one
+        }
+        return end;
+    }
+    
+    /**
+     * Applies one replayed record to the in-memory tasks.
+     * 
+     * @param payload the record payload
+     * @throws TaskManagerException if the record cannot be applied
+     */
+    private void applyRecord(ByteBuffer payload) throws TaskManagerException {
+        byte type = payload.get();
+        int id = payload.getInt();
+        switch (type) {
+            case PUT_RECORD:
+            case VERSIONED_PUT_RECORD:
+                TaskState state = TaskState.fromCode(payload.get());
+                int version;
+                if (type == VERSIONED_PUT_RECORD) {
+                    version = payload.getInt();
+                } else {
+                    //journals written before versions count every put after the first as an update
+                    ITask previous = tasks.getTask(id);
+                    version = previous == null ? 0 : previous.getVersion() + 1;
+                }
+                String title = readString(payload);
+                String description = readString(payload);
+                tasks.putTask(new Task(id, title, description, state, version));
+                break;
+            case DELETE_RECORD:
+                tasks.removeTask(id);
+                break;
+            case CLEAR_RECORD:
+                tasks.removeAllTasks();
+                break;
+            case RESERVE_IDS_RECORD:
+                //IDs below the reserved limit may have been handed out before the restart
+                reservedIdLimit = Math.max(reservedIdLimit, id);
+                tasks.skipIdsBelow(reservedIdLimit);
+                break;
+            default:
+                throw new IllegalStateException("Unknown journal record type: " + type);
+        }
+    }
+    
+    /**
+     * Retrieves all tasks.
+     * 
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks() throws TaskManagerException {
+        return tasks.getTasks();
+    }
+    
+    /**
+     * Retrieves all tasks. Both projections return complete tasks.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(TaskProjection projection) throws TaskManagerException {
+        return tasks.getTasks(projection);
+    }
+    
+    /**
+     * Retrieves a specific task by its ID.
+     * 
+     * @param id the unique identifier of the task to retrieve
+     * @return the task with the specified ID, or null if not found
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask getTask(int id) throws TaskManagerException {
+        return tasks.getTask(id);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID, starting after the given ID.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        return tasks.getTasksPage(afterId, limit, state);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID. Both projections return complete tasks.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        return tasks.getTasksPage(afterId, limit, state, projection);
+    }
+    
+    /**
+     * Retrieves all tasks in the given state, ordered by ID.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        return tasks.getTasksByState(state);
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix, ordered by title.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        return tasks.getTasksByTitlePrefix(prefix);
+    }
+    
+    /**
+     * Reads the changes after a sequence number from the in-memory change log.
+     * The change log is not written to the journal, so sequences from before a
+     * restart require a resync.
+     * 
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read and the sequence to continue from
+     * @throws TaskManagerException if a changed task cannot be read
+     */
+    @Override
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        return tasks.getChangesSince(sequence, limit);
+    }
+    
+    /**
+     * Gets the sequence number of the latest change.
+     * 
+     * @return the latest change sequence
+     */
+    @Override
+    public long getLatestChangeSequence() {
+        return tasks.getLatestChangeSequence();
+    }
+    
+    /**
+     * Trims the changes up to a sequence number from the change log.
+     * 
+     * @param sequence the last sequence number to trim
+     */
+    @Override
+    public void trimChanges(long sequence) {
+        tasks.trimChanges(sequence);
+    }
+    
+    /**
+     * Counts the tasks.
+     * 
+     * @return the total number of tasks
+     */
+    @Override
+    public int countTasks() {
+        return tasks.countTasks();
+    }
+    
+    /**
+     * Counts the tasks in each state from the counters of the in-memory tasks.
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     */
+    @Override
+    public Map<TaskState, Integer> countTasksByState() {
+        return tasks.countTasksByState();
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order to the given handler.
+     * 
+     * @param fetchSize the number of tasks looked up per step
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        tasks.forEachTask(fetchSize, handler);
+    }
+    
+    /**
+     * Allocates a new unique task ID.
+     * IDs are handed out from blocks whose reservation is recorded in the journal,
+     * so IDs handed out before a restart are never handed out again.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new block of IDs cannot be reserved
+     */
+    @Override
+    public int nextTaskId() throws TaskManagerException {
+        return idAllocator.nextId();
+    }
+    
+    /**
+     * Reserves the next block of IDs above every stored and reserved ID
+     * and records the new reserved limit in the journal.
+     * 
+     * @param blockSize the number of IDs in the block
+     * @return the first ID of the block
+     * @throws TaskManagerException if all IDs are used up or the journal cannot be written
+     */
+    private int reserveIdBlock(int blockSize) throws TaskManagerException {
+        synchronized (journalLock) {
+            checkWritable();
+            long start = Math.max(reservedIdLimit, tasks.peekNextTaskId());
+            if (start > Integer.MAX_VALUE) {
+                throw new TaskManagerException("No task IDs left to allocate");
+            }
+            reservedIdLimit = Math.min(start + blockSize, Integer.MAX_VALUE);
+            tasks.skipIdsBelow(reservedIdLimit);
+            append(RESERVE_IDS_RECORD, (int) reservedIdLimit, null);
+            commit();
+            return (int) start;
+        }
+    }
+    
+    /**
+     * Adds a new task and appends it to the journal.
+     * 
+     * @param task the task to add
+     * @throws TaskManagerException if the task cannot be added or the journal cannot be written
+     */
+    @Override
+    public void addTask(ITask task) throws TaskManagerException {
+        synchronized (journalLock) {
+            checkWritable();
+            tasks.addTask(task);
+            idAllocator.skipIdsBelow(task.getId() + 1L);
+            appendPut(task.getId());
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+    }
+    
+    /**
+     * Updates an existing task and appends the new values to the journal.
+     * 
+     * @param task the task to update
+     * @throws TaskManagerException if the task does not exist or the journal cannot be written
+     */
+    @Override
+    public void updateTask(ITask task) throws TaskManagerException {
+        synchronized (journalLock) {
+            checkWritable();
+            tasks.updateTask(task);
+            appendPut(task.getId());
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+    }
+    
+    /**
+     * Updates an existing task only if its stored version equals the expected version,
+     * and appends the new values to the journal.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws StaleTaskVersionException if the stored version differs from the expected version
+     * @throws TaskManagerException if the task does not exist or the journal cannot be written
+     */
+    @Override
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        int version;
+        synchronized (journalLock) {
+            checkWritable();
+            version = tasks.updateTask(task, expectedVersion);
+            appendPut(task.getId());
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return version;
+    }
+    
+    /**
+     * Saves a task, inserting or replacing it, and appends its stored values to the journal.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if the task is invalid or the journal cannot be written
+     */
+    @Override
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        SaveOutcome outcome;
+        synchronized (journalLock) {
+            checkWritable();
+            outcome = tasks.saveTask(task);
+            idAllocator.skipIdsBelow(task.getId() + 1L);
+            appendPut(task.getId());
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return outcome;
+    }
+    
+    /**
+     * Deletes all tasks and appends a clear record to the journal.
+     * 
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    @Override
+    public void deleteTasks() throws TaskManagerException {
+        synchronized (journalLock) {
+            checkWritable();
+            tasks.deleteTasks();
+            append(CLEAR_RECORD, 0, null);
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+    }
+    
+    /**
+     * Deletes a specific task and appends a delete record to the journal.
+     * 
+     * @param id the unique identifier of the task to delete
+     * @throws TaskManagerException if the task does not exist or the journal cannot be written
+     */
+    @Override
+    public void deleteTask(int id) throws TaskManagerException {
+        synchronized (journalLock) {
+            checkWritable();
+            tasks.deleteTask(id);
+            append(DELETE_RECORD, id, null);
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+    }
+    
+    /**
+     * Adds several tasks and appends the added ones to the journal.
+     * With syncWrites the whole batch is forced to the disk once.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    @Override
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        BatchResult result;
+        synchronized (journalLock) {
+            checkWritable();
+            result = this.tasks.addTasks(tasks);
+            for (int i = 0; i < tasks.length; i++) {
+                if (result.isSucceeded(i)) {
+                    idAllocator.skipIdsBelow(tasks[i].getId() + 1L);
+                    appendPut(tasks[i].getId());
+                }
+            }
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return result;
+    }
+    
+    /**
+     * Updates several tasks and appends the updated ones to the journal.
+     * With syncWrites the whole batch is forced to the disk once.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    @Override
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        BatchResult result;
+        synchronized (journalLock) {
+            checkWritable();
+            result = this.tasks.updateTasks(tasks);
+            for (int i = 0; i < tasks.length; i++) {
+                if (result.isSucceeded(i)) {
+                    appendPut(tasks[i].getId());
+                }
+            }
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return result;
+    }
+    
+    /**
+     * Saves several tasks and appends the saved ones to the journal.
+     * With syncWrites the whole batch is forced to the disk once.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    @Override
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        SaveBatchResult result;
+        synchronized (journalLock) {
+            checkWritable();
+            result = this.tasks.saveTasks(tasks);
+            for (int i = 0; i < tasks.length; i++) {
+                if (result.isSucceeded(i)) {
+                    idAllocator.skipIdsBelow(tasks[i].getId() + 1L);
+                    appendPut(tasks[i].getId());
+                }
+            }
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return result;
+    }
+    
+    /**
+     * Deletes several tasks and appends the deletions to the journal.
+     * With syncWrites the whole batch is forced to the disk once.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    @Override
+    public BatchResult deleteTasks(int[] ids) throws TaskManagerException {
+        BatchResult result;
+        synchronized (journalLock) {
+            checkWritable();
+            result = tasks.deleteTasks(ids);
+            for (int i = 0; i < ids.length; i++) {
+                if (result.isSucceeded(i)) {
+                    append(DELETE_RECORD, ids[i], null);
+                }
+            }
+            commit();
+        }
+        scheduleCompactionIfNeeded();
+        return result;
+    }
+    
+    /**
+     * Rewrites the journal with one record per live task.
+     * The live tasks are written to a new file while writers continue; records
+     * appended in the meantime are copied over before the new file replaces the old one.
+     * 
+     * @throws TaskManagerException if the journal cannot be compacted
+     */
+    public void compact() throws TaskManagerException {
+        ITask[] snapshot;
+        long snapshotEnd;
+        long recordsAtSnapshot;
+        int snapshotIdLimit;
+        synchronized (journalLock) {
+            checkWritable();
+            snapshot = tasks.getTasks();
+            snapshotIdLimit = (int) reservedIdLimit;
+            snapshotEnd = position;
+            recordsAtSnapshot = recordCount;
+        }
+        
+        Path compacted = journalFile.resolveSibling(journalFile.getFileName() + ".compact");
+        boolean replaced = false;
+        try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            //the stream is not closed because that would close the channel
+            OutputStream stream = new BufferedOutputStream(Channels.newOutputStream(out), COMPACTION_BUFFER_SIZE);
+            ByteBuffer buffer = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION);
+            stream.write(buffer.array(), 0, FILE_HEADER_SIZE);
+            for (ITask task : snapshot) {
+                buffer = encode(buffer, VERSIONED_PUT_RECORD, task.getId(), task);
+                stream.write(buffer.array(), 0, buffer.limit());
+            }
+            buffer = encode(buffer, RESERVE_IDS_RECORD, snapshotIdLimit, null);
+            stream.write(buffer.array(), 0, buffer.limit());
+            stream.flush();
+            
+            synchronized (journalLock) {
+                checkWritable();
+                //carry over the records written since the snapshot was taken
+                long tailStart = snapshotEnd;
+                while (tailStart < position) {
+                    tailStart += channel.transferTo(tailStart, position - tailStart, out);
+                }
+                out.force(true);
+                swapIn(compacted, out.size());
+                recordCount = snapshot.length + 1 + (recordCount - recordsAtSnapshot);
+                compactionCount++;
+                replaced = true;
+            }
+        } catch (IOException e) {
+            throw new TaskManagerException("Failed to compact task journal: " + journalFile, e);
+        } finally {
+            if (!replaced) {
+                try {
+                    Files.deleteIfExists(compacted);
+                } catch (IOException e) {
+                    System.err.println("Error deleting compacted journal: " + e.getMessage());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Replaces the journal with a compacted file and reopens it for appending.
+     * Called with the journal lock held.
+     * 
+     * @param compacted the compacted journal file
+     * @param compactedSize the size of the compacted journal
+     * @throws IOException if the old journal cannot be reopened after a failed replacement
+     */
+    private void swapIn(Path compacted, long compactedSize) throws IOException {
+        region = null;
+        channel.close();
+        try {
+            Files.move(compacted, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            position = compactedSize;
+        } catch (IOException e) {
+            //keep using the old journal, which is still complete
+            channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            throw e;
+        }
+        try {
+            channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            writeFailure = e;
+            throw e;
+        }
+    }
+    
+    /**
+     * Starts a background compaction if superseded records outnumber the live tasks.
+     */
+    private void scheduleCompactionIfNeeded() {
+        long live = tasks.size();
+        long dead;
+        synchronized (journalLock) {
+            if (closed || writeFailure != null) {
+                return;
+            }
+            dead = recordCount - live;
+        }
+        if (dead < Math.max(MIN_DEAD_RECORDS_FOR_COMPACTION, live) || !compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        compactor.execute(() -> {
+            try {
+                compact();
+            } catch (TaskManagerException e) {
+                //log the error unless the journal was closed meanwhile; the old journal stays in use
+                if (!isClosed()) {
+                    System.err.println("Task journal compaction failed: " + e.getMessage());
+                }
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+    
+    /**
+     * Appends a put record holding the current stored values of a task, including its version.
+     * Called with the journal lock held.
+     * 
+     * @param id the ID of the stored task
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    private void appendPut(int id) throws TaskManagerException {
+        append(VERSIONED_PUT_RECORD, id, tasks.getTask(id));
+    }
+    
+    /**
+     * Appends one record to the journal through the current mapped region.
+     * Called with the journal lock held.
+     * 
+     * @param type the record type
+     * @param id the task ID
+     * @param task the task values for put records, otherwise null
+     * @throws TaskManagerException if the journal cannot be written
+     */
+    private void append(byte type, int id, ITask task) throws TaskManagerException {
+        recordBuffer = encode(recordBuffer, type, id, task);
+        int length = recordBuffer.remaining();
+        try {
+            if (region == null || region.remaining() < length) {
+                if (region != null && syncWrites) {
+                    region.force();
+                }
+                //mapping past the end of the file extends it
+                region = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(REGION_SIZE, length));
+            }
+            region.put(recordBuffer);
+        } catch (IOException e) {
+            writeFailure = e;
+            throw new TaskManagerException("Failed to write task journal: " + journalFile, e);
+        }
+        position += length;
+        recordCount++;
+    }
+    
+    /**
+     * Forces the records of the current call to the disk when syncWrites is set.
+     * Called with the journal lock held.
+     */
+    private void commit() {
+        if (syncWrites && region != null) {
+            region.force();
+        }
+    }
+    
+    /**
+     * Checks that the journal accepts writes.
+     * Called with the journal lock held.
+     * 
+     * @throws TaskManagerException if the journal is closed or a previous write failed
+     */
+    private void checkWritable() throws TaskManagerException {
+        if (closed) {
+            throw new TaskManagerException("Task journal is closed: " + journalFile);
+        }
+        if (writeFailure != null) {
+            throw new TaskManagerException("Task journal is unusable after a write failure: " + journalFile,
+                    writeFailure);
+        }
+    }
+    
+    /**
+     * Checks whether the journal has been closed.
+     * 
+     * @return true if close() was called
+     */
+    private boolean isClosed() {
+        synchronized (journalLock) {
+            return closed;
+        }
+    }
+    
+    /**
+     * Gets the path of the journal file.
+     * 
+     * @return the journal file
+     */
+    public Path getJournalFile() {
+        return journalFile;
+    }
+    
+    /**
+     * Gets the number of bytes of valid records in the journal, including the file header.
+     * 
+     * @return the journal length in bytes
+     */
+    public long getJournalLength() {
+        synchronized (journalLock) {
+            return position;
+        }
+    }
+    
+    /**
+     * Gets the number of records in the journal, live and superseded.
+     * 
+     * @return the number of journal records
+     */
+    public long getRecordCount() {
+        synchronized (journalLock) {
+            return recordCount;
+        }
+    }
+    
+    /**
+     * Gets the number of completed compactions since the journal was opened.
+     * 
+     * @return the number of compactions
+     */
+    public long getCompactionCount() {
+        synchronized (journalLock) {
+            return compactionCount;
+        }
+    }
+    
+    /**
+     * Closes the journal. Unused space left by the last mapped region is cut off.
+     */
+    public void close() {
+        compactor.shutdown();
+        synchronized (journalLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            commit();
+            region = null;
+            try {
+                channel.truncate(position);
+            } catch (IOException e) {
+                //some platforms refuse to shrink a mapped file; replay skips the unused space
+                System.err.println("Error truncating task journal: " + e.getMessage());
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                //log the error but don't throw exception during shutdown
+                System.err.println("Error closing task journal: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Encodes a record with its length and checksum header.
+     * 
+     * @param buffer a buffer to reuse, replaced by a larger one if needed
+     * @param type the record type
+     * @param id the task ID
+     * @param task the task values for put records, otherwise null
+     * @return the buffer holding the record, ready to be read
+     */
+    private static ByteBuffer encode(ByteBuffer buffer, byte type, int id, ITask task) {
+        byte[] title = task == null ? null : task.getTitle().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task == null || task.getDescription() == null
+                ? new byte[0] : task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int payloadLength = 5;
+        if (task != null) {
+            payloadLength += 1 + 4 + title.length + 4 + description.length;
+        }
+        if (type == VERSIONED_PUT_RECORD) {
+            payloadLength += 4;
+        }
+        
+        int length = RECORD_HEADER_SIZE + payloadLength;
+        if (buffer.capacity() < length) {
+            buffer = ByteBuffer.allocate(Math.max(length, buffer.capacity() * 2));
+        }
+        buffer.clear();
+        buffer.position(RECORD_HEADER_SIZE);
+        buffer.put(type).putInt(id);
+        if (task != null) {
+            buffer.put((byte) task.getState().getCode());
+            if (type == VERSIONED_PUT_RECORD) {
+                buffer.putInt(task.getVersion());
+            }
+            buffer.putInt(title.length).put(title);
+            buffer.putInt(description.length).put(description);
+        }
+        
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), RECORD_HEADER_SIZE, payloadLength);
+        buffer.putInt(0, payloadLength);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+    
+    /**
+     * Reads a length-prefixed UTF-8 string from a record payload.
+     * 
+     * @param payload the record payload
+     * @return the decoded string
+     */
+    private static String readString(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.getInt()];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
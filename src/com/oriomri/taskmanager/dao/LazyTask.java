@@ -0,0 +1,119 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.TaskState;
+
+/**
+ * Read-only task returned by summary queries.
+ * The ID, title and state are read with the list; the description is
+ * fetched from the database the first time it is requested.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class LazyTask implements ITask {
+    
+    //private variables declaration
+    private final int id;
+    private final String title;
+    private final TaskState state;
+    private final int version;
+    private final DescriptionBatch batch;
+    private volatile String description;
+    
+    /**
+     * Constructs a lazily described task.
+     * 
+     * @param id the task ID
+     * @param title the task title
+     * @param state the task state
+     * @param version the task version
+     * @param batch the group that loads this task's description
+     */
+    LazyTask(int id, String title, TaskState state, int version, DescriptionBatch batch) {
+        this.id = id;
+        this.title = title;
+        this.state = state;
+        this.version = version;
+        this.batch = batch;
+    }
+    
+    @Override
+    public int getId() {
+        return id;
+    }
+    
+    @Override
+    public String getTitle() {
+        return title;
+    }
+    
+    /**
+     * Gets the description of the task, loading it on first call.
+     * 
+     * @return the task description
+     * @throws IllegalStateException if the description cannot be loaded
+     */
+    @Override
+    public String getDescription() {
+        String loaded = description;
+        if (loaded == null) {
+            try {
+                loaded = batch.descriptionOf(id);
+            } catch (TaskManagerException e) {
+                throw new IllegalStateException("Failed to load description of task with ID: " + id, e);
+            }
+            description = loaded;
+        }
+        return loaded;
+    }
+    
+    @Override
+    public TaskState getState() {
+        return state;
+    }
+    
+    @Override
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Checks if this task is equal to another object.
+     * Two lazy tasks are equal if they have the same ID.
+     * 
+     * @param obj the object to compare with
+     * @return true if the objects are equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return id == ((LazyTask) obj).id;
+    }
+    
+    /**
+     * Generates a hash code for this task based on its ID.
+     * 
+     * @return the hash code for this task
+     */
+    @Override
+    public int hashCode() {
+        return Integer.hashCode(id);
+    }
+    
+    /**
+     * Returns a string representation of this task without loading the description.
+     * 
+     * @return a string containing the task summary
+     */
+    @Override
+    public String toString() {
+        return "Task{id=" + id + ", title='" + title + "', state=" + state + '}';
+    }
+}
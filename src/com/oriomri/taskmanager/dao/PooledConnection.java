@@ -0,0 +1,85 @@
+package com.oriomri.taskmanager.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * A database connection borrowed from a ConnectionPool.
+ * Each pooled connection owns its own statement cache, so cached statements
+ * are never shared between threads. Closing a pooled connection returns it
+ * to the pool instead of closing the physical connection.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class PooledConnection implements AutoCloseable {
+    
+    //private variables declaration
+    private final ConnectionPool pool;
+    private final Connection connection;
+    private final StatementCache statementCache;
+    
+    /**
+     * Constructs a pooled connection around a physical connection.
+     * 
+     * @param pool the pool this connection belongs to
+     * @param connection the physical database connection
+     */
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+        this.statementCache = new StatementCache(connection);
+    }
+    
+    /**
+     * Gets the underlying physical connection.
+     * 
+     * @return the physical database connection
+     */
+    public Connection getConnection() {
+        return connection;
+    }
+    
+    /**
+     * Gets the statement cache bound to this connection.
+     * 
+     * @return the statement cache of this connection
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+    
+    /**
+     * Returns a cached prepared statement for the given SQL.
+     * 
+     * @param sql the SQL text of the statement
+     * @return the cached prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        return statementCache.prepare(sql);
+    }
+    
+    /**
+     * Returns this connection to its pool.
+     */
+    @Override
+    public void close() {
+        pool.release(this);
+    }
+    
+    /**
+     * Closes the cached statements and the physical connection.
+     * This method is called by the pool when it discards the connection.
+     */
+    void closePhysical() {
+        statementCache.close();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            //log the error but don't throw exception during shutdown
+            System.err.println("Error closing database connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.oriomri.taskmanager.dao;
+
+import java.util.Arrays;
+
+/**
+ * Result of a batch save (upsert) on the tasks table.
+ * In addition to whether each row was applied, records whether it inserted
+ * a new task or updated an existing one.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SaveBatchResult extends BatchResult {
+    
+    //private variables declaration
+    private final SaveOutcome[] outcomes;
+    
+    /**
+     * Constructs a save batch result.
+     * 
+     * @param ids the task IDs of the batch rows in input order
+     * @param outcomes for each row, whether it was inserted or updated, or null if it failed
+     */
+    public SaveBatchResult(int[] ids, SaveOutcome[] outcomes) {
+        super(ids, failedFlags(outcomes));
+        this.outcomes = Arrays.copyOf(outcomes, outcomes.length);
+    }
+    
+    /**
+     * Gets whether the row at the given position inserted or updated its task.
+     * 
+     * @param index the position of the row in the batch
+     * @return the outcome of the row, or null if the row failed
+     */
+    public SaveOutcome getOutcome(int index) {
+        return outcomes[index];
+    }
+    
+    /**
+     * Gets the number of rows that inserted a new task.
+     * 
+     * @return the number of inserted rows
+     */
+    public int getInsertedCount() {
+        return count(SaveOutcome.INSERTED);
+    }
+    
+    /**
+     * Gets the number of rows that updated an existing task.
+     * 
+     * @return the number of updated rows
+     */
+    public int getUpdatedCount() {
+        return count(SaveOutcome.UPDATED);
+    }
+    
+    /**
+     * Counts the rows with the given outcome.
+     * 
+     * @param outcome the outcome to count
+     * @return the number of rows with that outcome
+     */
+    private int count(SaveOutcome outcome) {
+        int count = 0;
+        for (SaveOutcome rowOutcome : outcomes) {
+            if (rowOutcome == outcome) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Derives the failure flags of the batch from the row outcomes.
+     * 
+     * @param outcomes the row outcomes, null for failed rows
+     * @return for each row, whether it failed
+     */
+    private static boolean[] failedFlags(SaveOutcome[] outcomes) {
+        if (outcomes == null) {
+            throw new IllegalArgumentException("Outcomes cannot be null");
+        }
+        boolean[] failed = new boolean[outcomes.length];
+        for (int i = 0; i < outcomes.length; i++) {
+            failed[i] = outcomes[i] == null;
+        }
+        return failed;
+    }
+    
+    /**
+     * Returns a string representation of this save batch result.
+     * 
+     * @return a string containing the batch counts and failed IDs
+     */
+    @Override
+    public String toString() {
+        return "SaveBatchResult{size=" + size() +
+               ", inserted=" + getInsertedCount() +
+               ", updated=" + getUpdatedCount() +
+               ", failedIds=" + Arrays.toString(getFailedIds()) + '}';
+    }
+}
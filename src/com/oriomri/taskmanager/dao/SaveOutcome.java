@@ -0,0 +1,20 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Tells whether a saved (upserted) task was inserted or updated.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public enum SaveOutcome {
+    
+    /**
+     * No task with the ID existed, so the task was inserted.
+     */
+    INSERTED,
+    
+    /**
+     * A task with the ID existed and was overwritten.
+     */
+    UPDATED
+}
@@ -0,0 +1,242 @@
+package com.oriomri.taskmanager.dao;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Brings a database schema up to date by applying versioned migrations in order.
+ * The current version is kept in a one-row schema_version table. Databases created
+ * before versioning are detected by asking each migration whether it is already applied.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SchemaMigrator {
+    
+    //private variables declaration
+    private static final String VERSION_TABLE_NAME = "SCHEMA_VERSION";
+    private static final String CREATE_VERSION_TABLE_SQL = "CREATE TABLE schema_version (version INT NOT NULL)";
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM schema_version";
+    private static final String INSERT_VERSION_SQL = "INSERT INTO schema_version (version) VALUES (?)";
+    private static final String UPDATE_VERSION_SQL = "UPDATE schema_version SET version = ?";
+    private static final String TABLE_NOT_FOUND_SQL_STATE = "42X05";
+    private final List<ISchemaMigration> migrations;
+    
+    /**
+     * Constructs a migrator for the given migrations.
+     * 
+     * @param migrations the migrations, with consecutive versions starting at 1
+     */
+    public SchemaMigrator(List<ISchemaMigration> migrations) {
+        if (migrations == null || migrations.isEmpty()) {
+            throw new IllegalArgumentException("Migrations cannot be null or empty");
+        }
+        List<ISchemaMigration> sorted = new ArrayList<>(migrations);
+        sorted.sort(Comparator.comparingInt(ISchemaMigration::getVersion));
+        for (int i = 0; i < sorted.size(); i++) {
+            if (sorted.get(i).getVersion() != i + 1) {
+                throw new IllegalArgumentException("Migration versions must be consecutive starting at 1");
+            }
+        }
+        this.migrations = sorted;
+    }
+    
+    /**
+     * Gets the schema version reached after all migrations are applied.
+     * 
+     * @return the latest schema version
+     */
+    public int getLatestVersion() {
+        return migrations.size();
+    }
+    
+    /**
+     * Applies every migration newer than the database's current version.
+     * Each migration and its version bump are committed together, so an
+     * interrupted upgrade resumes from the last completed step.
+     * 
+     * @param connection the database connection
+     * @return the schema version of the database after migrating
+     * @throws SQLException if reading the version or applying a migration fails
+     */
+    public int migrate(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        
+        try {
+            int currentVersion = readCurrentVersion(connection);
+            if (currentVersion > getLatestVersion()) {
+                throw new SQLException("Database schema version " + currentVersion +
+                        " is newer than the supported version " + getLatestVersion());
+            }
+            
+            for (ISchemaMigration migration : migrations) {
+                if (migration.getVersion() > currentVersion) {
+                    migration.migrate(connection);
+                    writeVersion(connection, migration.getVersion());
+                    connection.commit();
+                    currentVersion = migration.getVersion();
+                }
+            }
+            return currentVersion;
+            
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+    
+    /**
+     * Reads the current schema version, creating the version table on first use.
+     * The version row is queried directly, so an up-to-date database is checked
+     * with a single query; the slower metadata probes only run when the version
+     * table does not exist yet.
+     * 
+     * @param connection the database connection
+     * @return the current schema version, or 0 for an empty database
+     * @throws SQLException if the version cannot be read
+     */
+    private int readCurrentVersion(Connection connection) throws SQLException {
+        SQLException missingTable;
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_VERSION_SQL)) {
+            return resultSet.next() ? resultSet.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (!TABLE_NOT_FOUND_SQL_STATE.equals(e.getSQLState())) {
+                throw e;
+            }
+            missingTable = e;
+        }
+        
+        if (!tableExists(connection, VERSION_TABLE_NAME)) {
+            int baseline = detectBaselineVersion(connection);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(CREATE_VERSION_TABLE_SQL);
+            }
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_VERSION_SQL)) {
+                statement.setInt(1, baseline);
+                statement.executeUpdate();
+            }
+            connection.commit();
+            return baseline;
+        }
+        throw missingTable;
+    }
+    
+    /**
+     * Finds the highest version whose changes are already present in an unversioned database.
+     * 
+     * @param connection the database connection
+     * @return the detected baseline version, or 0 for an empty database
+     * @throws SQLException if the schema cannot be inspected
+     */
+    private int detectBaselineVersion(Connection connection) throws SQLException {
+        int baseline = 0;
+        for (ISchemaMigration migration : migrations) {
+            if (!migration.isAlreadyApplied(connection)) {
+                break;
+            }
+            baseline = migration.getVersion();
+        }
+        return baseline;
+    }
+    
+    /**
+     * Stores the given schema version.
+     * 
+     * @param connection the database connection
+     * @param version the version to store
+     * @throws SQLException if the version cannot be written
+     */
+    private void writeVersion(Connection connection, int version) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_VERSION_SQL)) {
+            statement.setInt(1, version);
+            if (statement.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_VERSION_SQL)) {
+                    insert.setInt(1, version);
+                    insert.executeUpdate();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Checks whether a table exists in the database.
+     * 
+     * @param connection the database connection
+     * @param tableName the upper-case table name
+     * @return true if the table exists
+     * @throws SQLException if the metadata cannot be read
+     */
+    static boolean tableExists(Connection connection, String tableName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet tables = metaData.getTables(null, null, tableName, null)) {
+            return tables.next();
+        }
+    }
+    
+    /**
+     * Checks whether a sequence exists in the database.
+     * Sequences are not covered by DatabaseMetaData, so the Derby system catalog is queried.
+     * 
+     * @param connection the database connection
+     * @param sequenceName the upper-case sequence name
+     * @return true if the sequence exists
+     * @throws SQLException if the catalog cannot be read
+     */
+    static boolean sequenceExists(Connection connection, String sequenceName) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT 1 FROM sys.syssequences WHERE sequencename = ?")) {
+            statement.setString(1, sequenceName);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+    
+    /**
+     * Checks whether an index exists on a table.
+     * 
+     * @param connection the database connection
+     * @param tableName the upper-case table name
+     * @param indexName the upper-case index name
+     * @return true if the index exists
+     * @throws SQLException if the metadata cannot be read
+     */
+    static boolean indexExists(Connection connection, String tableName, String indexName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet indexes = metaData.getIndexInfo(null, null, tableName, false, false)) {
+            while (indexes.next()) {
+                if (indexName.equals(indexes.getString("INDEX_NAME"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Checks whether a column exists on a table.
+     * 
+     * @param connection the database connection
+     * @param tableName the upper-case table name
+     * @param columnName the upper-case column name
+     * @return true if the column exists
+     * @throws SQLException if the metadata cannot be read
+     */
+    static boolean columnExists(Connection connection, String tableName, String columnName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet columns = metaData.getColumns(null, null, tableName, columnName)) {
+            return columns.next();
+        }
+    }
+}
@@ -0,0 +1,1049 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.filter.ITaskFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiFunction;
+
+/**
+ * Data Access Object that spreads tasks over several DAOs (shards) by a hash
+ * of the task ID, typically one embedded Derby database per shard, so writes
+ * to different shards do not contend for the same log, locks and connections.
+ * 
+ * Operations on one task go to the shard that owns its ID. Operations on all
+ * tasks (getTasks, counts, deleteTasks) run on every shard in parallel and the
+ * results are merged; batches are split per shard and the shards run their
+ * parts in parallel. Ordered reads are merged by ID or title, so results come
+ * back in the same order as from a single DAO.
+ * 
+ * The shards have no common transaction: a batch or deleteTasks() that fails
+ * on one shard may already be applied on the others. The rows applied by the
+ * other shards are still recorded in the change log before the failure is
+ * thrown; when that is not possible (a partial clear, or an interrupted wait)
+ * readers of the change log are told to resync instead. Task IDs allocated with
+ * nextTaskId() are the highest of one ID allocated on every shard, so they stay
+ * unique across shards and above the IDs stored explicitly on any shard.
+ * Changes made through this DAO are recorded in its own in-memory change log.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class ShardedTasksDAO implements ITasksDAO {
+    
+    private static final Comparator<ITask> BY_ID = Comparator.comparingInt(ITask::getId);
+    private static final Comparator<ITask> BY_TITLE = Comparator.comparing(ITask::getTitle).thenComparing(BY_ID);
+    
+    //private variables declaration
+    private final ITasksDAO[] shards;
+    private final boolean ownsShards;
+    private final ExecutorService workers;
+    private final ChangeLog changeLog;
+    
+    /**
+     * Constructs a sharded DAO over the given shards.
+     * The shards must be empty or already hold only the tasks they own,
+     * and the order of the shards must never change.
+     * 
+     * @param shards the shard DAOs
+     */
+    public ShardedTasksDAO(ITasksDAO[] shards) {
+        this(shards, false);
+    }
+    
+    /**
+     * Constructs a sharded DAO.
+     * 
+     * @param shards the shard DAOs
+     * @param ownsShards true if close() should also close the shards
+     */
+    private ShardedTasksDAO(ITasksDAO[] shards, boolean ownsShards) {
+        if (shards == null || shards.length == 0) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        for (ITasksDAO shard : shards) {
+            if (shard == null) {
+                throw new IllegalArgumentException("Shard cannot be null");
+            }
+        }
+        this.shards = Arrays.copyOf(shards, shards.length);
+        this.ownsShards = ownsShards;
+        this.workers = Executors.newFixedThreadPool(shards.length, runnable -> {
+            Thread thread = new Thread(runnable, "task-shard-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.changeLog = new ChangeLog(ChangeLog.configuredRetention());
+    }
+    
+    /**
+     * Opens a sharded DAO over the embedded Derby databases
+     * {@code <baseName>-shard0} to {@code <baseName>-shard<N-1>}, creating them if needed.
+     * The shard databases are closed by close().
+     * 
+     * @param baseName the common prefix of the shard database names
+     * @param shardCount the number of shards; must stay the same for existing databases
+     * @return the sharded DAO
+     * @throws TaskManagerException if a shard database cannot be opened
+     */
+    public static ShardedTasksDAO openDerbyShards(String baseName, int shardCount) throws TaskManagerException {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        TasksDAO[] shards = new TasksDAO[shardCount];
+        try {
+            for (int i = 0; i < shardCount; i++) {
+                shards[i] = TasksDAO.openDatabase(baseName + "-shard" + i);
+            }
+        } catch (TaskManagerException | RuntimeException e) {
+            for (TasksDAO shard : shards) {
+                if (shard != null) {
+                    shard.closeConnection();
+                }
+            }
+            throw e;
+        }
+        return new ShardedTasksDAO(shards, true);
+    }
+    
+    /**
+     * Retrieves all tasks from every shard in parallel.
+     * 
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks() throws TaskManagerException {
+        return concat(onAllShards(shard -> shards[shard].getTasks()));
+    }
+    
+    /**
+     * Retrieves all tasks from every shard in parallel, reading only the columns of the given projection.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(TaskProjection projection) throws TaskManagerException {
+        return concat(onAllShards(shard -> shards[shard].getTasks(projection)));
+    }
+    
+    /**
+     * Retrieves all tasks from every shard in parallel, optionally including archived tasks.
+     * 
+     * @param includeArchived true to also return archived tasks
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(boolean includeArchived) throws TaskManagerException {
+        return concat(onAllShards(shard -> shards[shard].getTasks(includeArchived)));
+    }
+    
+    /**
+     * Retrieves the tasks that match a filter, each shard filtering its own tasks in parallel.
+     * 
+     * @param filter the filter to match
+     * @return the matching tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] findTasks(ITaskFilter filter) throws TaskManagerException {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        return concat(onAllShards(shard -> shards[shard].findTasks(filter)));
+    }
+    
+    /**
+     * Retrieves a specific task from the shard that owns its ID.
+     * 
+     * @param id the unique identifier of the task
+     * @return the task with the specified ID, or null if not found
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask getTask(int id) throws TaskManagerException {
+        return shardOf(id).getTask(id);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID.
+     * Every shard returns its own first page in parallel and the pages are merged.
+     * 
+     * @param afterId only tasks with a greater ID are returned
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for all states
+     * @return the tasks of the page, ordered by ID
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        return getTasksPage(afterId, limit, state, TaskProjection.FULL);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID, reading only the columns of the given projection.
+     * 
+     * @param afterId only tasks with a greater ID are returned
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for all states
+     * @param projection the columns to read
+     * @return the tasks of the page, ordered by ID
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
+        }
+        ITask[] merged = merge(onAllShards(shard -> shards[shard].getTasksPage(afterId, limit, state, projection)),
+                BY_ID);
+        return merged.length <= limit ? merged : Arrays.copyOf(merged, limit);
+    }
+    
+    /**
+     * Retrieves all tasks in the given state from every shard in parallel, ordered by ID.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        return merge(onAllShards(shard -> shards[shard].getTasksByState(state)), BY_ID);
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix from every
+     * shard in parallel, ordered by title.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        return merge(onAllShards(shard -> shards[shard].getTasksByTitlePrefix(prefix)), BY_TITLE);
+    }
+    
+    /**
+     * Counts the tasks of every shard in parallel.
+     * 
+     * @return the total number of tasks
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    @Override
+    public int countTasks() throws TaskManagerException {
+        int count = 0;
+        for (Integer shardCount : onAllShards(shard -> shards[shard].countTasks())) {
+            count += shardCount;
+        }
+        return count;
+    }
+    
+    /**
+     * Counts the tasks in each state on every shard in parallel.
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    @Override
+    public Map<TaskState, Integer> countTasksByState() throws TaskManagerException {
+        Map<TaskState, Integer> counts = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            counts.put(state, 0);
+        }
+        for (Map<TaskState, Integer> shardCounts : onAllShards(shard -> shards[shard].countTasksByState())) {
+            for (Map.Entry<TaskState, Integer> entry : shardCounts.entrySet()) {
+                counts.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+        return counts;
+    }
+    
+    /**
+     * Reads the changes made through this DAO after a sequence number,
+     * together with the current values of the changed tasks.
+     * 
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read and the sequence to continue from
+     * @throws TaskManagerException if a changed task cannot be read
+     */
+    @Override
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Change limit must be positive");
+        }
+        TaskChanges entries = changeLog.read(sequence, limit);
+        if (entries.isResyncRequired()) {
+            return entries;
+        }
+        
+        TaskChange[] changes = entries.getChanges();
+        for (int i = 0; i < changes.length; i++) {
+            TaskChange entry = changes[i];
+            ITask task = entry.getType() == TaskChangeType.CLEARED ? null : getTask(entry.getTaskId());
+            changes[i] = new TaskChange(entry.getSequence(), entry.getType(), entry.getTaskId(), task);
+        }
+        return new TaskChanges(changes, entries.getLastSequence(), false);
+    }
+    
+    /**
+     * Gets the sequence number of the latest change made through this DAO.
+     * 
+     * @return the latest change sequence
+     */
+    @Override
+    public long getLatestChangeSequence() {
+        return changeLog.getLatestSequence();
+    }
+    
+    /**
+     * Trims the changes up to a sequence number from the change log of this DAO.
+     * 
+     * @param sequence the last sequence number to trim
+     */
+    @Override
+    public void trimChanges(long sequence) {
+        changeLog.trimThrough(sequence);
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order to the given handler.
+     * Each shard is read page by page and the pages are merged, so at most
+     * one page per shard is held in memory.
+     * 
+     * @param fetchSize the number of tasks read from a shard at a time
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Stream handler cannot be null");
+        }
+        
+        PriorityQueue<ShardCursor> cursors = new PriorityQueue<>(
+                Comparator.comparingInt((ShardCursor cursor) -> cursor.current().getId()));
+        for (ITasksDAO shard : shards) {
+            ShardCursor cursor = new ShardCursor(shard, fetchSize);
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        
+        while (!cursors.isEmpty()) {
+            ShardCursor cursor = cursors.poll();
+            if (!handler.handle(cursor.current())) {
+                return;
+            }
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+    }
+    
+    /**
+     * Streams all tasks, optionally including archived tasks.
+     * Archived tasks cannot be read page by page, so they are streamed shard by
+     * shard, in ascending ID order within each shard, instead of merged by ID.
+     * 
+     * @param fetchSize the number of rows fetched from a shard at a time
+     * @param includeArchived true to also stream archived tasks
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, boolean includeArchived, ITaskStreamHandler handler)
+            throws TaskManagerException {
+        if (!includeArchived) {
+            forEachTask(fetchSize, handler);
+            return;
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Stream handler cannot be null");
+        }
+        boolean[] stopped = new boolean[1];
+        for (ITasksDAO shard : shards) {
+            shard.forEachTask(fetchSize, true, task -> {
+                stopped[0] = !handler.handle(task);
+                return !stopped[0];
+            });
+            if (stopped[0]) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Allocates a new unique task ID.
+     * Every shard keeps its own allocation above the IDs it stores, so one ID is
+     * allocated on every shard and the highest is used; the others become gaps.
+     * Allocations are serialized, so each result is higher than the previous one.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new ID cannot be allocated
+     */
+    @Override
+    public synchronized int nextTaskId() throws TaskManagerException {
+        int id = Integer.MIN_VALUE;
+        for (ITasksDAO shard : shards) {
+            id = Math.max(id, shard.nextTaskId());
+        }
+        return id;
+    }
+    
+    /**
+     * Adds a new task to the shard that owns its ID.
+     * 
+     * @param task the task to add
+     * @throws TaskManagerException if an error occurs during addition
+     */
+    @Override
+    public void addTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        shardOf(task.getId()).addTask(task);
+        changeLog.append(TaskChangeType.ADDED, task.getId());
+    }
+    
+    /**
+     * Updates an existing task on the shard that owns its ID.
+     * 
+     * @param task the task to update
+     * @throws TaskManagerException if an error occurs during update
+     */
+    @Override
+    public void updateTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        shardOf(task.getId()).updateTask(task);
+        changeLog.append(TaskChangeType.UPDATED, task.getId());
+    }
+    
+    /**
+     * Updates an existing task on the shard that owns its ID if its version matches.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws TaskManagerException if the version does not match or an error occurs during update
+     */
+    @Override
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        int version = shardOf(task.getId()).updateTask(task, expectedVersion);
+        changeLog.append(TaskChangeType.UPDATED, task.getId());
+        return version;
+    }
+    
+    /**
+     * Saves a task on the shard that owns its ID.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if an error occurs during saving
+     */
+    @Override
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        SaveOutcome outcome = shardOf(task.getId()).saveTask(task);
+        changeLog.append(changeTypeOf(outcome), task.getId());
+        return outcome;
+    }
+    
+    /**
+     * Deletes all tasks on every shard in parallel.
+     * If some shards fail, the others may already be cleared, so the change log
+     * asks its readers to resync instead of recording a clear.
+     * 
+     * @throws TaskManagerException if an error occurs during deletion on any shard
+     */
+    @Override
+    public void deleteTasks() throws TaskManagerException {
+        ShardResults<Boolean> results = runOnAllShards(shard -> {
+            shards[shard].deleteTasks();
+            return Boolean.TRUE;
+        });
+        if (results.getFailure() != null) {
+            changeLog.requireResync();
+        } else {
+            changeLog.append(TaskChangeType.CLEARED, 0);
+        }
+        results.getOrThrow();
+    }
+    
+    /**
+     * Deletes a specific task from the shard that owns its ID.
+     * 
+     * @param id the unique identifier of the task to delete
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTask(int id) throws TaskManagerException {
+        shardOf(id).deleteTask(id);
+        changeLog.append(TaskChangeType.DELETED, id);
+    }
+    
+    /**
+     * Adds several tasks, each shard adding its part of the batch in parallel.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed on any shard
+     */
+    @Override
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        int[][] parts = partition(ids);
+        List<BatchResult> results = onAllShards(ids, parts, shard ->
+                parts[shard].length == 0 ? null : shards[shard].addTasks(select(tasks, parts[shard])),
+                (result, row) -> TaskChangeType.ADDED);
+        return logged(new BatchResult(ids, failedFlags(ids.length, parts, results)), TaskChangeType.ADDED);
+    }
+    
+    /**
+     * Updates several tasks, each shard updating its part of the batch in parallel.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed on any shard
+     */
+    @Override
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        int[][] parts = partition(ids);
+        List<BatchResult> results = onAllShards(ids, parts, shard ->
+                parts[shard].length == 0 ? null : shards[shard].updateTasks(select(tasks, parts[shard])),
+                (result, row) -> TaskChangeType.UPDATED);
+        return logged(new BatchResult(ids, failedFlags(ids.length, parts, results)), TaskChangeType.UPDATED);
+    }
+    
+    /**
+     * Saves several tasks, each shard saving its part of the batch in parallel.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed on any shard
+     */
+    @Override
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        int[][] parts = partition(ids);
+        List<SaveBatchResult> results = onAllShards(ids, parts, shard ->
+                parts[shard].length == 0 ? null : shards[shard].saveTasks(select(tasks, parts[shard])),
+                (result, row) -> changeTypeOf(result.getOutcome(row)));
+        
+        SaveOutcome[] outcomes = new SaveOutcome[ids.length];
+        for (int shard = 0; shard < parts.length; shard++) {
+            for (int j = 0; j < parts[shard].length; j++) {
+                outcomes[parts[shard][j]] = results.get(shard).getOutcome(j);
+            }
+        }
+        for (int i = 0; i < ids.length; i++) {
+            if (outcomes[i] != null) {
+                changeLog.append(changeTypeOf(outcomes[i]), ids[i]);
+            }
+        }
+        return new SaveBatchResult(ids, outcomes);
+    }
+    
+    /**
+     * Deletes several tasks, each shard deleting its part of the batch in parallel.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed on any shard
+     */
+    @Override
+    public BatchResult deleteTasks(int[] ids) throws TaskManagerException {
+        if (ids == null) {
+            throw new IllegalArgumentException("Task IDs cannot be null");
+        }
+        int[][] parts = partition(ids);
+        List<BatchResult> results = onAllShards(ids, parts, shard -> {
+            if (parts[shard].length == 0) {
+                return null;
+            }
+            int[] shardIds = new int[parts[shard].length];
+            for (int j = 0; j < shardIds.length; j++) {
+                shardIds[j] = ids[parts[shard][j]];
+            }
+            return shards[shard].deleteTasks(shardIds);
+        }, (result, row) -> TaskChangeType.DELETED);
+        return logged(new BatchResult(ids, failedFlags(ids.length, parts, results)), TaskChangeType.DELETED);
+    }
+    
+    /**
+     * Gets the number of shards.
+     * 
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+    
+    /**
+     * Gets the shard at the given position.
+     * 
+     * @param index the position of the shard
+     * @return the shard DAO
+     */
+    public ITasksDAO getShard(int index) {
+        return shards[index];
+    }
+    
+    /**
+     * Gets the position of the shard that owns a task ID.
+     * 
+     * @param id the task ID
+     * @return the position of the owning shard
+     */
+    public int shardIndexOf(int id) {
+        //a different mix than InMemoryTasksDAO, so in-memory shards still use all of their stripes and slots
+        int hash = id;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+        hash *= 0xC2B2AE35;
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash, shards.length);
+    }
+    
+    /**
+     * Stops the worker threads. Shards opened by openDerbyShards are closed as well.
+     */
+    public void close() {
+        workers.shutdown();
+        if (ownsShards) {
+            for (ITasksDAO shard : shards) {
+                ((TasksDAO) shard).closeConnection();
+            }
+        }
+    }
+    
+    /**
+     * Gets the shard that owns a task ID.
+     * 
+     * @param id the task ID
+     * @return the owning shard DAO
+     */
+    private ITasksDAO shardOf(int id) {
+        return shards[shardIndexOf(id)];
+    }
+    
+    /**
+     * Runs a call on every shard in parallel and waits for all of them.
+     * If the call fails on some shards, the first failure is thrown once every shard has finished.
+     * 
+     * @param call the call to run, given the position of the shard
+     * @return the results in shard order
+     * @throws TaskManagerException if the call fails on any shard
+     */
+    private <T> List<T> onAllShards(ShardCall<T> call) throws TaskManagerException {
+        return runOnAllShards(call).getOrThrow();
+    }
+    
+    /**
+     * Runs the parts of a batch on every shard in parallel and waits for all of them.
+     * If some shards fail, the rows applied by the other shards are recorded in the
+     * change log before the failure is thrown, so readers of the log do not miss them.
+     * 
+     * @param ids the task IDs of the batch rows
+     * @param parts for each shard, the positions of its rows
+     * @param call the call to run, given the position of the shard
+     * @param changeOf the change recorded for an applied row, given the shard's result and the row's position in it
+     * @return the results in shard order, null for shards without rows
+     * @throws TaskManagerException if the call fails on any shard
+     */
+    private <R extends BatchResult> List<R> onAllShards(int[] ids, int[][] parts, ShardCall<R> call,
+                                                        BiFunction<R, Integer, TaskChangeType> changeOf)
+            throws TaskManagerException {
+        ShardResults<R> results = runOnAllShards(call);
+        if (results.getFailure() != null) {
+            if (!results.isComplete()) {
+                //shards still running may apply their rows later
+                changeLog.requireResync();
+            } else {
+                for (int shard = 0; shard < parts.length; shard++) {
+                    R result = results.get(shard);
+                    for (int j = 0; result != null && j < parts[shard].length; j++) {
+                        if (result.isSucceeded(j)) {
+                            changeLog.append(changeOf.apply(result, j), ids[parts[shard][j]]);
+                        }
+                    }
+                }
+            }
+        }
+        return results.getOrThrow();
+    }
+    
+    /**
+     * Runs a call on every shard in parallel and waits for all of them, keeping
+     * each shard's result or failure. The calling thread runs the first shard itself.
+     * 
+     * @param call the call to run, given the position of the shard
+     * @return the results in shard order, with the first failure
+     */
+    private <T> ShardResults<T> runOnAllShards(ShardCall<T> call) {
+        List<Future<T>> futures = new ArrayList<>(shards.length);
+        for (int shard = 1; shard < shards.length; shard++) {
+            int index = shard;
+            futures.add(workers.submit(() -> call.call(index)));
+        }
+        
+        ShardResults<T> results = new ShardResults<>(shards.length);
+        try {
+            results.add(call.call(0));
+        } catch (TaskManagerException | RuntimeException e) {
+            results.fail(e);
+        }
+        
+        //wait for every shard even after a failure, so no call is still running when this returns
+        for (Future<T> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.interrupt(new TaskManagerException("Interrupted while waiting for the shards", e));
+                return results;
+            } catch (ExecutionException e) {
+                results.fail(e.getCause() instanceof TaskManagerException || e.getCause() instanceof RuntimeException
+                        ? (Exception) e.getCause()
+                        : new TaskManagerException("Shard operation failed", e.getCause()));
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Gets the change recorded for a save outcome.
+     * 
+     * @param outcome whether the task was inserted or updated
+     * @return the matching change type
+     */
+    private static TaskChangeType changeTypeOf(SaveOutcome outcome) {
+        return outcome == SaveOutcome.INSERTED ? TaskChangeType.ADDED : TaskChangeType.UPDATED;
+    }
+    
+    /**
+     * Groups the rows of a batch by their owning shard.
+     * 
+     * @param ids the task IDs of the batch rows
+     * @return for each shard, the positions of its rows in input order
+     */
+    private int[][] partition(int[] ids) {
+        int[] counts = new int[shards.length];
+        int[] owners = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            owners[i] = shardIndexOf(ids[i]);
+            counts[owners[i]]++;
+        }
+        
+        int[][] parts = new int[shards.length][];
+        for (int shard = 0; shard < shards.length; shard++) {
+            parts[shard] = new int[counts[shard]];
+            counts[shard] = 0;
+        }
+        for (int i = 0; i < ids.length; i++) {
+            parts[owners[i]][counts[owners[i]]++] = i;
+        }
+        return parts;
+    }
+    
+    /**
+     * Records a change for every row of a batch that was applied.
+     * 
+     * @param result the outcome of the batch
+     * @param type the change of the applied rows
+     * @return the same batch result
+     */
+    private BatchResult logged(BatchResult result, TaskChangeType type) {
+        for (int i = 0; i < result.size(); i++) {
+            if (result.isSucceeded(i)) {
+                changeLog.append(type, result.getId(i));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Maps the per-shard outcomes of a split batch back to the rows of the whole batch.
+     * 
+     * @param size the number of rows of the whole batch
+     * @param parts for each shard, the positions of its rows
+     * @param results for each shard, the outcome of its part, or null if it had no rows
+     * @return for each row of the whole batch, whether it failed
+     */
+    private static boolean[] failedFlags(int size, int[][] parts, List<? extends BatchResult> results) {
+        boolean[] failed = new boolean[size];
+        for (int shard = 0; shard < parts.length; shard++) {
+            for (int j = 0; j < parts[shard].length; j++) {
+                failed[parts[shard][j]] = !results.get(shard).isSucceeded(j);
+            }
+        }
+        return failed;
+    }
+    
+    /**
+     * Selects the tasks at the given positions.
+     * 
+     * @param tasks the tasks of the whole batch
+     * @param positions the positions to select
+     * @return the selected tasks in the order of the positions
+     */
+    private static ITask[] select(ITask[] tasks, int[] positions) {
+        ITask[] selected = new ITask[positions.length];
+        for (int j = 0; j < positions.length; j++) {
+            selected[j] = tasks[positions[j]];
+        }
+        return selected;
+    }
+    
+    /**
+     * Collects the IDs of a batch of tasks, validating that no task is null.
+     * 
+     * @param tasks the tasks of the batch
+     * @return the task IDs in input order
+     */
+    private static int[] idsOf(ITask[] tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+        int[] ids = new int[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            if (tasks[i] == null) {
+                throw new IllegalArgumentException("Task cannot be null");
+            }
+            ids[i] = tasks[i].getId();
+        }
+        return ids;
+    }
+    
+    /**
+     * Concatenates the task arrays returned by the shards.
+     * 
+     * @param parts the arrays returned by the shards
+     * @return one array with all tasks
+     */
+    private static ITask[] concat(List<ITask[]> parts) {
+        int size = 0;
+        for (ITask[] part : parts) {
+            size += part.length;
+        }
+        ITask[] all = new ITask[size];
+        int position = 0;
+        for (ITask[] part : parts) {
+            System.arraycopy(part, 0, all, position, part.length);
+            position += part.length;
+        }
+        return all;
+    }
+    
+    /**
+     * Merges the sorted task arrays returned by the shards into one sorted array.
+     * 
+     * @param parts the sorted arrays returned by the shards
+     * @param order the order of the arrays
+     * @return one array with all tasks in that order
+     */
+    private static ITask[] merge(List<ITask[]> parts, Comparator<ITask> order) {
+        ITask[] all = concat(parts);
+        //TimSort finds the sorted runs, so merging them costs little more than copying
+        Arrays.sort(all, order);
+        return all;
+    }
+    
+    /**
+     * A call made on one shard.
+     */
+    @FunctionalInterface
+    private interface ShardCall<T> {
+        
+        /**
+         * Runs the call on one shard.
+         * 
+         * @param shard the position of the shard
+         * @return the result of the call
+         * @throws TaskManagerException if the call fails
+         */
+        T call(int shard) throws TaskManagerException;
+    }
+    
+    /**
+     * The per-shard results of a call made on every shard, with the first failure.
+     */
+    private static class ShardResults<T> {
+        
+        //private variables declaration
+        private final List<T> results;
+        private Exception failure;
+        private boolean complete;
+        
+        /**
+         * Constructs an empty set of results.
+         * 
+         * @param shardCount the number of shards
+         */
+        ShardResults(int shardCount) {
+            this.results = new ArrayList<>(shardCount);
+            this.complete = true;
+        }
+        
+        /**
+         * Adds the result of the next shard.
+         * 
+         * @param result the result of the shard
+         */
+        void add(T result) {
+            results.add(result);
+        }
+        
+        /**
+         * Records that the next shard failed; only the first failure is kept.
+         * 
+         * @param e the failure of the shard
+         */
+        void fail(Exception e) {
+            results.add(null);
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        
+        /**
+         * Records that waiting for the shards was interrupted, so the outcome of the remaining shards is unknown.
+         * 
+         * @param e the failure to throw
+         */
+        void interrupt(TaskManagerException e) {
+            complete = false;
+            failure = e;
+        }
+        
+        /**
+         * Gets the result of a shard.
+         * 
+         * @param shard the position of the shard
+         * @return the result, or null if the shard failed or its outcome is unknown
+         */
+        T get(int shard) {
+            return shard < results.size() ? results.get(shard) : null;
+        }
+        
+        /**
+         * Gets the first failure.
+         * 
+         * @return the failure, or null if every shard succeeded
+         */
+        Exception getFailure() {
+            return failure;
+        }
+        
+        /**
+         * Checks whether every shard has finished.
+         * 
+         * @return false if waiting was interrupted
+         */
+        boolean isComplete() {
+            return complete;
+        }
+        
+        /**
+         * Gets the results, or throws the first failure.
+         * 
+         * @return the results in shard order
+         * @throws TaskManagerException if a shard failed with a checked exception or waiting was interrupted
+         */
+        List<T> getOrThrow() throws TaskManagerException {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure != null) {
+                throw (TaskManagerException) failure;
+            }
+            return results;
+        }
+    }
+    
+    /**
+     * Reads the tasks of one shard in ascending ID order, one page at a time.
+     */
+    private static class ShardCursor {
+        
+        //private variables declaration
+        private final ITasksDAO shard;
+        private final int pageSize;
+        private ITask[] page;
+        private int position;
+        private boolean lastPage;
+        
+        /**
+         * Constructs a cursor before the first task of a shard.
+         * 
+         * @param shard the shard to read
+         * @param pageSize the number of tasks read at a time
+         */
+        ShardCursor(ITasksDAO shard, int pageSize) {
+            this.shard = shard;
+            this.pageSize = pageSize;
+            this.page = new ITask[0];
+            this.position = -1;
+        }
+        
+        /**
+         * Moves to the next task, reading the next page when the current one is used up.
+         * 
+         * @return true if there is a current task, false if the shard has no more tasks
+         * @throws TaskManagerException if the next page cannot be read
+         */
+        boolean advance() throws TaskManagerException {
+            position++;
+            if (position < page.length) {
+                return true;
+            }
+            if (lastPage) {
+                return false;
+            }
+            int afterId = page.length == 0 ? -1 : page[page.length - 1].getId();
+            page = shard.getTasksPage(afterId, pageSize, null);
+            lastPage = page.length < pageSize;
+            position = 0;
+            return page.length > 0;
+        }
+        
+        /**
+         * Gets the current task.
+         * 
+         * @return the task the cursor is on
+         */
+        ITask current() {
+            return page[position];
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.oriomri.taskmanager.dao;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durations of the startup phases of a DAO, in the order the phases ran.
+ * Phases that run in the background are added when they finish.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class StartupTimings {
+    
+    //private variables declaration
+    private final Map<String, Long> phaseNanos;
+    
+    /**
+     * Constructs an empty set of timings.
+     */
+    public StartupTimings() {
+        this.phaseNanos = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Records the duration of a phase.
+     * 
+     * @param phase the phase name
+     * @param nanos the duration in nanoseconds
+     */
+    public synchronized void record(String phase, long nanos) {
+        phaseNanos.put(phase, nanos);
+    }
+    
+    /**
+     * Gets the duration of a phase.
+     * 
+     * @param phase the phase name
+     * @return the duration in nanoseconds, or -1 if the phase has not finished
+     */
+    public synchronized long getPhaseNanos(String phase) {
+        Long nanos = phaseNanos.get(phase);
+        return nanos == null ? -1 : nanos;
+    }
+    
+    /**
+     * Gets the durations of all finished phases.
+     * 
+     * @return an unmodifiable map from phase name to nanoseconds, in the order the phases ran
+     */
+    public synchronized Map<String, Long> getPhases() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(phaseNanos));
+    }
+    
+    /**
+     * Gets the summed duration of all finished phases.
+     * 
+     * @return the total duration in nanoseconds
+     */
+    public synchronized long getTotalNanos() {
+        long total = 0;
+        for (long nanos : phaseNanos.values()) {
+            total += nanos;
+        }
+        return total;
+    }
+    
+    /**
+     * Returns a string representation of the timings.
+     * 
+     * @return the phases with their durations in milliseconds
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("StartupTimings{");
+        String separator = "";
+        for (Map.Entry<String, Long> phase : phaseNanos.entrySet()) {
+            builder.append(separator).append(phase.getKey()).append('=')
+                   .append(TimeUnit.NANOSECONDS.toMillis(phase.getValue())).append(" ms");
+            separator = ", ";
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,146 @@
+package com.oriomri.taskmanager.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of prepared statements bound to a single database connection.
+ * Statements are keyed by their SQL text and stay open while they are cached,
+ * so the same SQL is parsed and planned only once. The cache holds a bounded
+ * number of statements; when it is full, the least recently used statement is
+ * closed and evicted, so SQL built per query shape cannot grow it without limit.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class StatementCache {
+    
+    /** Default maximum number of statements kept open per connection. */
+    public static final int DEFAULT_MAX_STATEMENTS = 128;
+    
+    //private variables declaration
+    private final Connection connection;
+    private final int maxStatements;
+    private final Map<String, PreparedStatement> statements;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    
+    /**
+     * Constructs a statement cache for the given connection with the default bound.
+     * 
+     * @param connection the connection the cached statements belong to
+     */
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_MAX_STATEMENTS);
+    }
+    
+    /**
+     * Constructs a statement cache for the given connection.
+     * 
+     * @param connection the connection the cached statements belong to
+     * @param maxStatements the maximum number of statements kept open
+     */
+    public StatementCache(Connection connection, int maxStatements) {
+        if (connection == null) {
+            throw new IllegalArgumentException("Connection cannot be null");
+        }
+        if (maxStatements < 1) {
+            throw new IllegalArgumentException("Maximum number of statements must be positive");
+        }
+        this.connection = connection;
+        this.maxStatements = maxStatements;
+        //access order, so the first entry is always the least recently used statement
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+    
+    /**
+     * Returns a prepared statement for the given SQL, preparing it on first use.
+     * The returned statement is owned by the cache and must not be closed by the caller.
+     * Preparing a new statement in a full cache closes the least recently used one.
+     * 
+     * @param sql the SQL text of the statement
+     * @return the cached prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    public PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        
+        if (statement == null || statement.isClosed()) {
+            misses.incrementAndGet();
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+            evictOverflow();
+        } else {
+            hits.incrementAndGet();
+            statement.clearParameters();
+        }
+        return statement;
+    }
+    
+    /**
+     * Closes and removes the least recently used statements while the cache is over its bound.
+     */
+    private void evictOverflow() {
+        Iterator<PreparedStatement> eldest = statements.values().iterator();
+        while (statements.size() > maxStatements) {
+            PreparedStatement statement = eldest.next();
+            eldest.remove();
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                //log the error; the statement is out of the cache either way
+                System.err.println("Error closing evicted statement: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of lookups served by an already prepared statement.
+     * 
+     * @return the number of cache hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+    
+    /**
+     * Gets the number of lookups that had to prepare a new statement.
+     * 
+     * @return the number of cache misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+    
+    /**
+     * Gets the number of statements currently held by the cache.
+     * 
+     * @return the number of cached statements
+     */
+    public int size() {
+        return statements.size();
+    }
+    
+    /**
+     * Closes all cached statements.
+     * This method is called before the underlying connection is closed.
+     */
+    public void close() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                //log the error but keep closing the remaining statements
+                System.err.println("Error closing cached statement: " + e.getMessage());
+            }
+        }
+        statements.clear();
+    }
+}
@@ -0,0 +1,87 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+
+/**
+ * One entry of the change log of a DAO: a mutation of a task and its sequence number.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class TaskChange {
+    
+    //private variables declaration
+    private final long sequence;
+    private final TaskChangeType type;
+    private final int taskId;
+    private final ITask task;
+    
+    /**
+     * Constructs a change log entry.
+     * 
+     * @param sequence the sequence number of the change
+     * @param type the kind of mutation
+     * @param taskId the ID of the changed task, or 0 for CLEARED
+     * @param task the current values of the task, or null if it no longer exists
+     */
+    public TaskChange(long sequence, TaskChangeType type, int taskId, ITask task) {
+        if (type == null) {
+            throw new IllegalArgumentException("Change type cannot be null");
+        }
+        this.sequence = sequence;
+        this.type = type;
+        this.taskId = taskId;
+        this.task = task;
+    }
+    
+    /**
+     * Gets the sequence number of the change.
+     * Sequence numbers increase with every change but may have gaps.
+     * 
+     * @return the sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * Gets the kind of mutation.
+     * 
+     * @return the change type
+     */
+    public TaskChangeType getType() {
+        return type;
+    }
+    
+    /**
+     * Gets the ID of the changed task.
+     * 
+     * @return the task ID, or 0 for CLEARED
+     */
+    public int getTaskId() {
+        return taskId;
+    }
+    
+    /**
+     * Gets the values of the changed task at the time the change was read.
+     * These are the latest values, which may already include later changes of the
+     * same task; those later changes are reported again with their own sequence.
+     * 
+     * @return the current task, or null if the task was deleted since
+     */
+    public ITask getTask() {
+        return task;
+    }
+    
+    /**
+     * Returns a string representation of this change.
+     * 
+     * @return a string containing the sequence, type and task ID
+     */
+    @Override
+    public String toString() {
+        return "TaskChange{sequence=" + sequence +
+               ", type=" + type +
+               ", taskId=" + taskId + '}';
+    }
+}
@@ -0,0 +1,71 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Kind of mutation recorded in the change log of a DAO.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public enum TaskChangeType {
+    
+    /**
+     * A task was added.
+     */
+    ADDED(0),
+    
+    /**
+     * An existing task was updated.
+     */
+    UPDATED(1),
+    
+    /**
+     * A task was deleted.
+     */
+    DELETED(2),
+    
+    /**
+     * All tasks were deleted.
+     */
+    CLEARED(3);
+    
+    private static final TaskChangeType[] BY_CODE = new TaskChangeType[values().length];
+    
+    static {
+        for (TaskChangeType type : values()) {
+            BY_CODE[type.code] = type;
+        }
+    }
+    
+    private final int code;
+    
+    /**
+     * Constructs a change type with the specified storage code.
+     * 
+     * @param code the stable numeric code used to store this change type
+     */
+    TaskChangeType(int code) {
+        this.code = code;
+    }
+    
+    /**
+     * Gets the stable numeric code used to store this change type.
+     * 
+     * @return the storage code of this change type
+     */
+    public int getCode() {
+        return code;
+    }
+    
+    /**
+     * Gets the change type stored under the given numeric code.
+     * 
+     * @param code the storage code
+     * @return the matching change type
+     */
+    public static TaskChangeType fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown task change type code: " + code);
+        }
+        return BY_CODE[code];
+    }
+}
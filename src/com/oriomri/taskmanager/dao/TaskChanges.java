@@ -0,0 +1,88 @@
+package com.oriomri.taskmanager.dao;
+
+import java.util.Arrays;
+
+/**
+ * Result of reading the change log of a DAO after a given sequence number.
+ * Holds the changes in sequence order and the sequence number to continue from.
+ * If changes the caller has not seen were already trimmed, the caller must
+ * re-read the full table instead of applying the changes.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class TaskChanges {
+    
+    //private variables declaration
+    private final TaskChange[] changes;
+    private final long lastSequence;
+    private final boolean resyncRequired;
+    
+    /**
+     * Constructs a change log read result.
+     * 
+     * @param changes the changes in sequence order
+     * @param lastSequence the sequence number to pass to the next read
+     * @param resyncRequired true if changes after the requested sequence were trimmed
+     */
+    public TaskChanges(TaskChange[] changes, long lastSequence, boolean resyncRequired) {
+        if (changes == null) {
+            throw new IllegalArgumentException("Changes cannot be null");
+        }
+        this.changes = Arrays.copyOf(changes, changes.length);
+        this.lastSequence = lastSequence;
+        this.resyncRequired = resyncRequired;
+    }
+    
+    /**
+     * Gets the changes in sequence order.
+     * 
+     * @return the changes read
+     */
+    public TaskChange[] getChanges() {
+        return Arrays.copyOf(changes, changes.length);
+    }
+    
+    /**
+     * Gets the number of changes read.
+     * 
+     * @return the number of changes
+     */
+    public int size() {
+        return changes.length;
+    }
+    
+    /**
+     * Gets the sequence number to pass to the next read.
+     * This is the sequence of the last change read, or the requested sequence if none were read.
+     * 
+     * @return the sequence number to continue from
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+    
+    /**
+     * Checks whether changes after the requested sequence were already trimmed
+     * from the log, or the sequence belongs to an earlier run of a DAO that keeps
+     * its log in memory. The caller must then re-read all tasks and continue from
+     * the latest change sequence.
+     * 
+     * @return true if the caller must re-read all tasks
+     */
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+    
+    /**
+     * Returns a string representation of this result.
+     * 
+     * @return a string containing the change count and sequence information
+     */
+    @Override
+    public String toString() {
+        return "TaskChanges{size=" + changes.length +
+               ", lastSequence=" + lastSequence +
+               ", resyncRequired=" + resyncRequired + '}';
+    }
+}
@@ -0,0 +1,21 @@
+package com.oriomri.taskmanager.dao;
+
+/**
+ * Selects which task columns a list query reads from the database.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public enum TaskProjection {
+    
+    /**
+     * Every column, including the description.
+     */
+    FULL,
+    
+    /**
+     * Only the ID, title and state. Descriptions are loaded on demand,
+     * in batches, the first time getDescription() is called on a task.
+     */
+    SUMMARY
+}
@@ -0,0 +1,462 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary snapshot of the full task set.
+ * A snapshot file holds a header (magic, format version, task count), one record per
+ * task (ID, state code, version, length-prefixed UTF-8 title and description, and a
+ * CRC32 of the record) and a CRC32 of all records. Every record is checked before it
+ * is handed out, so a corrupt record is never passed on. Snapshots are written and
+ * read through file channels with a large direct buffer, so a cold start can load
+ * every task without booting Derby or calling getTasks(). Files of format version 1,
+ * which have no versions and no record checksums, can still be read, with every
+ * task at version 0.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public final class TaskSnapshot {
+    
+    private static final int MAGIC = 0x54534E50; //"TSNP"
+    private static final int FORMAT_VERSION = 2;
+    private static final int LEGACY_FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16; //magic, version, task count
+    private static final int COUNT_OFFSET = 8;
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final int EXPORT_FETCH_SIZE = 1000;
+    private static final int IMPORT_BATCH_SIZE = 1000;
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TaskSnapshot() {
+    }
+    
+    /**
+     * Writes every task of a DAO to a snapshot file, replacing the file if it exists.
+     * Archived tasks are included. Tasks are streamed from the DAO, so the whole set
+     * is never held in memory.
+     * 
+     * @param source the DAO to export
+     * @param file the snapshot file
+     * @return the number of exported tasks
+     * @throws TaskManagerException if the tasks cannot be read or the file cannot be written
+     */
+    public static long exportTasks(ITasksDAO source, Path file) throws TaskManagerException {
+        if (source == null || file == null) {
+            throw new IllegalArgumentException("Source DAO and snapshot file cannot be null");
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            SnapshotWriter writer = new SnapshotWriter(channel);
+            source.forEachTask(EXPORT_FETCH_SIZE, true, task -> {
+                writer.write(task);
+                return true;
+            });
+            return writer.finish();
+            
+        } catch (IOException e) {
+            throw new TaskManagerException("Failed to export task snapshot: " + file, e);
+        }
+    }
+    
+    /**
+     * Reads a snapshot file and passes every task to the handler, in file order.
+     * 
+     * @param file the snapshot file
+     * @param handler the callback that receives each task; returning false stops reading
+     * @throws TaskManagerException if the file cannot be read, is corrupt, or handling a task fails
+     */
+    public static void readTasks(Path file, ITaskStreamHandler handler) throws TaskManagerException {
+        if (file == null || handler == null) {
+            throw new IllegalArgumentException("Snapshot file and handler cannot be null");
+        }
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            SnapshotReader reader = new SnapshotReader(channel, file);
+            ITask task;
+            while ((task = reader.next()) != null) {
+                if (!handler.handle(task)) {
+                    return;
+                }
+            }
+            
+        } catch (IOException e) {
+            throw new TaskManagerException("Failed to read task snapshot: " + file, e);
+        }
+    }
+    
+    /**
+     * Reads a whole snapshot file and checks every record and the checksums,
+     * without keeping the tasks.
+     * 
+     * @param file the snapshot file
+     * @return the number of tasks in the snapshot
+     * @throws TaskManagerException if the file cannot be read or is corrupt
+     */
+    public static long verify(Path file) throws TaskManagerException {
+        long[] count = new long[1];
+        readTasks(file, task -> {
+            count[0]++;
+            return true;
+        });
+        return count[0];
+    }
+    
+    /**
+     * Bulk-loads a snapshot into a DAO with batched inserts.
+     * The whole file is verified first, so a corrupt snapshot inserts nothing
+     * instead of leaving part of it in the target.
+     * Tasks whose ID already exists in the target are reported as failed rows.
+     * The tasks are inserted as new tasks, so their versions start at 0 in the target.
+     * 
+     * @param file the snapshot file
+     * @param target the DAO to load into, for example TasksDAO
+     * @return the per-row outcome of the load, in file order
+     * @throws TaskManagerException if the file cannot be read, is corrupt, or a batch cannot be executed
+     */
+    public static BatchResult importTasks(Path file, ITasksDAO target) throws TaskManagerException {
+        if (target == null) {
+            throw new IllegalArgumentException("Target DAO cannot be null");
+        }
+        verify(file);
+        List<ITask> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+        List<BatchResult> results = new ArrayList<>();
+        
+        readTasks(file, task -> {
+            batch.add(task);
+            if (batch.size() == IMPORT_BATCH_SIZE) {
+                results.add(target.addTasks(batch.toArray(new ITask[0])));
+                batch.clear();
+            }
+            return true;
+        });
+        if (!batch.isEmpty()) {
+            results.add(target.addTasks(batch.toArray(new ITask[0])));
+        }
+        return merge(results);
+    }
+    
+    /**
+     * Loads a snapshot directly into a new in-memory DAO, bypassing per-row validation
+     * since the snapshot was written from stored tasks. The tasks keep the versions
+     * stored in the snapshot.
+     * 
+     * @param file the snapshot file
+     * @return an in-memory DAO holding the tasks of the snapshot
+     * @throws TaskManagerException if the file cannot be read or is corrupt
+     */
+    public static InMemoryTasksDAO loadInMemory(Path file) throws TaskManagerException {
+        InMemoryTasksDAO tasks = new InMemoryTasksDAO();
+        readTasks(file, task -> {
+            tasks.putTask(task);
+            return true;
+        });
+        return tasks;
+    }
+    
+    /**
+     * Combines the results of consecutive batches into one result.
+     * 
+     * @param results the batch results in order
+     * @return the combined result
+     */
+    private static BatchResult merge(List<BatchResult> results) {
+        int size = 0;
+        for (BatchResult result : results) {
+            size += result.size();
+        }
+        int[] ids = new int[size];
+        boolean[] failed = new boolean[size];
+        int position = 0;
+        for (BatchResult result : results) {
+            for (int i = 0; i < result.size(); i++, position++) {
+                ids[position] = result.getId(i);
+                failed[position] = !result.isSucceeded(i);
+            }
+        }
+        return new BatchResult(ids, failed);
+    }
+    
+    /**
+     * Writes snapshot records to a channel through a direct buffer.
+     */
+    private static final class SnapshotWriter {
+        
+        //private variables declaration
+        private final FileChannel channel;
+        private final CRC32 crc;
+        private final CRC32 recordCrc;
+        private ByteBuffer buffer;
+        private long count;
+        
+        /**
+         * Constructs a writer and writes the snapshot header with a placeholder count.
+         * 
+         * @param channel the channel of the snapshot file
+         */
+        SnapshotWriter(FileChannel channel) {
+            this.channel = channel;
+            this.crc = new CRC32();
+            this.recordCrc = new CRC32();
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(0);
+        }
+        
+        /**
+         * Appends one task record.
+         * 
+         * @param task the task to write
+         * @throws TaskManagerException if the record cannot be written
+         */
+        void write(ITask task) throws TaskManagerException {
+            byte[] title = task.getTitle().getBytes(StandardCharsets.UTF_8);
+            byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+            int length = 4 + 1 + 4 + 4 + title.length + 4 + description.length + 4;
+            
+            try {
+                if (buffer.remaining() < length) {
+                    flush();
+                    if (buffer.capacity() < length) {
+                        buffer = ByteBuffer.allocateDirect(length);
+                    }
+                }
+            } catch (IOException e) {
+                throw new TaskManagerException("Failed to write task snapshot", e);
+            }
+            
+            int start = buffer.position();
+            buffer.putInt(task.getId());
+            buffer.put((byte) task.getState().getCode());
+            buffer.putInt(task.getVersion());
+            buffer.putInt(title.length).put(title);
+            buffer.putInt(description.length).put(description);
+            
+            ByteBuffer record = buffer.duplicate();
+            record.position(start).limit(buffer.position());
+            recordCrc.reset();
+            recordCrc.update(record);
+            buffer.putInt((int) recordCrc.getValue());
+            
+            record.limit(buffer.position()).position(start);
+            crc.update(record);
+            count++;
+        }
+        
+        /**
+         * Writes the buffered bytes and the checksum, then stores the final task count in the header.
+         * 
+         * @return the number of written tasks
+         * @throws IOException if the file cannot be written
+         */
+        long finish() throws IOException {
+            if (buffer.remaining() < 4) {
+                flush();
+            }
+            buffer.putInt((int) crc.getValue());
+            flush();
+            
+            ByteBuffer countBuffer = ByteBuffer.allocate(8).putLong(0, count);
+            while (countBuffer.hasRemaining()) {
+                channel.write(countBuffer, COUNT_OFFSET + countBuffer.position());
+            }
+            return count;
+        }
+        
+        /**
+         * Writes the buffered bytes to the channel and empties the buffer.
+         * 
+         * @throws IOException if the file cannot be written
+         */
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+    
+    /**
+     * Reads snapshot records from a channel through a direct buffer.
+     */
+    private static final class SnapshotReader {
+        
+        //private variables declaration
+        private final FileChannel channel;
+        private final Path file;
+        private final CRC32 crc;
+        private final CRC32 recordCrc;
+        private final boolean legacy;
+        private final long count;
+        private ByteBuffer buffer;
+        private long read;
+        
+        /**
+         * Constructs a reader and validates the snapshot header.
+         * 
+         * @param channel the channel of the snapshot file
+         * @param file the snapshot file, used in error messages
+         * @throws IOException if the file cannot be read
+         * @throws TaskManagerException if the file is not a snapshot
+         */
+        SnapshotReader(FileChannel channel, Path file) throws IOException, TaskManagerException {
+            this.channel = channel;
+            this.file = file;
+            this.crc = new CRC32();
+            this.recordCrc = new CRC32();
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.limit(0);
+            
+            if (!fill(HEADER_SIZE) || buffer.getInt() != MAGIC) {
+                throw new TaskManagerException("Not a task snapshot: " + file);
+            }
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION && version != LEGACY_FORMAT_VERSION) {
+                throw new TaskManagerException("Unsupported task snapshot version " + version + ": " + file);
+            }
+            this.legacy = version == LEGACY_FORMAT_VERSION;
+            this.count = buffer.getLong();
+        }
+        
+        /**
+         * Reads the next task.
+         * 
+         * @return the next task, or null after the last one
+         * @throws IOException if the file cannot be read
+         * @throws TaskManagerException if the file is truncated, corrupt or its checksum does not match
+         */
+        ITask next() throws IOException, TaskManagerException {
+            if (read == count) {
+                if (!fill(4) || buffer.getInt() != (int) crc.getValue()) {
+                    throw new TaskManagerException("Task snapshot checksum mismatch: " + file);
+                }
+                return null;
+            }
+            
+            recordCrc.reset();
+            require(legacy ? 9 : 13);
+            int start = buffer.position();
+            int id = buffer.getInt();
+            byte stateCode = buffer.get();
+            int version = legacy ? 0 : buffer.getInt();
+            int titleLength = buffer.getInt();
+            checksum(start);
+            String title = readString(titleLength);
+            require(4);
+            start = buffer.position();
+            int descriptionLength = buffer.getInt();
+            checksum(start);
+            String description = readString(descriptionLength);
+            
+            if (!legacy) {
+                require(4);
+                start = buffer.position();
+                int expected = buffer.getInt();
+                if (expected != (int) recordCrc.getValue()) {
+                    throw new TaskManagerException("Task snapshot record " + (read + 1) + " is corrupt: " + file);
+                }
+                checksum(start);
+            }
+            
+            TaskState state;
+            try {
+                state = TaskState.fromCode(stateCode);
+            } catch (IllegalArgumentException e) {
+                throw new TaskManagerException("Corrupt task snapshot: " + file, e);
+            }
+            read++;
+            return new Task(id, title, description, state, version);
+        }
+        
+        /**
+         * Reads a UTF-8 string of the given length and adds it to the checksum.
+         * 
+         * @param length the length in bytes
+         * @return the decoded string
+         * @throws IOException if the file cannot be read
+         * @throws TaskManagerException if the file is truncated
+         */
+        private String readString(int length) throws IOException, TaskManagerException {
+            //a corrupt length must not make the reader allocate a huge buffer
+            if (length < 0 || length > channel.size()) {
+                throw new TaskManagerException("Corrupt task snapshot: " + file);
+            }
+            require(length);
+            int start = buffer.position();
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            checksum(start);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        
+        /**
+         * Adds the bytes consumed since the given buffer position to the file and record checksums.
+         * 
+         * @param start the buffer position where the consumed bytes begin
+         */
+        private void checksum(int start) {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.position(start).limit(buffer.position());
+            crc.update(consumed);
+            consumed.position(start);
+            recordCrc.update(consumed);
+        }
+        
+        /**
+         * Makes sure the buffer holds at least the given number of unread bytes.
+         * 
+         * @param bytes the number of bytes needed
+         * @throws IOException if the file cannot be read
+         * @throws TaskManagerException if the file ends first
+         */
+        private void require(int bytes) throws IOException, TaskManagerException {
+            if (!fill(bytes)) {
+                throw new TaskManagerException("Truncated task snapshot: " + file);
+            }
+        }
+        
+        /**
+         * Reads from the channel until the buffer holds the given number of unread bytes.
+         * 
+         * @param bytes the number of bytes needed
+         * @return false if the file ends first
+         * @throws IOException if the file cannot be read
+         */
+        private boolean fill(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return true;
+            }
+            if (buffer.capacity() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(bytes);
+                larger.put(buffer);
+                buffer = larger;
+            } else {
+                buffer.compact();
+            }
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+            return true;
+        }
+    }
+}
@@ -3,16 +3,44 @@ package com.oriomri.taskmanager.dao;
 import com.oriomri.taskmanager.model.ITask;
 import com.oriomri.taskmanager.model.Task;
 import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.exceptions.StaleTaskVersionException;
 import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.filter.FilterPlan;
+import com.oriomri.taskmanager.filter.ITaskFilter;
+import com.oriomri.taskmanager.filter.SqlCondition;
+import com.oriomri.taskmanager.filter.TaskFilters;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Concrete implementation of the Data Access Object for tasks.
  * This class implements the Singleton pattern to ensure only one instance
- * manages the database connection and provides CRUD operations for tasks.
+ * manages the database connections and provides CRUD operations for tasks.
+ * Calls are served from a bounded connection pool, so the DAO can be used
+ * safely from many threads at once.
+ * 
+ * Completed tasks that have not been modified for a configurable time can be
+ * moved to a separate archive table, by archiveCompletedTasks() or by a background
+ * archiver, so scans, pages and counts of the tasks table only pay for active work.
+ * Archived tasks are still found by getTask() and by getTasks(true), and a write
+ * to an archived task moves it back to the tasks table first.
  * 
  * @author Ori and Omri
  * @version 1.0
@@ -21,23 +49,147 @@ public class TasksDAO implements ITasksDAO {
     
     //private variables declaration
     private static TasksDAO instance;
-    private Connection connection;
-    private static final String DATABASE_URL = "jdbc:derby:mydb;create=true";
-    private static final String CREATE_TABLE_SQL = 
-        "CREATE TABLE tasks (" +
-        "id INT PRIMARY KEY, " +
-        "title VARCHAR(255) NOT NULL, " +
-        "description CLOB, " +
-        "state VARCHAR(50) NOT NULL)";
+    private ConnectionPool connectionPool;
+    private final String databaseName;
+    private final StartupTimings startupTimings;
+    private int schemaVersion;
+    private final IdBlockAllocator idAllocator;
+    private final int retainedChanges;
+    private final AtomicInteger changesSinceTrim;
+    private final ReentrantReadWriteLock tierLock;
+    private volatile boolean archiveInUse;
+    private ScheduledExecutorService archiver;
+    private final List<Runnable> archiveListeners;
+    private static final String DEFAULT_DATABASE_NAME = "mydb";
+    private static final String POOL_SIZE_PROPERTY = "taskmanager.db.poolSize";
+    private static final String ACQUIRE_TIMEOUT_PROPERTY = "taskmanager.db.acquireTimeoutMillis";
+    private static final long DEFAULT_ACQUIRE_TIMEOUT_MILLIS = 30000;
+    private static final String WARM_UP_TASKS_PROPERTY = "taskmanager.db.warmUpTasks";
+    private static final String ARCHIVE_AFTER_PROPERTY = "taskmanager.db.archiveAfterMillis";
+    private static final String ARCHIVE_INTERVAL_PROPERTY = "taskmanager.db.archiveIntervalMillis";
+    private static final long DEFAULT_ARCHIVE_INTERVAL_MILLIS = 60000;
+    private static final String SEQUENCE_PREALLOCATOR_PROPERTY = "derby.language.sequence.preallocator";
+    private static final String TASK_COLUMNS = "id, title, description, description_lob, state, version";
+    private static final String SELECT_ALL_SQL = "SELECT " + TASK_COLUMNS + " FROM tasks";
+    private static final String SELECT_ALL_ORDERED_SQL = "SELECT " + TASK_COLUMNS + " FROM tasks ORDER BY id";
+    private static final String SELECT_BY_ID_SQL = "SELECT " + TASK_COLUMNS + " FROM tasks WHERE id = ?";
+    private static final String SELECT_PAGE_SQL =
+        "SELECT " + TASK_COLUMNS + " FROM tasks WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_PAGE_BY_STATE_SQL =
+        "SELECT " + TASK_COLUMNS + " FROM tasks WHERE state = ? AND id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_BY_STATE_SQL =
+        "SELECT " + TASK_COLUMNS + " FROM tasks WHERE state = ? ORDER BY id";
+    private static final String SELECT_BY_TITLE_PREFIX_SQL =
+        "SELECT " + TASK_COLUMNS + " FROM tasks WHERE title LIKE ? ESCAPE '\\' ORDER BY title";
+    private static final String SUMMARY_COLUMNS = "id, title, state, version";
+    private static final String SELECT_SUMMARY_ALL_SQL = "SELECT " + SUMMARY_COLUMNS + " FROM tasks";
+    private static final String SELECT_SUMMARY_PAGE_SQL =
+        "SELECT " + SUMMARY_COLUMNS + " FROM tasks WHERE id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final String SELECT_SUMMARY_PAGE_BY_STATE_SQL =
+        "SELECT " + SUMMARY_COLUMNS + " FROM tasks WHERE state = ? AND id > ? ORDER BY id FETCH FIRST ? ROWS ONLY";
+    private static final int DESCRIPTION_BATCH_SIZE = 100;
+    private static final String SELECT_DESCRIPTIONS_SQL =
+        "SELECT id, description, description_lob FROM tasks WHERE id IN (" +
+        String.join(", ", Collections.nCopies(DESCRIPTION_BATCH_SIZE, "?")) + ")";
+    private static final String INSERT_SQL =
+        "INSERT INTO tasks (id, title, description, description_lob, state, modified_at) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL =
+        "UPDATE tasks SET title = ?, description = ?, description_lob = ?, state = ?, modified_at = ?," +
+        " version = version + 1 WHERE id = ?";
+    private static final String CONDITIONAL_UPDATE_SQL = UPDATE_SQL + " AND version = ?";
+    private static final String SELECT_VERSION_SQL = "SELECT version FROM tasks WHERE id = ?";
+    private static final String UPSERT_SQL =
+        "MERGE INTO tasks USING SYSIBM.SYSDUMMY1 ON tasks.id = ?" +
+        " WHEN MATCHED THEN UPDATE SET title = ?, description = ?, description_lob = ?, state = ?, modified_at = ?," +
+        " version = tasks.version + 1" +
+        " WHEN NOT MATCHED THEN INSERT (id, title, description, description_lob, state, modified_at)" +
+        " VALUES (?, ?, ?, ?, ?, ?)";
+    private static final int VERSION_BATCH_SIZE = 100;
+    private static final String SELECT_VERSIONS_SQL =
+        "SELECT id, version FROM tasks WHERE id IN (" +
+        String.join(", ", Collections.nCopies(VERSION_BATCH_SIZE, "?")) + ")";
+    private static final String COUNT_ALL_SQL = "SELECT COUNT(*) FROM tasks";
+    private static final String COUNT_BY_STATE_SQL = "SELECT state, COUNT(*) FROM tasks GROUP BY state";
+    private static final String INSERT_CHANGE_SQL = "INSERT INTO task_changes (task_id, change_type) VALUES (?, ?)";
+    private static final String SELECT_CHANGES_SQL =
+        "SELECT c.seq, c.task_id, c.change_type," +
+        " t.id, t.title, t.description, t.description_lob, t.state, t.version" +
+        " FROM task_changes c LEFT OUTER JOIN tasks t ON t.id = c.task_id" +
+        " WHERE c.seq > ? ORDER BY c.seq FETCH FIRST ? ROWS ONLY";
+    private static final String CHANGE_BOUNDS_SQL =
+        "VALUES ((SELECT MIN(seq) FROM task_changes), (SELECT MAX(seq) FROM task_changes))";
+    private static final String SELECT_LATEST_CHANGE_SQL = "SELECT MAX(seq) FROM task_changes";
+    private static final String TRIM_CHANGES_SQL = "DELETE FROM task_changes WHERE seq <= ?";
+    private static final int CHANGE_TRIM_INTERVAL = 1000;
+    private static final String DELETE_ALL_SQL = "DELETE FROM tasks";
+    private static final String ARCHIVE_COLUMNS = TASK_COLUMNS + ", modified_at";
+    private static final String SELECT_ARCHIVED_SQL = "SELECT " + TASK_COLUMNS + " FROM tasks_archive";
+    private static final String SELECT_ALL_TIERS_SQL = SELECT_ALL_SQL + " UNION ALL " + SELECT_ARCHIVED_SQL;
+    private static final String SELECT_ALL_TIERS_ORDERED_SQL = SELECT_ALL_TIERS_SQL + " ORDER BY id";
+    private static final String SELECT_ARCHIVED_BY_ID_SQL = SELECT_ARCHIVED_SQL + " WHERE id = ?";
+    private static final String SELECT_ANY_ARCHIVED_SQL = "SELECT id FROM tasks_archive FETCH FIRST 1 ROWS ONLY";
+    private static final String COUNT_ARCHIVED_SQL = "SELECT COUNT(*) FROM tasks_archive";
+    private static final String SELECT_MAX_ID_SQL = "SELECT MAX(id) FROM tasks";
+    private static final String SELECT_MAX_ARCHIVED_ID_SQL = "SELECT MAX(id) FROM tasks_archive";
+    private static final String ARCHIVE_SQL =
+        "INSERT INTO tasks_archive (" + ARCHIVE_COLUMNS + ") SELECT " + ARCHIVE_COLUMNS +
+        " FROM tasks WHERE state = ? AND modified_at < ?";
+    private static final String DELETE_ARCHIVED_SQL = "DELETE FROM tasks WHERE state = ? AND modified_at < ?";
+    private static final int RESTORE_BATCH_SIZE = 100;
+    private static final String RESTORE_SQL =
+        "INSERT INTO tasks (" + ARCHIVE_COLUMNS + ") SELECT " + ARCHIVE_COLUMNS +
+        " FROM tasks_archive WHERE id IN (" + String.join(", ", Collections.nCopies(RESTORE_BATCH_SIZE, "?")) + ")";
+    private static final String DELETE_RESTORED_SQL =
+        "DELETE FROM tasks_archive WHERE id IN (" + String.join(", ", Collections.nCopies(RESTORE_BATCH_SIZE, "?")) + ")";
+    private static final String DELETE_ALL_ARCHIVED_SQL = "DELETE FROM tasks_archive";
+    private static final String DELETE_BY_ID_SQL = "DELETE FROM tasks WHERE id = ?";
+    private static final String NEXT_ID_BLOCK_SQL = "VALUES (NEXT VALUE FOR task_id_seq)";
+    private static final int BATCH_CHUNK_SIZE = 1000;
+    private static final String TRANSACTION_ROLLBACK_SQL_STATE_CLASS = "40";
+    private static final String[] WARM_UP_STATEMENTS = {
+        SELECT_ALL_SQL, SELECT_BY_ID_SQL, SELECT_PAGE_SQL, SELECT_PAGE_BY_STATE_SQL,
+        INSERT_SQL, UPDATE_SQL, DELETE_BY_ID_SQL, INSERT_CHANGE_SQL
+    };
     
     /**
      * Private constructor to prevent direct instantiation.
-     * Initializes the database connection and creates the tasks table if it doesn't exist.
+     * Initializes the connection pool and brings the database schema up to date.
+     * If the {@code taskmanager.db.warmUpTasks} system property is positive, a
+     * background warm-up preloading that many active tasks is started afterwards.
+     * If the {@code taskmanager.db.archiveAfterMillis} system property is positive,
+     * a background archiver is started that moves tasks completed for that long to
+     * the archive table every {@code taskmanager.db.archiveIntervalMillis} (one minute by default).
      * 
      * @throws TaskManagerException if database initialization fails
      */
     private TasksDAO() throws TaskManagerException {
+        this(DEFAULT_DATABASE_NAME);
+    }
+    
+    /**
+     * Private constructor for a DAO on the given embedded database.
+     * 
+     * @param databaseName the name of the Derby database, created if it does not exist
+     * @throws TaskManagerException if database initialization fails
+     */
+    private TasksDAO(String databaseName) throws TaskManagerException {
+        this.databaseName = databaseName;
+        this.startupTimings = new StartupTimings();
+        this.idAllocator = new IdBlockAllocator(TasksSchema.ID_BLOCK_SIZE, blockSize -> reserveIdBlock());
+        this.retainedChanges = ChangeLog.configuredRetention();
+        this.changesSinceTrim = new AtomicInteger();
+        this.tierLock = new ReentrantReadWriteLock();
+        this.archiveListeners = new CopyOnWriteArrayList<>();
         initializeDatabase();
+        
+        int warmUpTasks = Integer.getInteger(WARM_UP_TASKS_PROPERTY, 0);
+        if (warmUpTasks > 0) {
+            warmUpInBackground(warmUpTasks);
+        }
+        long archiveAfter = Long.getLong(ARCHIVE_AFTER_PROPERTY, 0);
+        if (archiveAfter > 0) {
+            startArchiver(archiveAfter, Long.getLong(ARCHIVE_INTERVAL_PROPERTY, DEFAULT_ARCHIVE_INTERVAL_MILLIS));
+        }
     }
     
     /**
@@ -55,44 +207,202 @@ public class TasksDAO implements ITasksDAO {
     }
     
     /**
-     * Initializes the database connection and creates the tasks table.
+     * Opens a separate DAO on another embedded Derby database, for example one
+     * shard of a ShardedTasksDAO. Unlike getInstance(), every call creates a new
+     * instance with its own connection pool, which the caller must close with
+     * closeConnection().
+     * 
+     * @param databaseName the name of the Derby database, created if it does not exist
+     * @return a new DAO on that database
+     * @throws TaskManagerException if the database cannot be opened
+     */
+    public static TasksDAO openDatabase(String databaseName) throws TaskManagerException {
+        if (databaseName == null || databaseName.trim().isEmpty()) {
+            throw new IllegalArgumentException("Database name cannot be null or empty");
+        }
+        return new TasksDAO(databaseName);
+    }
+    
+    /**
+     * Starts creating the single instance on a background thread, so the caller
+     * can do other work (for example build the user interface) while Derby boots.
+     * A later getInstance() call waits only for whatever is left.
+     * 
+     * @return a future completed with the instance, or exceptionally if creation fails
+     */
+    public static CompletableFuture<TasksDAO> getInstanceAsync() {
+        CompletableFuture<TasksDAO> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                future.complete(getInstance());
+            } catch (TaskManagerException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        }, "tasks-dao-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+    
+    /**
+     * Initializes the connection pool and migrates the database schema.
+     * The pool size defaults to the number of available processors and can be
+     * overridden with the {@code taskmanager.db.poolSize} system property.
+     * Unless {@code derby.language.sequence.preallocator} is set, Derby is told to
+     * preallocate one value of the task ID sequence instead of 100: every value is a
+     * block of TasksSchema.ID_BLOCK_SIZE IDs, and the preallocated values are lost when
+     * the database is not shut down cleanly, which would skip about 10,000 IDs per restart.
+     * Each startup phase is timed and recorded in the startup timings.
      * 
      * @throws TaskManagerException if database initialization fails
      */
     private void initializeDatabase() throws TaskManagerException {
+        int poolSize = Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors());
+        long acquireTimeout = Long.getLong(ACQUIRE_TIMEOUT_PROPERTY, DEFAULT_ACQUIRE_TIMEOUT_MILLIS);
+        if (System.getProperty(SEQUENCE_PREALLOCATOR_PROPERTY) == null) {
+            System.setProperty(SEQUENCE_PREALLOCATOR_PROPERTY, "1");
+        }
+        
         try {
-            //establish database connection
-            connection = DriverManager.getConnection(DATABASE_URL);
+            //create the pool
+            long start = System.nanoTime();
+            connectionPool = new ConnectionPool("jdbc:derby:" + databaseName + ";create=true", poolSize, acquireTimeout);
+            startupTimings.record("createPool", System.nanoTime() - start);
+            
+            //establish the first database connection, which boots Derby
+            start = System.nanoTime();
+            connectionPool.prestart(1);
+            startupTimings.record("bootDatabase", System.nanoTime() - start);
             
-            //create tasks table if it doesn't exist
-            createTasksTableIfNotExists();
+            //create or upgrade the tasks table
+            start = System.nanoTime();
+            migrateSchema();
+            startupTimings.record("migrateSchema", System.nanoTime() - start);
             
+        } catch (IllegalArgumentException e) {
+            throw new TaskManagerException("Invalid connection pool configuration", e);
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to initialize database", e);
+            throw new TaskManagerException("Failed to connect to database", e);
         }
     }
     
     /**
-     * Creates the tasks table if it doesn't exist in the database.
+     * Creates the tasks table or upgrades an existing database to the latest schema version.
+     * Databases created before schema versioning are upgraded in place.
      * 
-     * @throws TaskManagerException if table creation fails
+     * @throws TaskManagerException if the schema cannot be migrated
      */
-    private void createTasksTableIfNotExists() throws TaskManagerException {
-        try {
-            DatabaseMetaData metaData = connection.getMetaData();
-            ResultSet tables = metaData.getTables(null, null, "TASKS", null);
+    private void migrateSchema() throws TaskManagerException {
+        SchemaMigrator migrator = new SchemaMigrator(TasksSchema.migrations());
+        
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            schemaVersion = migrator.migrate(pooled.getConnection());
+            try (ResultSet resultSet = pooled.prepare(SELECT_ANY_ARCHIVED_SQL).executeQuery()) {
+                archiveInUse = resultSet.next();
+            }
+            //the ID sequence does not see tasks stored with caller-chosen IDs, so start above them
+            idAllocator.skipIdsBelow(readMaxStoredId(pooled) + 1L);
             
-            if (!tables.next()) {
-                //table doesn't exist, create it
-                try (Statement statement = connection.createStatement()) {
-                    statement.execute(CREATE_TABLE_SQL);
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to migrate database schema", e);
+        }
+    }
+    
+    /**
+     * Reads the highest task ID stored in the tasks table or the archive table.
+     * 
+     * @param pooled the connection to use
+     * @return the highest stored ID, or 0 if no task is stored
+     * @throws SQLException if the IDs cannot be read
+     */
+    private int readMaxStoredId(PooledConnection pooled) throws SQLException {
+        int maxId = 0;
+        for (String sql : new String[] {SELECT_MAX_ID_SQL, SELECT_MAX_ARCHIVED_ID_SQL}) {
+            try (ResultSet resultSet = pooled.prepare(sql).executeQuery()) {
+                if (resultSet.next()) {
+                    //MAX of an empty table is NULL, which getInt reads as 0
+                    maxId = Math.max(maxId, resultSet.getInt(1));
+                }
+            }
+        }
+        return maxId;
+    }
+    
+    /**
+     * Warms up the DAO so the first user-facing calls are not the slow ones.
+     * Every connection of the pool is opened with the common statements already
+     * prepared, and the first hotTasks tasks in the TO_DO and IN_PROGRESS states
+     * are read so their pages are in Derby's page cache.
+     * Both phases are recorded in the startup timings.
+     * 
+     * @param hotTasks the number of active tasks per state to preload, or 0 to skip preloading
+     * @throws TaskManagerException if a connection cannot be opened or the tasks cannot be read
+     */
+    public void warmUp(int hotTasks) throws TaskManagerException {
+        long start = System.nanoTime();
+        try {
+            //prepare on the connection opened at startup, then open the rest of the pool
+            try (PooledConnection pooled = connectionPool.acquire()) {
+                for (String sql : WARM_UP_STATEMENTS) {
+                    pooled.prepare(sql);
                 }
             }
+            connectionPool.prestart(connectionPool.getMaxSize(), WARM_UP_STATEMENTS);
+            
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to create tasks table", e);
+            throw new TaskManagerException("Failed to warm up database connections", e);
+        }
+        startupTimings.record("warmUpConnections", System.nanoTime() - start);
+        
+        if (hotTasks > 0) {
+            start = System.nanoTime();
+            getTasksPage(-1, hotTasks, TaskState.TO_DO);
+            getTasksPage(-1, hotTasks, TaskState.IN_PROGRESS);
+            startupTimings.record("preloadHotTasks", System.nanoTime() - start);
         }
     }
     
+    /**
+     * Runs warmUp on a background thread.
+     * 
+     * @param hotTasks the number of active tasks per state to preload, or 0 to skip preloading
+     * @return a future completed when the warm-up is done, or exceptionally if it fails
+     */
+    public CompletableFuture<Void> warmUpInBackground(int hotTasks) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                warmUp(hotTasks);
+                future.complete(null);
+            } catch (TaskManagerException | RuntimeException e) {
+                //log the error; the DAO works without a warm-up, only slower at first
+                System.err.println("Database warm-up failed: " + e.getMessage());
+                future.completeExceptionally(e);
+            }
+        }, "tasks-dao-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+        return future;
+    }
+    
+    /**
+     * Gets the durations of the startup phases, including background warm-up phases that finished.
+     * 
+     * @return the startup timings
+     */
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+    
+    /**
+     * Gets the schema version the database was migrated to at startup.
+     * 
+     * @return the current schema version
+     */
+    public int getSchemaVersion() {
+        return schemaVersion;
+    }
+    
     /**
      * Retrieves all tasks from the database.
      * 
@@ -102,20 +412,13 @@ public class TasksDAO implements ITasksDAO {
     @Override
     public ITask[] getTasks() throws TaskManagerException {
         List<ITask> tasks = new ArrayList<>();
-        String sql = "SELECT id, title, description, state FROM tasks";
         
-        try (PreparedStatement statement = connection.prepareStatement(sql);
-             ResultSet resultSet = statement.executeQuery()) {
+        try (PooledConnection pooled = connectionPool.acquire();
+             ResultSet resultSet = pooled.prepare(SELECT_ALL_SQL).executeQuery()) {
             
             //process each result row
             while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String title = resultSet.getString("title");
-                String description = resultSet.getString("description");
-                TaskState state = TaskState.valueOf(resultSet.getString("state"));
-                
-                Task task = new Task(id, title, description, state);
-                tasks.add(task);
+                tasks.add(readTask(resultSet));
             }
             
         } catch (SQLException e) {
@@ -125,8 +428,133 @@ public class TasksDAO implements ITasksDAO {
         return tasks.toArray(new ITask[0]);
     }
     
+    /**
+     * Retrieves all tasks from the database, reading only the columns of the given projection.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(TaskProjection projection) throws TaskManagerException {
+        if (projection != TaskProjection.SUMMARY) {
+            return getTasks();
+        }
+        
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            return readSummaries(pooled.prepare(SELECT_SUMMARY_ALL_SQL));
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to retrieve tasks", e);
+        }
+    }
+    
+    /**
+     * Retrieves all tasks, optionally including the tasks in the archive table.
+     * 
+     * @param includeArchived true to also return archived tasks
+     * @return an array of all tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasks(boolean includeArchived) throws TaskManagerException {
+        if (!includeArchived) {
+            return getTasks();
+        }
+        
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            return readTasks(pooled.prepare(SELECT_ALL_TIERS_SQL));
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to retrieve tasks", e);
+        }
+    }
+    
+    /**
+     * Retrieves the tasks that match a filter.
+     * The part of the filter that translates to SQL becomes the parameterized WHERE
+     * clause of the query, so the database only returns candidate rows, and only
+     * the part that does not translate is evaluated on those rows in memory.
+     * Filters of the same shape produce the same SQL text and share a cached statement;
+     * the statement cache is bounded, so rarely used shapes are closed and prepared again.
+     * 
+     * @param filter the filter to match
+     * @return the matching tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] findTasks(ITaskFilter filter) throws TaskManagerException {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        FilterPlan plan = filter.plan();
+        SqlCondition condition = plan.getCondition();
+        ITask[] candidates;
+        
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement;
+            if (condition == null) {
+                statement = pooled.prepare(SELECT_ALL_SQL);
+            } else {
+                statement = pooled.prepare(SELECT_ALL_SQL + " WHERE " + condition.getSql());
+                Object[] parameters = condition.getParameters();
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+            }
+            candidates = readTasks(statement);
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to find tasks", e);
+        }
+        
+        if (plan.isExact()) {
+            return candidates;
+        }
+        List<ITask> matches = new ArrayList<>();
+        for (ITask task : candidates) {
+            if (plan.getResidual().matches(task)) {
+                matches.add(task);
+            }
+        }
+        return matches.toArray(new ITask[0]);
+    }
+    
+    /**
+     * Retrieves the tasks in the archive table only.
+     * 
+     * @return an array of the archived tasks
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    public ITask[] getArchivedTasks() throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            return readTasks(pooled.prepare(SELECT_ARCHIVED_SQL));
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to retrieve archived tasks", e);
+        }
+    }
+    
+    /**
+     * Counts the tasks in the archive table.
+     * 
+     * @return the number of archived tasks
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    public int countArchivedTasks() throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire();
+             ResultSet resultSet = pooled.prepare(COUNT_ARCHIVED_SQL).executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to count archived tasks", e);
+        }
+    }
+    
     /**
      * Retrieves a specific task by its ID.
+     * Tasks not in the tasks table are looked up in the archive table.
      * 
      * @param id the unique identifier of the task to retrieve
      * @return the task with the specified ID, or null if not found
@@ -134,137 +562,1427 @@ public class TasksDAO implements ITasksDAO {
      */
     @Override
     public ITask getTask(int id) throws TaskManagerException {
-        String sql = "SELECT id, title, description, state FROM tasks WHERE id = ?";
-        
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement = pooled.prepare(SELECT_BY_ID_SQL);
             statement.setInt(1, id);
             
             try (ResultSet resultSet = statement.executeQuery()) {
                 if (resultSet.next()) {
-                    String title = resultSet.getString("title");
-                    String description = resultSet.getString("description");
-                    TaskState state = TaskState.valueOf(resultSet.getString("state"));
-                    
-                    return new Task(id, title, description, state);
+                    return readTask(resultSet);
                 }
             }
+            return readArchivedTask(pooled, id); //null if the task is not found in either table
             
         } catch (SQLException e) {
             throw new TaskManagerException("Failed to retrieve task with ID: " + id, e);
         }
-        
-        return null; //task not found
     }
     
     /**
-     * Adds a new task to the database.
+     * Retrieves one page of tasks ordered by ID, starting after the given ID.
+     * The query seeks directly to afterId through the primary key index and
+     * stops after limit rows, so its cost does not grow with the table size.
      * 
-     * @param task the task to add
-     * @throws TaskManagerException if an error occurs during addition
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
      */
     @Override
-    public void addTask(ITask task) throws TaskManagerException {
-        if (task == null) {
-            throw new IllegalArgumentException("Task cannot be null");
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        return getTasksPage(afterId, limit, state, TaskProjection.FULL);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID, reading only the columns of the given projection.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks with IDs greater than afterId, in ascending ID order
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Page limit must be positive");
         }
+        boolean summary = projection == TaskProjection.SUMMARY;
         
-        String sql = "INSERT INTO tasks (id, title, description, state) VALUES (?, ?, ?, ?)";
-        
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, task.getId());
-            statement.setString(2, task.getTitle());
-            statement.setString(3, task.getDescription());
-            statement.setString(4, task.getState().name());
-            
-            statement.executeUpdate();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement;
+            if (state == null) {
+                statement = pooled.prepare(summary ? SELECT_SUMMARY_PAGE_SQL : SELECT_PAGE_SQL);
+                statement.setInt(1, afterId);
+                statement.setInt(2, limit);
+            } else {
+                statement = pooled.prepare(summary ? SELECT_SUMMARY_PAGE_BY_STATE_SQL : SELECT_PAGE_BY_STATE_SQL);
+                statement.setShort(1, (short) state.getCode());
+                statement.setInt(2, afterId);
+                statement.setInt(3, limit);
+            }
+            return summary ? readSummaries(statement) : readTasks(statement);
             
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to add task", e);
+            throw new TaskManagerException("Failed to retrieve tasks after ID: " + afterId, e);
         }
     }
     
     /**
-     * Updates an existing task in the database.
+     * Retrieves all tasks in the given state, ordered by ID.
+     * The query is answered through the (state, id) index instead of a full scan.
      * 
-     * @param task the task to update
-     * @throws TaskManagerException if an error occurs during update
+     * @param state the state to filter by
+     * @return the tasks in the given state
+     * @throws TaskManagerException if an error occurs during retrieval
      */
     @Override
-    public void updateTask(ITask task) throws TaskManagerException {
-        if (task == null) {
-            throw new IllegalArgumentException("Task cannot be null");
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        if (state == null) {
+            throw new IllegalArgumentException("Task state cannot be null");
         }
         
-        String sql = "UPDATE tasks SET title = ?, description = ?, state = ? WHERE id = ?";
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement = pooled.prepare(SELECT_BY_STATE_SQL);
+            statement.setShort(1, (short) state.getCode());
+            return readTasks(statement);
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to retrieve tasks in state: " + state.name(), e);
+        }
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix, ordered by title.
+     * The prefix is matched with LIKE and its wildcards escaped; Derby turns a LIKE prefix into
+     * an index range scan. A plain range on the title would also match shorter titles, since
+     * Derby pads VARCHAR values with spaces when comparing them.
+     * 
+     * @param prefix the title prefix to match
+     * @return the tasks whose title starts with the prefix
+     * @throws TaskManagerException if an error occurs during retrieval
+     */
+    @Override
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Title prefix cannot be null");
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setString(1, task.getTitle());
-            statement.setString(2, task.getDescription());
-            statement.setString(3, task.getState().name());
-            statement.setInt(4, task.getId());
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement = pooled.prepare(SELECT_BY_TITLE_PREFIX_SQL);
+            statement.setString(1, TaskFilters.escapeLike(prefix) + "%");
+            return readTasks(statement);
             
-            int rowsAffected = statement.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new TaskManagerException("Task with ID " + task.getId() + " not found for update");
-            }
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to retrieve tasks with title prefix: " + prefix, e);
+        }
+    }
+    
+    /**
+     * Counts the tasks with COUNT(*) in the database, without reading any rows.
+     * 
+     * @return the total number of tasks
+     * @throws TaskManagerException if an error occurs during counting
+     */
+    @Override
+    public int countTasks() throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire();
+             ResultSet resultSet = pooled.prepare(COUNT_ALL_SQL).executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
             
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to update task", e);
+            throw new TaskManagerException("Failed to count tasks", e);
         }
     }
     
     /**
-     * Deletes all tasks from the database.
+     * Counts the tasks per state with GROUP BY in the database.
+     * The query is answered from the (state, id) index without touching the table rows.
      * 
-     * @throws TaskManagerException if an error occurs during deletion
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     * @throws TaskManagerException if an error occurs during counting
      */
     @Override
-    public void deleteTasks() throws TaskManagerException {
-        String sql = "DELETE FROM tasks";
+    public Map<TaskState, Integer> countTasksByState() throws TaskManagerException {
+        Map<TaskState, Integer> counts = new EnumMap<>(TaskState.class);
+        for (TaskState state : TaskState.values()) {
+            counts.put(state, 0);
+        }
         
-        try (Statement statement = connection.createStatement()) {
-            statement.executeUpdate(sql);
+        try (PooledConnection pooled = connectionPool.acquire();
+             ResultSet resultSet = pooled.prepare(COUNT_BY_STATE_SQL).executeQuery()) {
+            while (resultSet.next()) {
+                counts.put(TaskState.fromCode(resultSet.getShort(1)), resultSet.getInt(2));
+            }
             
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to delete all tasks", e);
+            throw new TaskManagerException("Failed to count tasks by state", e);
         }
+        
+        return counts;
     }
     
     /**
-     * Deletes a specific task by its ID.
+     * Reads the changes after a sequence number from the task_changes table.
+     * Each change is joined with the current row of its task, so one query returns
+     * both the changes and the values a consumer needs to apply them.
      * 
-     * @param id the unique identifier of the task to delete
-     * @throws TaskManagerException if an error occurs during deletion
+     * @param sequence the last sequence number the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read and the sequence to continue from
+     * @throws TaskManagerException if the change log cannot be read
      */
     @Override
-    public void deleteTask(int id) throws TaskManagerException {
-        String sql = "DELETE FROM tasks WHERE id = ?";
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Change limit must be positive");
+        }
         
-        try (PreparedStatement statement = connection.prepareStatement(sql)) {
-            statement.setInt(1, id);
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            try (ResultSet resultSet = pooled.prepare(CHANGE_BOUNDS_SQL).executeQuery()) {
+                resultSet.next();
+                long oldest = resultSet.getLong(1);
+                boolean empty = resultSet.wasNull();
+                long latest = resultSet.getLong(2);
+                //changes up to oldest - 1 were trimmed, and a sequence past the latest is from another database
+                if (sequence > latest || (!empty && sequence < oldest - 1)) {
+                    return new TaskChanges(new TaskChange[0], sequence, true);
+                }
+            }
             
-            int rowsAffected = statement.executeUpdate();
-            if (rowsAffected == 0) {
-                throw new TaskManagerException("Task with ID " + id + " not found for deletion");
+            PreparedStatement statement = pooled.prepare(SELECT_CHANGES_SQL);
+            statement.setLong(1, sequence);
+            statement.setInt(2, limit);
+            List<TaskChange> changes = new ArrayList<>();
+            long lastSequence = sequence;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    lastSequence = resultSet.getLong("seq");
+                    TaskChangeType type = TaskChangeType.fromCode(resultSet.getShort("change_type"));
+                    //a task deleted or archived since the change leaves the joined columns null
+                    resultSet.getInt("id");
+                    ITask task = resultSet.wasNull() ? null : readTask(resultSet);
+                    changes.add(new TaskChange(lastSequence, type, resultSet.getInt("task_id"), task));
+                }
+            }
+            if (archiveInUse) {
+                for (int i = 0; i < changes.size(); i++) {
+                    TaskChange change = changes.get(i);
+                    if (change.getTask() == null && change.getType() != TaskChangeType.CLEARED) {
+                        changes.set(i, new TaskChange(change.getSequence(), change.getType(), change.getTaskId(),
+                                readArchivedTask(pooled, change.getTaskId())));
+                    }
+                }
             }
+            return new TaskChanges(changes.toArray(new TaskChange[0]), lastSequence, false);
             
         } catch (SQLException e) {
-            throw new TaskManagerException("Failed to delete task with ID: " + id, e);
+            throw new TaskManagerException("Failed to read task changes since " + sequence, e);
         }
     }
     
     /**
-     * Closes the database connection.
-     * This method called when the application shuts down.
+     * Gets the sequence number of the latest change in the task_changes table.
+     * 
+     * @return the latest change sequence, or 0 if no change was recorded
+     * @throws TaskManagerException if the change log cannot be read
      */
-    public void closeConnection() {
-        if (connection != null) {
-            try {
-                connection.close();
-            } catch (SQLException e) {
-                //log the error but don't throw exception during shutdown
-                System.err.println("Error closing database connection: " + e.getMessage());
+    @Override
+    public long getLatestChangeSequence() throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            return readLatestChangeSequence(pooled);
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to read the latest task change", e);
+        }
+    }
+    
+    /**
+     * Deletes the changes up to a sequence number from the task_changes table.
+     * The latest change is always kept, so the next reader can still tell
+     * which sequences were trimmed.
+     * 
+     * @param sequence the last sequence number to trim
+     * @throws TaskManagerException if the change log cannot be trimmed
+     */
+    @Override
+    public void trimChanges(long sequence) throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            long latest = readLatestChangeSequence(pooled);
+            PreparedStatement statement = pooled.prepare(TRIM_CHANGES_SQL);
+            statement.setLong(1, Math.min(sequence, latest - 1));
+            statement.executeUpdate();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to trim task changes", e);
+        }
+    }
+    
+    /**
+     * Reads the sequence number of the latest change.
+     * 
+     * @param pooled the connection to read with
+     * @return the latest change sequence, or 0 if no change was recorded
+     * @throws SQLException if the change log cannot be read
+     */
+    private long readLatestChangeSequence(PooledConnection pooled) throws SQLException {
+        try (ResultSet resultSet = pooled.prepare(SELECT_LATEST_CHANGE_SQL).executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+    
+    /**
+     * Records one change in the task_changes table, inside the caller's transaction.
+     * 
+     * @param pooled the connection of the transaction that made the change
+     * @param type the kind of mutation
+     * @param taskId the ID of the changed task, or 0 for CLEARED
+     * @throws SQLException if the change cannot be recorded
+     */
+    private void logChange(PooledConnection pooled, TaskChangeType type, int taskId) throws SQLException {
+        PreparedStatement statement = pooled.prepare(INSERT_CHANGE_SQL);
+        statement.setInt(1, taskId);
+        statement.setShort(2, (short) type.getCode());
+        statement.executeUpdate();
+    }
+    
+    /**
+     * Records the changes of a batch in the task_changes table, inside the caller's transaction.
+     * 
+     * @param pooled the connection of the transaction that made the changes
+     * @param ids the task IDs of the batch rows
+     * @param types the change of each row, or null for rows that were not applied
+     * @throws SQLException if the changes cannot be recorded
+     */
+    private void logChanges(PooledConnection pooled, int[] ids, TaskChangeType[] types) throws SQLException {
+        PreparedStatement statement = pooled.prepare(INSERT_CHANGE_SQL);
+        int pending = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (types[i] == null) {
+                continue;
+            }
+            statement.setInt(1, ids[i]);
+            statement.setShort(2, (short) types[i].getCode());
+            statement.addBatch();
+            if (++pending == BATCH_CHUNK_SIZE) {
+                statement.executeBatch();
+                pending = 0;
             }
         }
+        if (pending > 0) {
+            statement.executeBatch();
+        }
+    }
+    
+    /**
+     * Gets the change recorded for a save outcome.
+     * 
+     * @param outcome whether the task was inserted or updated
+     * @return the matching change type
+     */
+    private static TaskChangeType changeTypeOf(SaveOutcome outcome) {
+        return outcome == SaveOutcome.INSERTED ? TaskChangeType.ADDED : TaskChangeType.UPDATED;
+    }
+    
+    /**
+     * Counts committed changes and trims the change log to the retained number
+     * of changes once every CHANGE_TRIM_INTERVAL changes. A failed trim is only
+     * logged, since the mutation itself was already committed.
+     * 
+     * @param count the number of changes just committed
+     */
+    private void noteLoggedChanges(int count) {
+        if (changesSinceTrim.addAndGet(count) < CHANGE_TRIM_INTERVAL) {
+            return;
+        }
+        changesSinceTrim.set(0);
+        try {
+            trimChanges(getLatestChangeSequence() - retainedChanges);
+        } catch (TaskManagerException e) {
+            System.err.println("Error trimming task changes: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Executes a prepared query and builds a task from every returned row.
+     * 
+     * @param statement the query to execute, with its parameters already set
+     * @return the tasks in result order
+     * @throws SQLException if the query fails
+     */
+    private ITask[] readTasks(PreparedStatement statement) throws SQLException {
+        List<ITask> tasks = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                tasks.add(readTask(resultSet));
+            }
+        }
+        return tasks.toArray(new ITask[0]);
+    }
+    
+    /**
+     * Executes a summary query and builds a lazily described task from every row.
+     * Consecutive rows are grouped into batches of DESCRIPTION_BATCH_SIZE tasks
+     * that load their descriptions together.
+     * 
+     * @param statement the summary query to execute, with its parameters already set
+     * @return the tasks in result order
+     * @throws SQLException if the query fails
+     */
+    private ITask[] readSummaries(PreparedStatement statement) throws SQLException {
+        List<ITask> tasks = new ArrayList<>();
+        int[] batchIds = new int[DESCRIPTION_BATCH_SIZE];
+        String[] batchTitles = new String[DESCRIPTION_BATCH_SIZE];
+        TaskState[] batchStates = new TaskState[DESCRIPTION_BATCH_SIZE];
+        int[] batchVersions = new int[DESCRIPTION_BATCH_SIZE];
+        int batchSize = 0;
+        
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                batchIds[batchSize] = resultSet.getInt("id");
+                batchTitles[batchSize] = resultSet.getString("title");
+                batchStates[batchSize] = TaskState.fromCode(resultSet.getShort("state"));
+                batchVersions[batchSize] = resultSet.getInt("version");
+                batchSize++;
+                
+                if (batchSize == DESCRIPTION_BATCH_SIZE) {
+                    addSummaryBatch(tasks, batchIds, batchTitles, batchStates, batchVersions, batchSize);
+                    batchSize = 0;
+                }
+            }
+        }
+        addSummaryBatch(tasks, batchIds, batchTitles, batchStates, batchVersions, batchSize);
+        
+        return tasks.toArray(new ITask[0]);
+    }
+    
+    /**
+     * Creates the lazy tasks of one description batch.
+     * 
+     * @param tasks the list the new tasks are added to
+     * @param ids the task IDs of the batch
+     * @param titles the task titles of the batch
+     * @param states the task states of the batch
+     * @param versions the task versions of the batch
+     * @param size the number of valid entries in the arrays
+     */
+    private void addSummaryBatch(List<ITask> tasks, int[] ids, String[] titles, TaskState[] states,
+            int[] versions, int size) {
+        if (size == 0) {
+            return;
+        }
+        DescriptionBatch batch = new DescriptionBatch(this, Arrays.copyOf(ids, size));
+        for (int i = 0; i < size; i++) {
+            tasks.add(new LazyTask(ids[i], titles[i], states[i], versions[i], batch));
+        }
+    }
+    
+    /**
+     * Loads the descriptions of the given tasks.
+     * IDs are sent in fixed-size IN lists, padded with the last ID, so one
+     * cached statement serves every batch.
+     * 
+     * @param ids the task IDs whose descriptions are loaded
+     * @return the descriptions by task ID; deleted tasks are missing from the map
+     * @throws TaskManagerException if the descriptions cannot be loaded
+     */
+    Map<Integer, String> loadDescriptions(int[] ids) throws TaskManagerException {
+        Map<Integer, String> descriptions = new HashMap<>();
+        
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement = pooled.prepare(SELECT_DESCRIPTIONS_SQL);
+            
+            for (int start = 0; start < ids.length; start += DESCRIPTION_BATCH_SIZE) {
+                for (int i = 0; i < DESCRIPTION_BATCH_SIZE; i++) {
+                    statement.setInt(i + 1, ids[Math.min(start + i, ids.length - 1)]);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        descriptions.put(resultSet.getInt("id"), readDescription(resultSet));
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to load task descriptions", e);
+        }
+        
+        return descriptions;
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order to the given handler.
+     * A pooled connection and its cursor are held for the whole stream, so the
+     * handler should not block on other DAO calls when the pool is small.
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+        streamTasks(SELECT_ALL_ORDERED_SQL, fetchSize, handler);
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order, optionally including the tasks in the archive table.
+     * While archived tasks are streamed, archive runs wait, so a task being moved is
+     * neither missed nor streamed twice.
+     * 
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param includeArchived true to also stream archived tasks
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    @Override
+    public void forEachTask(int fetchSize, boolean includeArchived, ITaskStreamHandler handler)
+            throws TaskManagerException {
+        if (!includeArchived) {
+            forEachTask(fetchSize, handler);
+            return;
+        }
+        if (fetchSize <= 0) {
+            throw new IllegalArgumentException("Fetch size must be positive");
+        }
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null");
+        }
+        
+        tierLock.readLock().lock();
+        try {
+            streamTasks(archiveInUse ? SELECT_ALL_TIERS_ORDERED_SQL : SELECT_ALL_ORDERED_SQL, fetchSize, handler);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Runs a task query and hands its rows to a handler one at a time.
+     * 
+     * @param sql the query, returning the task columns
+     * @param fetchSize the number of rows the driver fetches per round trip
+     * @param handler the callback that receives each task
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    private void streamTasks(String sql, int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            PreparedStatement statement = pooled.prepare(sql);
+            statement.setFetchSize(fetchSize);
+            
+            try (ResultSet resultSet = statement.executeQuery()) {
+                //hand over one row at a time until the handler asks to stop
+                while (resultSet.next()) {
+                    if (!handler.handle(readTask(resultSet))) {
+                        break;
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to stream tasks", e);
+        }
+    }
+    
+    /**
+     * Builds a task from the current row of a result set.
+     * 
+     * @param resultSet the result set positioned on a task row
+     * @return the task stored in the current row
+     * @throws SQLException if a column cannot be read
+     */
+    private Task readTask(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        String title = resultSet.getString("title");
+        TaskState state = TaskState.fromCode(resultSet.getShort("state"));
+        String description = readDescription(resultSet);
+        int version = resultSet.getInt("version");
+        
+        return new Task(id, title, description, state, version);
+    }
+    
+    /**
+     * Reads the description of the current row from the inline or the LOB column.
+     * 
+     * @param resultSet the result set positioned on a row with both description columns
+     * @return the description, or an empty string if none is stored
+     * @throws SQLException if a column cannot be read
+     */
+    private String readDescription(ResultSet resultSet) throws SQLException {
+        //short descriptions are inline, only long ones go through LOB handling
+        String description = resultSet.getString("description");
+        if (description == null) {
+            description = resultSet.getString("description_lob");
+        }
+        return description == null ? "" : description;
+    }
+    
+    /**
+     * Sets the parameters of INSERT_SQL for a task.
+     * 
+     * @param statement the insert statement
+     * @param task the task to insert
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindInsert(PreparedStatement statement, ITask task) throws SQLException {
+        statement.setInt(1, task.getId());
+        statement.setString(2, task.getTitle());
+        bindDescription(statement, 3, task.getDescription());
+        statement.setShort(5, (short) task.getState().getCode());
+        statement.setLong(6, System.currentTimeMillis());
+    }
+    
+    /**
+     * Sets the parameters of UPDATE_SQL for a task.
+     * 
+     * @param statement the update statement
+     * @param task the task to update
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindUpdate(PreparedStatement statement, ITask task) throws SQLException {
+        statement.setString(1, task.getTitle());
+        bindDescription(statement, 2, task.getDescription());
+        statement.setShort(4, (short) task.getState().getCode());
+        statement.setLong(5, System.currentTimeMillis());
+        statement.setInt(6, task.getId());
+    }
+    
+    /**
+     * Sets the parameters of UPSERT_SQL for a task.
+     * 
+     * @param statement the merge statement
+     * @param task the task to save
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindUpsert(PreparedStatement statement, ITask task) throws SQLException {
+        long now = System.currentTimeMillis();
+        statement.setInt(1, task.getId());
+        statement.setString(2, task.getTitle());
+        bindDescription(statement, 3, task.getDescription());
+        statement.setShort(5, (short) task.getState().getCode());
+        statement.setLong(6, now);
+        statement.setInt(7, task.getId());
+        statement.setString(8, task.getTitle());
+        bindDescription(statement, 9, task.getDescription());
+        statement.setShort(11, (short) task.getState().getCode());
+        statement.setLong(12, now);
+    }
+    
+    /**
+     * Sets the inline description parameter and the LOB description parameter that follows it.
+     * Exactly one of them receives the description, depending on its length.
+     * 
+     * @param statement the statement to bind
+     * @param inlineIndex the index of the inline description parameter
+     * @param description the task description
+     * @throws SQLException if a parameter cannot be set
+     */
+    private static void bindDescription(PreparedStatement statement, int inlineIndex, String description)
+            throws SQLException {
+        if (description == null || description.length() <= TasksSchema.INLINE_DESCRIPTION_LENGTH) {
+            statement.setString(inlineIndex, description);
+            statement.setNull(inlineIndex + 1, Types.CLOB);
+        } else {
+            statement.setNull(inlineIndex, Types.VARCHAR);
+            statement.setString(inlineIndex + 1, description);
+        }
+    }
+    
+    /**
+     * Allocates a new unique task ID.
+     * IDs are handed out from blocks of TasksSchema.ID_BLOCK_SIZE reserved through
+     * the task_id_seq sequence, so only one call per block reaches the database.
+     * IDs are also kept above every task stored with an ID chosen by the caller,
+     * so an allocated ID never collides with a stored task.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new block of IDs cannot be reserved
+     */
+    @Override
+    public int nextTaskId() throws TaskManagerException {
+        return idAllocator.nextId();
+    }
+    
+    /**
+     * Reserves the next block of task IDs from the database sequence.
+     * 
+     * @return the first ID of the reserved block
+     * @throws TaskManagerException if the sequence cannot be read or is exhausted
+     */
+    private int reserveIdBlock() throws TaskManagerException {
+        try (PooledConnection pooled = connectionPool.acquire();
+             ResultSet resultSet = pooled.prepare(NEXT_ID_BLOCK_SQL).executeQuery()) {
+            resultSet.next();
+            return resultSet.getInt(1);
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to reserve a block of task IDs", e);
+        }
+    }
+    
+    /**
+     * Adds a new task to the database.
+     * 
+     * @param task the task to add
+     * @throws TaskManagerException if an error occurs during addition
+     */
+    @Override
+    public void addTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        
+        idAllocator.skipIdsBelow(task.getId() + 1L);
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            //an archived task with the same ID is restored first, so the insert fails as a duplicate
+            restoreArchived(pooled, new int[] {task.getId()});
+            PreparedStatement statement = pooled.prepare(INSERT_SQL);
+            bindInsert(statement, task);
+            
+            statement.executeUpdate();
+            logChange(pooled, TaskChangeType.ADDED, task.getId());
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to add task", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+    }
+    
+    /**
+     * Updates an existing task in the database.
+     * 
+     * @param task the task to update
+     * @throws TaskManagerException if an error occurs during update
+     */
+    @Override
+    public void updateTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = pooled.prepare(UPDATE_SQL);
+            bindUpdate(statement, task);
+            
+            int rowsAffected = statement.executeUpdate();
+            if (rowsAffected == 0 && restoreArchived(pooled, new int[] {task.getId()}) > 0) {
+                rowsAffected = statement.executeUpdate();
+            }
+            if (rowsAffected == 0) {
+                throw new TaskManagerException("Task with ID " + task.getId() + " not found for update");
+            }
+            logChange(pooled, TaskChangeType.UPDATED, task.getId());
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to update task", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+    }
+    
+    /**
+     * Updates an existing task only if its stored version equals the expected version.
+     * The version check and the update are a single UPDATE statement, so no lock is held
+     * between reading and writing the task.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version the caller read before changing the task
+     * @return the new version of the task
+     * @throws StaleTaskVersionException if the stored version differs from the expected version
+     * @throws TaskManagerException if the task does not exist or an error occurs during update
+     */
+    @Override
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = pooled.prepare(CONDITIONAL_UPDATE_SQL);
+            bindUpdate(statement, task);
+            statement.setInt(7, expectedVersion);
+            
+            int rowsAffected = statement.executeUpdate();
+            if (rowsAffected == 0 && restoreArchived(pooled, new int[] {task.getId()}) > 0) {
+                rowsAffected = statement.executeUpdate();
+            }
+            if (rowsAffected == 1) {
+                logChange(pooled, TaskChangeType.UPDATED, task.getId());
+                connection.commit();
+            } else {
+                //nothing matched: the task is missing or its version has moved on
+                PreparedStatement versionQuery = pooled.prepare(SELECT_VERSION_SQL);
+                versionQuery.setInt(1, task.getId());
+                try (ResultSet resultSet = versionQuery.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new TaskManagerException("Task with ID " + task.getId() + " not found for update");
+                    }
+                    throw new StaleTaskVersionException(task.getId(), expectedVersion, resultSet.getInt(1));
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to update task", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+        return expectedVersion + 1;
+    }
+    
+    /**
+     * Saves a task with a single MERGE statement, inserting or updating it.
+     * The new version is read back in the same transaction, while the merge still
+     * holds the row lock: an inserted task always has version 0 and an updated one
+     * a higher version, which tells the two outcomes apart.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if an error occurs during saving
+     */
+    @Override
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        
+        idAllocator.skipIdsBelow(task.getId() + 1L);
+        SaveOutcome outcome;
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            restoreArchived(pooled, new int[] {task.getId()});
+            
+            PreparedStatement statement = pooled.prepare(UPSERT_SQL);
+            bindUpsert(statement, task);
+            statement.executeUpdate();
+            
+            PreparedStatement versionQuery = pooled.prepare(SELECT_VERSION_SQL);
+            versionQuery.setInt(1, task.getId());
+            int version;
+            try (ResultSet resultSet = versionQuery.executeQuery()) {
+                resultSet.next();
+                version = resultSet.getInt(1);
+            }
+            outcome = version == 0 ? SaveOutcome.INSERTED : SaveOutcome.UPDATED;
+            
+            logChange(pooled, changeTypeOf(outcome), task.getId());
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to save task", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+        return outcome;
+    }
+    
+    /**
+     * Deletes all tasks from the database, including archived tasks.
+     * 
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTasks() throws TaskManagerException {
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            pooled.prepare(DELETE_ALL_SQL).executeUpdate();
+            pooled.prepare(DELETE_ALL_ARCHIVED_SQL).executeUpdate();
+            logChange(pooled, TaskChangeType.CLEARED, 0);
+            connection.commit();
+            archiveInUse = false;
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to delete all tasks", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+    }
+    
+    /**
+     * Deletes a specific task by its ID.
+     * 
+     * @param id the unique identifier of the task to delete
+     * @throws TaskManagerException if an error occurs during deletion
+     */
+    @Override
+    public void deleteTask(int id) throws TaskManagerException {
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement statement = pooled.prepare(DELETE_BY_ID_SQL);
+            statement.setInt(1, id);
+            
+            int rowsAffected = statement.executeUpdate();
+            if (rowsAffected == 0 && restoreArchived(pooled, new int[] {id}) > 0) {
+                rowsAffected = statement.executeUpdate();
+            }
+            if (rowsAffected == 0) {
+                throw new TaskManagerException("Task with ID " + id + " not found for deletion");
+            }
+            logChange(pooled, TaskChangeType.DELETED, id);
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to delete task with ID: " + id, e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        noteLoggedChanges(1);
+    }
+    
+    /**
+     * Adds several tasks to the database in a single transaction.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        noteStoredIds(ids);
+        
+        return executeBatch(INSERT_SQL, ids, (statement, index) -> bindInsert(statement, tasks[index]),
+                TaskChangeType.ADDED, "Failed to add tasks");
+    }
+    
+    /**
+     * Updates several existing tasks in the database in a single transaction.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        
+        return executeBatch(UPDATE_SQL, ids, (statement, index) -> bindUpdate(statement, tasks[index]),
+                TaskChangeType.UPDATED, "Failed to update tasks");
+    }
+    
+    /**
+     * Saves several tasks in a single transaction with one MERGE per row.
+     * After the rows are merged, the versions of the saved tasks are read back in
+     * the same transaction. A task saved k times in the batch ends at version k - 1
+     * if its first save inserted it, and at a higher version if it already existed.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        int[] ids = idsOf(tasks);
+        SaveOutcome[] outcomes = new SaveOutcome[ids.length];
+        if (ids.length == 0) {
+            return new SaveBatchResult(ids, outcomes);
+        }
+        noteStoredIds(ids);
+        
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            restoreArchived(pooled, ids);
+            
+            boolean[] failed = runBatch(pooled, UPSERT_SQL, ids,
+                    (statement, index) -> bindUpsert(statement, tasks[index]));
+            
+            Map<Integer, Integer> saves = new HashMap<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (!failed[i]) {
+                    saves.merge(ids[i], 1, Integer::sum);
+                }
+            }
+            Map<Integer, Integer> versions = readVersions(pooled, saves.keySet());
+            
+            Set<Integer> seen = new HashSet<>();
+            TaskChangeType[] changeTypes = new TaskChangeType[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                if (failed[i]) {
+                    continue;
+                }
+                boolean inserted = seen.add(ids[i])
+                        && versions.getOrDefault(ids[i], -1) == saves.get(ids[i]) - 1;
+                outcomes[i] = inserted ? SaveOutcome.INSERTED : SaveOutcome.UPDATED;
+                changeTypes[i] = changeTypeOf(outcomes[i]);
+            }
+            
+            logChanges(pooled, ids, changeTypes);
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to save tasks", e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        
+        SaveBatchResult result = new SaveBatchResult(ids, outcomes);
+        noteLoggedChanges(result.getSuccessCount());
+        return result;
+    }
+    
+    /**
+     * Reads the current versions of the given tasks.
+     * IDs are sent in fixed-size IN lists, padded with the last ID, so one
+     * cached statement serves every chunk.
+     * 
+     * @param pooled the connection, whose transaction the read joins
+     * @param taskIds the task IDs whose versions are read
+     * @return the versions by task ID; missing tasks are missing from the map
+     * @throws SQLException if the versions cannot be read
+     */
+    private Map<Integer, Integer> readVersions(PooledConnection pooled, Collection<Integer> taskIds)
+            throws SQLException {
+        int[] ids = new int[taskIds.size()];
+        int position = 0;
+        for (int id : taskIds) {
+            ids[position++] = id;
+        }
+        
+        Map<Integer, Integer> versions = new HashMap<>();
+        PreparedStatement statement = pooled.prepare(SELECT_VERSIONS_SQL);
+        for (int start = 0; start < ids.length; start += VERSION_BATCH_SIZE) {
+            for (int i = 0; i < VERSION_BATCH_SIZE; i++) {
+                statement.setInt(i + 1, ids[Math.min(start + i, ids.length - 1)]);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    versions.put(resultSet.getInt(1), resultSet.getInt(2));
+                }
+            }
+        }
+        return versions;
+    }
+    
+    /**
+     * Deletes several tasks by their IDs in a single transaction.
+     * 
+     * @param ids the unique identifiers of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    @Override
+    public BatchResult deleteTasks(int[] ids) throws TaskManagerException {
+        if (ids == null) {
+            throw new IllegalArgumentException("Task IDs cannot be null");
+        }
+        
+        return executeBatch(DELETE_BY_ID_SQL, ids, (statement, index) -> statement.setInt(1, ids[index]),
+                TaskChangeType.DELETED, "Failed to delete tasks");
+    }
+    
+    /**
+     * Keeps allocated IDs above the IDs of tasks about to be inserted.
+     * 
+     * @param ids the IDs of the tasks
+     */
+    private void noteStoredIds(int[] ids) {
+        int maxId = Integer.MIN_VALUE;
+        for (int id : ids) {
+            maxId = Math.max(maxId, id);
+        }
+        idAllocator.skipIdsBelow(maxId + 1L);
+    }
+    
+    /**
+     * Collects the IDs of a batch of tasks, validating that no task is null.
+     * 
+     * @param tasks the tasks of the batch
+     * @return the task IDs in input order
+     */
+    private int[] idsOf(ITask[] tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+        int[] ids = new int[tasks.length];
+        for (int i = 0; i < tasks.length; i++) {
+            if (tasks[i] == null) {
+                throw new IllegalArgumentException("Task cannot be null");
+            }
+            ids[i] = tasks[i].getId();
+        }
+        return ids;
+    }
+    
+    /**
+     * Executes a batch statement over all rows in one transaction.
+     * The transaction is committed once at the end.
+     * 
+     * @param sql the SQL statement executed for every row
+     * @param ids the task IDs of the rows, used for reporting
+     * @param binder sets the statement parameters for a row
+     * @param changeType the change recorded for every row that was applied
+     * @param errorMessage the message used if the whole batch fails
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    private BatchResult executeBatch(String sql, int[] ids, BatchBinder binder, TaskChangeType changeType,
+            String errorMessage) throws TaskManagerException {
+        boolean[] failed = new boolean[ids.length];
+        if (ids.length == 0) {
+            return new BatchResult(ids, failed);
+        }
+        
+        tierLock.readLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            restoreArchived(pooled, ids);
+            failed = runBatch(pooled, sql, ids, binder);
+            
+            TaskChangeType[] changeTypes = new TaskChangeType[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                changeTypes[i] = failed[i] ? null : changeType;
+            }
+            logChanges(pooled, ids, changeTypes);
+            connection.commit();
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException(errorMessage, e);
+        } finally {
+            tierLock.readLock().unlock();
+        }
+        
+        BatchResult result = new BatchResult(ids, failed);
+        noteLoggedChanges(result.getSuccessCount());
+        return result;
+    }
+    
+    /**
+     * Runs a batch statement over all rows inside the current transaction of a connection.
+     * Rows are sent in chunks with addBatch/executeBatch. A row that fails with a
+     * statement-level error or affects no rows is marked as failed and the rest
+     * of the batch continues; committing is left to the caller.
+     * 
+     * @param pooled the connection, with auto-commit disabled
+     * @param sql the SQL statement executed for every row
+     * @param ids the task IDs of the rows
+     * @param binder sets the statement parameters for a row
+     * @return for each row, whether it failed
+     * @throws SQLException if the batch cannot be executed or the transaction was rolled back
+     */
+    private boolean[] runBatch(PooledConnection pooled, String sql, int[] ids, BatchBinder binder)
+            throws SQLException {
+        boolean[] failed = new boolean[ids.length];
+        PreparedStatement statement = pooled.prepare(sql);
+        
+        int next = 0;
+        while (next < ids.length) {
+            int end = Math.min(next + BATCH_CHUNK_SIZE, ids.length);
+            for (int i = next; i < end; i++) {
+                binder.bind(statement, i);
+                statement.addBatch();
+            }
+            
+            int[] updateCounts;
+            int resumeAt = end;
+            try {
+                updateCounts = statement.executeBatch();
+            } catch (BatchUpdateException e) {
+                statement.clearBatch();
+                if (e.getSQLState() != null && e.getSQLState().startsWith(TRANSACTION_ROLLBACK_SQL_STATE_CLASS)) {
+                    throw e; //the whole transaction was rolled back
+                }
+                updateCounts = e.getUpdateCounts() == null ? new int[0] : e.getUpdateCounts();
+                if (next + updateCounts.length < end) {
+                    //the driver stopped at the failing row, resume after it
+                    failed[next + updateCounts.length] = true;
+                    resumeAt = next + updateCounts.length + 1;
+                }
+            }
+            
+            for (int i = 0; i < updateCounts.length; i++) {
+                if (updateCounts[i] == 0 || updateCounts[i] == Statement.EXECUTE_FAILED) {
+                    failed[next + i] = true;
+                }
+            }
+            next = resumeAt;
+        }
+        
+        return failed;
+    }
+    
+    /**
+     * Binds the parameters of one batch row to a prepared statement.
+     */
+    @FunctionalInterface
+    private interface BatchBinder {
+        
+        /**
+         * Sets the statement parameters for the row at the given position.
+         * 
+         * @param statement the statement to bind
+         * @param index the position of the row in the batch
+         * @throws SQLException if a parameter cannot be set
+         */
+        void bind(PreparedStatement statement, int index) throws SQLException;
+    }
+    
+    /**
+     * Moves the completed tasks that were last modified more than the given time ago
+     * from the tasks table to the archive table, in one transaction.
+     * Writes wait while tasks are moved, so a task is never changed halfway through the move.
+     * When tasks were moved, the archive listeners are called after the commit.
+     * 
+     * @param olderThanMillis how long a completed task must be unmodified to be archived
+     * @return the number of tasks archived
+     * @throws TaskManagerException if the tasks cannot be moved
+     */
+    public int archiveCompletedTasks(long olderThanMillis) throws TaskManagerException {
+        if (olderThanMillis < 0) {
+            throw new IllegalArgumentException("Archive age cannot be negative");
+        }
+        long cutoff = System.currentTimeMillis() - olderThanMillis;
+        int archived = moveCompletedTasks(cutoff);
+        if (archived > 0) {
+            for (Runnable listener : archiveListeners) {
+                try {
+                    listener.run();
+                } catch (RuntimeException e) {
+                    //log the error and keep notifying; the tasks are already archived
+                    System.err.println("Archive listener failed: " + e.getMessage());
+                }
+            }
+        }
+        return archived;
+    }
+    
+    /**
+     * Moves the completed tasks last modified before the cutoff to the archive table, in one transaction.
+     * 
+     * @param cutoff the modification time, in epoch milliseconds, before which completed tasks are moved
+     * @return the number of tasks archived
+     * @throws TaskManagerException if the tasks cannot be moved
+     */
+    private int moveCompletedTasks(long cutoff) throws TaskManagerException {
+        tierLock.writeLock().lock();
+        try (PooledConnection pooled = connectionPool.acquire()) {
+            Connection connection = pooled.getConnection();
+            connection.setAutoCommit(false);
+            PreparedStatement copy = pooled.prepare(ARCHIVE_SQL);
+            copy.setShort(1, (short) TaskState.COMPLETED.getCode());
+            copy.setLong(2, cutoff);
+            
+            int archived = copy.executeUpdate();
+            if (archived > 0) {
+                PreparedStatement delete = pooled.prepare(DELETE_ARCHIVED_SQL);
+                delete.setShort(1, (short) TaskState.COMPLETED.getCode());
+                delete.setLong(2, cutoff);
+                delete.executeUpdate();
+                //set before the commit, so no reader misses a task that is only in the archive
+                archiveInUse = true;
+                connection.commit();
+            }
+            return archived;
+            
+        } catch (SQLException e) {
+            throw new TaskManagerException("Failed to archive completed tasks", e);
+        } finally {
+            tierLock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Starts a background archiver that calls archiveCompletedTasks at a fixed interval.
+     * A running archiver is replaced. Failed runs are logged and retried at the next interval.
+     * 
+     * @param olderThanMillis how long a completed task must be unmodified to be archived
+     * @param intervalMillis the time between archiver runs
+     */
+    public synchronized void startArchiver(long olderThanMillis, long intervalMillis) {
+        if (olderThanMillis < 0) {
+            throw new IllegalArgumentException("Archive age cannot be negative");
+        }
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Archive interval must be positive");
+        }
+        stopArchiver();
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tasks-dao-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(() -> {
+            try {
+                archiveCompletedTasks(olderThanMillis);
+            } catch (TaskManagerException | RuntimeException e) {
+                //log the error and keep the schedule; the tasks stay in the tasks table until the next run
+                System.err.println("Archiving completed tasks failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Registers a listener called after every archive run that moved tasks,
+     * for example to drop cached task lists that still hold the moved tasks.
+     * 
+     * @param listener the listener to call, on the thread that ran the archiving
+     */
+    public void addArchiveListener(Runnable listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener cannot be null");
+        }
+        archiveListeners.add(listener);
+    }
+    
+    /**
+     * Removes a listener registered with addArchiveListener.
+     * 
+     * @param listener the listener to remove
+     */
+    public void removeArchiveListener(Runnable listener) {
+        archiveListeners.remove(listener);
+    }
+    
+    /**
+     * Stops the background archiver, if one is running.
+     */
+    public synchronized void stopArchiver() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+            archiver = null;
+        }
+    }
+    
+    /**
+     * Checks whether the background archiver is running.
+     * 
+     * @return true if an archiver was started and not stopped
+     */
+    public synchronized boolean isArchiverRunning() {
+        return archiver != null;
+    }
+    
+    /**
+     * Reads a task from the archive table.
+     * 
+     * @param pooled the connection to read with
+     * @param id the task ID
+     * @return the archived task, or null if it is not archived
+     * @throws SQLException if the archive cannot be read
+     */
+    private Task readArchivedTask(PooledConnection pooled, int id) throws SQLException {
+        if (!archiveInUse) {
+            return null;
+        }
+        PreparedStatement statement = pooled.prepare(SELECT_ARCHIVED_BY_ID_SQL);
+        statement.setInt(1, id);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? readTask(resultSet) : null;
+        }
+    }
+    
+    /**
+     * Moves the given tasks from the archive table back to the tasks table, inside
+     * the caller's transaction, so a write that follows applies to the active row.
+     * Does nothing while no task is archived. IDs are sent in fixed-size IN lists,
+     * padded with the last ID, so one cached statement serves every chunk.
+     * 
+     * @param pooled the connection, whose transaction the move joins
+     * @param ids the IDs of the tasks about to be written
+     * @return the number of tasks restored
+     * @throws SQLException if the tasks cannot be moved
+     */
+    private int restoreArchived(PooledConnection pooled, int[] ids) throws SQLException {
+        if (!archiveInUse || ids.length == 0) {
+            return 0;
+        }
+        PreparedStatement restore = pooled.prepare(RESTORE_SQL);
+        PreparedStatement delete = pooled.prepare(DELETE_RESTORED_SQL);
+        int restored = 0;
+        for (int start = 0; start < ids.length; start += RESTORE_BATCH_SIZE) {
+            for (int i = 0; i < RESTORE_BATCH_SIZE; i++) {
+                int id = ids[Math.min(start + i, ids.length - 1)];
+                restore.setInt(i + 1, id);
+                delete.setInt(i + 1, id);
+            }
+            int moved = restore.executeUpdate();
+            if (moved > 0) {
+                delete.executeUpdate();
+                restored += moved;
+            }
+        }
+        return restored;
+    }
+    
+    /**
+     * Gets the name of the Derby database this DAO works on.
+     * 
+     * @return the database name
+     */
+    public String getDatabaseName() {
+        return databaseName;
+    }
+    
+    /**
+     * Gets the connection pool used by this DAO.
+     * The pool exposes acquire wait time and statement cache statistics.
+     * 
+     * @return the connection pool
+     */
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+    
+    /**
+     * Gets the number of statement lookups served from the statement caches.
+     * 
+     * @return the number of statement cache hits
+     */
+    public long getStatementCacheHits() {
+        return connectionPool.getStatementCacheHits();
+    }
+    
+    /**
+     * Gets the number of statement lookups that had to prepare a new statement.
+     * 
+     * @return the number of statement cache misses
+     */
+    public long getStatementCacheMisses() {
+        return connectionPool.getStatementCacheMisses();
+    }
+    
+    /**
+     * Closes all database connections.
+     * This method called when the application shuts down.
+     */
+    public void closeConnection() {
+        stopArchiver();
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
     }
 }
@@ -0,0 +1,332 @@
+package com.oriomri.taskmanager.dao;
+
+import com.oriomri.taskmanager.model.TaskState;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Versioned schema of the tasks database.
+ * Every change to the tables used by TasksDAO is added here as a new migration
+ * with the next version number; existing migrations are never edited, so
+ * databases at any older version can be upgraded in place.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class TasksSchema {
+    
+    /**
+     * Descriptions up to this many characters are stored inline in a VARCHAR column;
+     * longer ones go to the CLOB column.
+     */
+    static final int INLINE_DESCRIPTION_LENGTH = 1024;
+    
+    /**
+     * Maximum length of a task title, as declared by the title column.
+     */
+    static final int MAX_TITLE_LENGTH = 255;
+    
+    /**
+     * Number of task IDs reserved per call to the task ID sequence, which
+     * increments by this amount. Existing databases keep the value they were created with.
+     */
+    static final int ID_BLOCK_SIZE = 100;
+    
+    private static final String TASKS_TABLE_NAME = "TASKS";
+    private static final String CHANGES_TABLE_NAME = "TASK_CHANGES";
+    private static final String ARCHIVE_TABLE_NAME = "TASKS_ARCHIVE";
+    private static final String STATE_INDEX_NAME = "TASKS_STATE_IDX";
+    private static final String TITLE_INDEX_NAME = "TASKS_TITLE_IDX";
+    private static final String ID_SEQUENCE_NAME = "TASK_ID_SEQ";
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TasksSchema() {
+    }
+    
+    /**
+     * Gets all schema migrations in version order.
+     * 
+     * @return the schema migrations
+     */
+    static List<ISchemaMigration> migrations() {
+        return Arrays.asList(
+            new CreateTasksTable(),
+            new AddSecondaryIndexes(),
+            new CompactStorageEncoding(),
+            new CreateTaskIdSequence(),
+            new AddVersionColumn(),
+            new CreateTaskChangesTable(),
+            new CreateArchiveTable()
+        );
+    }
+    
+    /**
+     * Executes a sequence of SQL statements.
+     * 
+     * @param connection the database connection
+     * @param sqlStatements the statements to execute in order
+     * @throws SQLException if a statement fails
+     */
+    private static void execute(Connection connection, String... sqlStatements) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : sqlStatements) {
+                statement.execute(sql);
+            }
+        }
+    }
+    
+    /**
+     * Version 1: the original tasks table.
+     */
+    private static class CreateTasksTable implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 1;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Create tasks table";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.tableExists(connection, TASKS_TABLE_NAME);
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            execute(connection,
+                "CREATE TABLE tasks (" +
+                "id INT PRIMARY KEY, " +
+                "title VARCHAR(" + MAX_TITLE_LENGTH + ") NOT NULL, " +
+                "description CLOB, " +
+                "state VARCHAR(50) NOT NULL)");
+        }
+    }
+    
+    /**
+     * Version 2: secondary indexes on (state, id) and title.
+     */
+    private static class AddSecondaryIndexes implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 2;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Add state and title indexes";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.indexExists(connection, TASKS_TABLE_NAME, STATE_INDEX_NAME)
+                && SchemaMigrator.indexExists(connection, TASKS_TABLE_NAME, TITLE_INDEX_NAME);
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            //unversioned databases may already have one of the indexes
+            if (!SchemaMigrator.indexExists(connection, TASKS_TABLE_NAME, STATE_INDEX_NAME)) {
+                execute(connection, "CREATE INDEX tasks_state_idx ON tasks (state, id)");
+            }
+            if (!SchemaMigrator.indexExists(connection, TASKS_TABLE_NAME, TITLE_INDEX_NAME)) {
+                execute(connection, "CREATE INDEX tasks_title_idx ON tasks (title)");
+            }
+        }
+    }
+    
+    /**
+     * Version 3: compact storage encoding.
+     * The state moves from its VARCHAR name to a SMALLINT code, and descriptions
+     * up to INLINE_DESCRIPTION_LENGTH characters move from the CLOB to an inline
+     * VARCHAR column, leaving the CLOB (renamed description_lob) for long ones only.
+     */
+    private static class CompactStorageEncoding implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 3;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Store state as a numeric code and short descriptions inline";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.columnExists(connection, TASKS_TABLE_NAME, "DESCRIPTION_LOB");
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            StringBuilder stateToCode = new StringBuilder("CASE state");
+            for (TaskState state : TaskState.values()) {
+                stateToCode.append(" WHEN '").append(state.name()).append("' THEN ").append(state.getCode());
+            }
+            stateToCode.append(" END");
+            
+            execute(connection,
+                //state: VARCHAR name -> SMALLINT code
+                "ALTER TABLE tasks ADD COLUMN state_code SMALLINT",
+                "UPDATE tasks SET state_code = " + stateToCode,
+                "DROP INDEX tasks_state_idx",
+                "ALTER TABLE tasks DROP COLUMN state",
+                "RENAME COLUMN tasks.state_code TO state",
+                "ALTER TABLE tasks ALTER COLUMN state NOT NULL",
+                "CREATE INDEX tasks_state_idx ON tasks (state, id)",
+                
+                //description: short values inline, long values stay in the LOB
+                "ALTER TABLE tasks ADD COLUMN description_inline VARCHAR(" + INLINE_DESCRIPTION_LENGTH + ")",
+                "UPDATE tasks SET description_inline = CAST(description AS VARCHAR(" + INLINE_DESCRIPTION_LENGTH + ")), " +
+                    "description = NULL WHERE LENGTH(description) <= " + INLINE_DESCRIPTION_LENGTH,
+                "RENAME COLUMN tasks.description TO description_lob",
+                "RENAME COLUMN tasks.description_inline TO description");
+        }
+    }
+    
+    /**
+     * Version 4: a sequence for database-side task ID allocation.
+     * Each value is the first ID of a block of ID_BLOCK_SIZE IDs, and the
+     * sequence starts above the highest ID already stored.
+     */
+    private static class CreateTaskIdSequence implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 4;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Add task ID sequence";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.sequenceExists(connection, ID_SEQUENCE_NAME);
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            long start = 1;
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT MAX(id) FROM tasks")) {
+                if (resultSet.next() && resultSet.getObject(1) != null) {
+                    start = resultSet.getLong(1) + 1;
+                }
+            }
+            
+            execute(connection,
+                "CREATE SEQUENCE task_id_seq AS INT START WITH " + start +
+                " INCREMENT BY " + ID_BLOCK_SIZE + " NO CYCLE");
+        }
+    }
+    
+    /**
+     * Version 5: a version column for optimistic concurrency.
+     * Existing tasks start at version 0.
+     */
+    private static class AddVersionColumn implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 5;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Add task version column";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.columnExists(connection, TASKS_TABLE_NAME, "VERSION");
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            execute(connection, "ALTER TABLE tasks ADD COLUMN version INT NOT NULL DEFAULT 0");
+        }
+    }
+    
+    /**
+     * Version 6: the change log used for incremental sync.
+     * Every mutation of the tasks table records a row here in the same transaction.
+     */
+    private static class CreateTaskChangesTable implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 6;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Create task change log table";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.tableExists(connection, CHANGES_TABLE_NAME);
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            execute(connection,
+                "CREATE TABLE task_changes (" +
+                "seq BIGINT GENERATED ALWAYS AS IDENTITY PRIMARY KEY, " +
+                "task_id INT NOT NULL, " +
+                "change_type SMALLINT NOT NULL)");
+        }
+    }
+    
+    /**
+     * Version 7: an archive table for old completed tasks, and the time each task
+     * was last modified, which decides when a completed task is archived.
+     * Existing tasks count as modified when the migration runs.
+     */
+    private static class CreateArchiveTable implements ISchemaMigration {
+        
+        @Override
+        public int getVersion() {
+            return 7;
+        }
+        
+        @Override
+        public String getDescription() {
+            return "Add modification time and tasks archive table";
+        }
+        
+        @Override
+        public boolean isAlreadyApplied(Connection connection) throws SQLException {
+            return SchemaMigrator.tableExists(connection, ARCHIVE_TABLE_NAME);
+        }
+        
+        @Override
+        public void migrate(Connection connection) throws SQLException {
+            execute(connection,
+                "ALTER TABLE tasks ADD COLUMN modified_at BIGINT NOT NULL DEFAULT 0",
+                "UPDATE tasks SET modified_at = " + System.currentTimeMillis(),
+                "CREATE TABLE tasks_archive (" +
+                "id INT PRIMARY KEY, " +
+                "title VARCHAR(" + MAX_TITLE_LENGTH + ") NOT NULL, " +
+                "description VARCHAR(" + INLINE_DESCRIPTION_LENGTH + "), " +
+                "description_lob CLOB, " +
+                "state SMALLINT NOT NULL, " +
+                "version INT NOT NULL, " +
+                "modified_at BIGINT NOT NULL)");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.oriomri.taskmanager.exceptions;
+
+/**
+ * Exception thrown when a conditional update finds that the task was changed
+ * by another writer since it was read.
+ * The caller should read the task again, reapply its change and retry.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class StaleTaskVersionException extends TaskManagerException {
+    
+    //private variables declaration
+    private final int taskId;
+    private final int expectedVersion;
+    private final int actualVersion;
+    
+    /**
+     * Constructs a StaleTaskVersionException.
+     * 
+     * @param taskId the ID of the task that was updated
+     * @param expectedVersion the version the caller based its update on
+     * @param actualVersion the version currently stored
+     */
+    public StaleTaskVersionException(int taskId, int expectedVersion, int actualVersion) {
+        super("Task with ID " + taskId + " was modified concurrently: expected version " +
+              expectedVersion + " but found " + actualVersion);
+        this.taskId = taskId;
+        this.expectedVersion = expectedVersion;
+        this.actualVersion = actualVersion;
+    }
+    
+    /**
+     * Gets the ID of the task that was updated.
+     * 
+     * @return the task ID
+     */
+    public int getTaskId() {
+        return taskId;
+    }
+    
+    /**
+     * Gets the version the caller based its update on.
+     * 
+     * @return the expected version
+     */
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+    
+    /**
+     * Gets the version currently stored.
+     * 
+     * @return the actual version
+     */
+    public int getActualVersion() {
+        return actualVersion;
+    }
+}
@@ -0,0 +1,75 @@
+package com.oriomri.taskmanager.filter;
+
+/**
+ * How a filter is evaluated: a SQL condition the database applies first, and
+ * a residual filter applied in memory to the rows the condition returns.
+ * The SQL condition may match more tasks than the filter, never fewer, so
+ * applying both always gives exactly the tasks the filter matches.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class FilterPlan {
+    
+    //private variables declaration
+    private final SqlCondition condition;
+    private final ITaskFilter residual;
+    
+    /**
+     * Constructs a plan.
+     * 
+     * @param condition the SQL condition, or null to read every task
+     * @param residual the filter still to apply in memory, or null if the condition is exact
+     */
+    public FilterPlan(SqlCondition condition, ITaskFilter residual) {
+        this.condition = condition;
+        this.residual = residual;
+    }
+    
+    /**
+     * Creates a plan evaluated entirely in SQL.
+     * 
+     * @param condition the SQL condition
+     * @return the plan
+     */
+    public static FilterPlan sql(SqlCondition condition) {
+        return new FilterPlan(condition, null);
+    }
+    
+    /**
+     * Creates a plan evaluated entirely in memory.
+     * 
+     * @param filter the filter to apply to every task
+     * @return the plan
+     */
+    public static FilterPlan inMemory(ITaskFilter filter) {
+        return new FilterPlan(null, filter);
+    }
+    
+    /**
+     * Gets the SQL condition.
+     * 
+     * @return the condition, or null if every task has to be read
+     */
+    public SqlCondition getCondition() {
+        return condition;
+    }
+    
+    /**
+     * Gets the filter still to apply in memory.
+     * 
+     * @return the residual filter, or null if the SQL condition is exact
+     */
+    public ITaskFilter getResidual() {
+        return residual;
+    }
+    
+    /**
+     * Checks whether the SQL condition alone gives the exact result.
+     * 
+     * @return true if nothing has to be evaluated in memory
+     */
+    public boolean isExact() {
+        return residual == null;
+    }
+}
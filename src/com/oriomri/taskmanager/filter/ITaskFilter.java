@@ -0,0 +1,63 @@
+package com.oriomri.taskmanager.filter;
+
+import com.oriomri.taskmanager.model.ITask;
+
+/**
+ * A condition on tasks, combinable with and, or and negate (Combinator pattern).
+ * Any lambda is a filter, evaluated in memory. The filters created by TaskFilters
+ * also know how to express themselves in SQL, so a DAO can let the database apply
+ * them and evaluate only the remaining parts in memory.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ITaskFilter {
+    
+    /**
+     * Checks whether a task satisfies this filter.
+     * 
+     * @param task the task to check
+     * @return true if the task matches
+     */
+    boolean matches(ITask task);
+    
+    /**
+     * Splits this filter into a SQL condition and a part evaluated in memory.
+     * The default plan evaluates the whole filter in memory.
+     * 
+     * @return the evaluation plan of this filter
+     */
+    default FilterPlan plan() {
+        return FilterPlan.inMemory(this);
+    }
+    
+    /**
+     * Combines this filter with another so both must match.
+     * 
+     * @param other the other filter
+     * @return the combined filter
+     */
+    default ITaskFilter and(ITaskFilter other) {
+        return TaskFilters.and(this, other);
+    }
+    
+    /**
+     * Combines this filter with another so either may match.
+     * 
+     * @param other the other filter
+     * @return the combined filter
+     */
+    default ITaskFilter or(ITaskFilter other) {
+        return TaskFilters.or(this, other);
+    }
+    
+    /**
+     * Negates this filter.
+     * 
+     * @return a filter matching the tasks this filter does not match
+     */
+    default ITaskFilter negate() {
+        return TaskFilters.not(this);
+    }
+}
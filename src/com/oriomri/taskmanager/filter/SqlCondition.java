@@ -0,0 +1,108 @@
+package com.oriomri.taskmanager.filter;
+
+import java.util.Arrays;
+
+/**
+ * A parameterized SQL condition over the columns of the tasks table,
+ * for use in a WHERE clause. Values are never inlined into the SQL text;
+ * they are bound to the {@code ?} placeholders in order, so conditions of
+ * the same shape share one prepared statement.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SqlCondition {
+    
+    /**
+     * A condition no row satisfies.
+     */
+    public static final SqlCondition FALSE = new SqlCondition("1 = 0");
+    
+    //private variables declaration
+    private final String sql;
+    private final Object[] parameters;
+    
+    /**
+     * Constructs a condition.
+     * 
+     * @param sql the SQL text of the condition, with a {@code ?} for each parameter
+     * @param parameters the values bound to the placeholders, in order
+     */
+    public SqlCondition(String sql, Object... parameters) {
+        if (sql == null || sql.trim().isEmpty()) {
+            throw new IllegalArgumentException("SQL condition cannot be null or empty");
+        }
+        this.sql = sql;
+        this.parameters = parameters.clone();
+    }
+    
+    /**
+     * Combines two conditions with AND.
+     * 
+     * @param other the other condition
+     * @return a condition satisfied when both conditions are
+     */
+    public SqlCondition and(SqlCondition other) {
+        return combine("AND", other);
+    }
+    
+    /**
+     * Combines two conditions with OR.
+     * 
+     * @param other the other condition
+     * @return a condition satisfied when either condition is
+     */
+    public SqlCondition or(SqlCondition other) {
+        return combine("OR", other);
+    }
+    
+    /**
+     * Negates this condition.
+     * 
+     * @return a condition satisfied when this condition is not
+     */
+    public SqlCondition not() {
+        return new SqlCondition("NOT (" + sql + ")", parameters);
+    }
+    
+    /**
+     * Gets the SQL text of the condition.
+     * 
+     * @return the SQL text, with a {@code ?} for each parameter
+     */
+    public String getSql() {
+        return sql;
+    }
+    
+    /**
+     * Gets the values bound to the placeholders.
+     * 
+     * @return the parameter values in placeholder order
+     */
+    public Object[] getParameters() {
+        return parameters.clone();
+    }
+    
+    /**
+     * Joins this condition and another with a logical operator.
+     * 
+     * @param operator AND or OR
+     * @param other the other condition
+     * @return the combined condition
+     */
+    private SqlCondition combine(String operator, SqlCondition other) {
+        Object[] combined = Arrays.copyOf(parameters, parameters.length + other.parameters.length);
+        System.arraycopy(other.parameters, 0, combined, parameters.length, other.parameters.length);
+        return new SqlCondition("(" + sql + ") " + operator + " (" + other.sql + ")", combined);
+    }
+    
+    /**
+     * Returns a string representation of the condition.
+     * 
+     * @return string representation of the condition
+     */
+    @Override
+    public String toString() {
+        return "SqlCondition{sql='" + sql + "', parameters=" + Arrays.toString(parameters) + "}";
+    }
+}
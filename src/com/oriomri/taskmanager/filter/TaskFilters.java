@@ -0,0 +1,377 @@
+package com.oriomri.taskmanager.filter;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.TaskState;
+
+/**
+ * Factory of the built-in task filters and their combinators.
+ * Every filter created here can be evaluated in memory, and states, title
+ * prefixes, title substrings and ID ranges also translate to SQL conditions
+ * on the tasks table. Combining translatable filters with and, or and not gives
+ * a translatable filter; a combination that includes other filters (for
+ * example a lambda) is split so the database still applies as much as possible.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public final class TaskFilters {
+    
+    private static final char LIKE_ESCAPE = '\\';
+    
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private TaskFilters() {
+    }
+    
+    /**
+     * Creates a filter that matches every task.
+     * 
+     * @return the filter
+     */
+    public static ITaskFilter all() {
+        return AllFilter.INSTANCE;
+    }
+    
+    /**
+     * Creates a filter that matches the tasks in a state.
+     * 
+     * @param state the state to match
+     * @return the filter
+     */
+    public static ITaskFilter stateIs(TaskState state) {
+        if (state == null) {
+            throw new IllegalArgumentException("Task state cannot be null");
+        }
+        return new StateFilter(state);
+    }
+    
+    /**
+     * Creates a filter that matches the tasks whose title starts with a prefix.
+     * 
+     * @param prefix the title prefix, case-sensitive
+     * @return the filter
+     */
+    public static ITaskFilter titleStartsWith(String prefix) {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Title prefix cannot be null");
+        }
+        return new TitlePrefixFilter(prefix);
+    }
+    
+    /**
+     * Creates a filter that matches the tasks whose title contains a text.
+     * 
+     * @param text the text to find in the title, case-sensitive
+     * @return the filter
+     */
+    public static ITaskFilter titleContains(String text) {
+        if (text == null) {
+            throw new IllegalArgumentException("Title text cannot be null");
+        }
+        return new TitleContainsFilter(text);
+    }
+    
+    /**
+     * Creates a filter that matches the tasks with an ID in a range.
+     * 
+     * @param minId the smallest matching ID, inclusive
+     * @param maxId the largest matching ID, inclusive
+     * @return the filter
+     */
+    public static ITaskFilter idBetween(int minId, int maxId) {
+        return new IdRangeFilter(minId, maxId);
+    }
+    
+    /**
+     * Combines two filters so both must match.
+     * 
+     * @param first the first filter
+     * @param second the second filter
+     * @return the combined filter
+     */
+    public static ITaskFilter and(ITaskFilter first, ITaskFilter second) {
+        return new AndFilter(requireFilter(first), requireFilter(second));
+    }
+    
+    /**
+     * Combines two filters so either may match.
+     * 
+     * @param first the first filter
+     * @param second the second filter
+     * @return the combined filter
+     */
+    public static ITaskFilter or(ITaskFilter first, ITaskFilter second) {
+        return new OrFilter(requireFilter(first), requireFilter(second));
+    }
+    
+    /**
+     * Negates a filter.
+     * 
+     * @param filter the filter to negate
+     * @return a filter matching the tasks the given filter does not match
+     */
+    public static ITaskFilter not(ITaskFilter filter) {
+        return new NotFilter(requireFilter(filter));
+    }
+    
+    /**
+     * Validates that a filter is not null.
+     * 
+     * @param filter the filter
+     * @return the same filter
+     */
+    private static ITaskFilter requireFilter(ITaskFilter filter) {
+        if (filter == null) {
+            throw new IllegalArgumentException("Filter cannot be null");
+        }
+        return filter;
+    }
+    
+    /**
+     * Escapes the LIKE wildcards of a text, so it only matches itself.
+     * The escape character is a backslash, to be declared with {@code ESCAPE '\'}.
+     * 
+     * @param text the text
+     * @return the escaped text
+     */
+    public static String escapeLike(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+                escaped.append(LIKE_ESCAPE);
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+    
+    /**
+     * Matches every task; needs no condition at all.
+     */
+    private static final class AllFilter implements ITaskFilter {
+        
+        private static final AllFilter INSTANCE = new AllFilter();
+        
+        @Override
+        public boolean matches(ITask task) {
+            return true;
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            return new FilterPlan(null, null);
+        }
+    }
+    
+    /**
+     * Matches the tasks in one state, through the (state, id) index.
+     */
+    private static final class StateFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final TaskState state;
+        
+        StateFilter(TaskState state) {
+            this.state = state;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return task.getState() == state;
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            return FilterPlan.sql(new SqlCondition("state = ?", (short) state.getCode()));
+        }
+    }
+    
+    /**
+     * Matches a title prefix with LIKE, escaping the wildcards of the prefix.
+     * A range on the title would not be exact, since Derby pads VARCHAR values
+     * with spaces when comparing them, so "ab" would fall in the range of "ab ".
+     * Derby still turns a LIKE prefix into a range scan of the title index.
+     */
+    private static final class TitlePrefixFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final String prefix;
+        
+        TitlePrefixFilter(String prefix) {
+            this.prefix = prefix;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return task.getTitle().startsWith(prefix);
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            return FilterPlan.sql(new SqlCondition("title LIKE ? ESCAPE '" + LIKE_ESCAPE + "'",
+                    escapeLike(prefix) + "%"));
+        }
+    }
+    
+    /**
+     * Matches a title substring with LIKE, escaping the wildcards of the text.
+     */
+    private static final class TitleContainsFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final String text;
+        
+        TitleContainsFilter(String text) {
+            this.text = text;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return task.getTitle().contains(text);
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            return FilterPlan.sql(new SqlCondition("title LIKE ? ESCAPE '" + LIKE_ESCAPE + "'",
+                    "%" + escapeLike(text) + "%"));
+        }
+    }
+    
+    /**
+     * Matches an inclusive ID range, through the primary key index.
+     */
+    private static final class IdRangeFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final int minId;
+        private final int maxId;
+        
+        IdRangeFilter(int minId, int maxId) {
+            this.minId = minId;
+            this.maxId = maxId;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return task.getId() >= minId && task.getId() <= maxId;
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            if (minId > maxId) {
+                return FilterPlan.sql(SqlCondition.FALSE);
+            }
+            return FilterPlan.sql(new SqlCondition("id BETWEEN ? AND ?", minId, maxId));
+        }
+    }
+    
+    /**
+     * Matches when both filters match. The SQL parts and the in-memory parts
+     * of the two sides are combined separately, so each side pushes down
+     * whatever it can.
+     */
+    private static final class AndFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final ITaskFilter first;
+        private final ITaskFilter second;
+        
+        AndFilter(ITaskFilter first, ITaskFilter second) {
+            this.first = first;
+            this.second = second;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return first.matches(task) && second.matches(task);
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            FilterPlan firstPlan = first.plan();
+            FilterPlan secondPlan = second.plan();
+            
+            SqlCondition condition = firstPlan.getCondition();
+            if (condition == null) {
+                condition = secondPlan.getCondition();
+            } else if (secondPlan.getCondition() != null) {
+                condition = condition.and(secondPlan.getCondition());
+            }
+            
+            ITaskFilter residual = firstPlan.getResidual();
+            if (residual == null) {
+                residual = secondPlan.getResidual();
+            } else if (secondPlan.getResidual() != null) {
+                residual = new AndFilter(residual, secondPlan.getResidual());
+            }
+            return new FilterPlan(condition, residual);
+        }
+    }
+    
+    /**
+     * Matches when either filter matches. If a side is not fully translatable,
+     * the OR of both SQL parts still narrows the rows read, and the whole
+     * filter is checked again in memory.
+     */
+    private static final class OrFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final ITaskFilter first;
+        private final ITaskFilter second;
+        
+        OrFilter(ITaskFilter first, ITaskFilter second) {
+            this.first = first;
+            this.second = second;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return first.matches(task) || second.matches(task);
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            FilterPlan firstPlan = first.plan();
+            FilterPlan secondPlan = second.plan();
+            
+            //a side without a condition may match any row, and so may the OR
+            SqlCondition condition = null;
+            if (firstPlan.getCondition() != null && secondPlan.getCondition() != null) {
+                condition = firstPlan.getCondition().or(secondPlan.getCondition());
+            }
+            boolean exact = firstPlan.isExact() && secondPlan.isExact();
+            return new FilterPlan(condition, exact ? null : this);
+        }
+    }
+    
+    /**
+     * Matches when the filter does not match. Only an exactly translated
+     * filter can be negated in SQL; otherwise the negation runs in memory.
+     */
+    private static final class NotFilter implements ITaskFilter {
+        
+        //private variables declaration
+        private final ITaskFilter filter;
+        
+        NotFilter(ITaskFilter filter) {
+            this.filter = filter;
+        }
+        
+        @Override
+        public boolean matches(ITask task) {
+            return !filter.matches(task);
+        }
+        
+        @Override
+        public FilterPlan plan() {
+            FilterPlan plan = filter.plan();
+            if (!plan.isExact()) {
+                return FilterPlan.inMemory(this);
+            }
+            //the columns are NOT NULL, so NOT needs no three-valued logic care
+            return FilterPlan.sql(plan.getCondition() == null ? SqlCondition.FALSE : plan.getCondition().not());
+        }
+    }
+}
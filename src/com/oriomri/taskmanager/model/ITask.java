@@ -38,6 +38,15 @@ public interface ITask {
      */
     TaskState getState();
     
+    /**
+     * Gets the version of the task.
+     * The version starts at 0 when the task is added and is incremented by every
+     * stored update, so a conditional update can detect changes made by other writers.
+     * 
+     * @return the version of the task
+     */
+    int getVersion();
+    
     // TODO: Implement when Visitor pattern is added
     // /**
     //  * Accepts a visitor for implementing the Visitor pattern.
@@ -15,6 +15,7 @@ public class Task implements ITask {
     private String title;
     private String description;
     private TaskState state;
+    private int version;
     
     /**
      * Primary constructor for creating a task with all properties.
@@ -25,10 +26,24 @@ public class Task implements ITask {
      * @param state the initial state of the task
      */
     public Task(int id, String title, String description, TaskState state) {
+        this(id, title, description, state, 0);
+    }
+    
+    /**
+     * Constructor for creating a task read from storage with its stored version.
+     * 
+     * @param id the unique identifier for the task
+     * @param title the title of the task
+     * @param description the description of the task
+     * @param state the state of the task
+     * @param version the stored version of the task
+     */
+    public Task(int id, String title, String description, TaskState state, int version) {
         setId(id);
         setTitle(title);
         setDescription(description);
         setState(state);
+        setVersion(version);
     }
     
     /**
@@ -134,6 +149,30 @@ public class Task implements ITask {
         this.state = state;
     }
     
+    /**
+     * Gets the version of the task.
+     * 
+     * @return the version of the task
+     */
+    @Override
+    public int getVersion() {
+        return version;
+    }
+    
+    /**
+     * Sets the version of the task, for example to the version returned
+     * by a conditional update.
+     * 
+     * @param version the task version to set
+     */
+    public void setVersion(int version) {
+        //validation test inside setter
+        if (version < 0) {
+            throw new IllegalArgumentException("Task version cannot be negative");
+        }
+        this.version = version;
+    }
+    
     // TODO: Implement when Visitor pattern is added
     // /**
     //  * Accepts a visitor for implementing the Visitor pattern.
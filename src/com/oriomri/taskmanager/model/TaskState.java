@@ -12,27 +12,38 @@ public enum TaskState {
     /**
      * Task is created but not yet started.
      */
-    TO_DO("To Do"),
+    TO_DO("To Do", 0),
     
     /**
      * Task is currently being worked on.
      */
-    IN_PROGRESS("In Progress"),
+    IN_PROGRESS("In Progress", 1),
     
     /**
      * Task has been completed.
      */
-    COMPLETED("Completed");
+    COMPLETED("Completed", 2);
+    
+    private static final TaskState[] BY_CODE = new TaskState[values().length];
+    
+    static {
+        for (TaskState state : values()) {
+            BY_CODE[state.code] = state;
+        }
+    }
     
     private final String displayName;
+    private final int code;
     
     /**
-     * Constructs a TaskState with the specified display name.
+     * Constructs a TaskState with the specified display name and storage code.
      * 
      * @param displayName the human-readable name for this state
+     * @param code the stable numeric code used to store this state
      */
-    TaskState(String displayName) {
+    TaskState(String displayName, int code) {
         this.displayName = displayName;
+        this.code = code;
     }
     
     /**
@@ -44,6 +55,29 @@ public enum TaskState {
         return displayName;
     }
     
+    /**
+     * Gets the stable numeric code used to store this state.
+     * Unlike the ordinal, the code never changes when states are reordered.
+     * 
+     * @return the storage code of this state
+     */
+    public int getCode() {
+        return code;
+    }
+    
+    /**
+     * Gets the state stored under the given numeric code.
+     * 
+     * @param code the storage code
+     * @return the matching task state
+     */
+    public static TaskState fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length || BY_CODE[code] == null) {
+            throw new IllegalArgumentException("Unknown task state code: " + code);
+        }
+        return BY_CODE[code];
+    }
+    
     @Override
     public String toString() {
         return displayName;
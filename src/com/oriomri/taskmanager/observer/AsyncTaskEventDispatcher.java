@@ -0,0 +1,403 @@
+package com.oriomri.taskmanager.observer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Dispatcher that delivers events on an executor, so the mutating thread only
+ * enqueues them. Each observer has its own bounded mailbox, drained by at most
+ * one task at a time: an observer sees its events in dispatch order and is never
+ * called concurrently, while different observers run in parallel and a slow
+ * observer does not delay the others. When a mailbox is full the overflow
+ * policy decides whether the dispatching thread waits or an event is dropped.
+ * Mailboxes are created when an observer is added and retired when it is
+ * removed, so a notification racing an unregistration cannot bring one back.
+ * Any executor can be used, for example a virtual-thread-per-task executor.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class AsyncTaskEventDispatcher implements ITaskEventDispatcher, AutoCloseable {
+    
+    /** Events delivered by one drain before the mailbox yields its thread. */
+    private static final int DRAIN_BATCH_SIZE = 64;
+    
+    //private variables declaration
+    private final Executor executor;
+    private final boolean ownsExecutor;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ConcurrentHashMap<ITaskObserver, Mailbox> mailboxes;
+    private final AtomicLong droppedEvents;
+    private final ThreadLocal<Mailbox> draining;
+    
+    /**
+     * Creates a dispatcher with its own pool of daemon threads, shut down by {@link #close()}.
+     * 
+     * @param queueCapacity the maximum number of undelivered events per observer
+     * @param overflowPolicy what to do when an observer's queue is full
+     */
+    public AsyncTaskEventDispatcher(int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "task-event-dispatcher");
+            thread.setDaemon(true);
+            return thread;
+        }), true, queueCapacity, overflowPolicy);
+    }
+    
+    /**
+     * Creates a dispatcher on an executor owned by the caller, which {@link #close()} does not shut down.
+     * 
+     * @param executor the executor that runs the observers
+     * @param queueCapacity the maximum number of undelivered events per observer
+     * @param overflowPolicy what to do when an observer's queue is full
+     */
+    public AsyncTaskEventDispatcher(Executor executor, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this(executor, false, queueCapacity, overflowPolicy);
+    }
+    
+    /**
+     * Creates a dispatcher.
+     * 
+     * @param executor the executor that runs the observers
+     * @param ownsExecutor whether {@link #close()} shuts the executor down
+     * @param queueCapacity the maximum number of undelivered events per observer
+     * @param overflowPolicy what to do when an observer's queue is full
+     */
+    private AsyncTaskEventDispatcher(Executor executor, boolean ownsExecutor,
+                                     int queueCapacity, OverflowPolicy overflowPolicy) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor cannot be null");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive");
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("Overflow policy cannot be null");
+        }
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.droppedEvents = new AtomicLong();
+        this.draining = new ThreadLocal<>();
+    }
+    
+    /**
+     * Queues an event for an observer and schedules its mailbox if it is idle.
+     * Events for an observer that was not added, or was removed, are ignored.
+     * Under {@link OverflowPolicy#BLOCK} this waits while the observer's queue is full;
+     * if the waiting thread is interrupted the event is dropped and the interrupt is kept.
+     * An observer that causes events from inside its own callback is delivering on
+     * a thread that every full mailbox may be waiting for, so there the event is
+     * queued beyond the capacity instead of waiting.
+     * 
+     * @param observer the observer to notify
+     * @param event the call to make on the observer
+     */
+    @Override
+    public void dispatch(ITaskObserver observer, Consumer<ITaskObserver> event) {
+        Mailbox mailbox = mailboxes.get(observer);
+        if (mailbox != null) {
+            mailbox.offer(event);
+        }
+    }
+    
+    /**
+     * Creates the mailbox of a registered observer. If the observer was removed
+     * and its mailbox is still delivering, that mailbox is reused, so the observer
+     * is never called from two drains at once.
+     * 
+     * @param observer the observer that was registered
+     */
+    @Override
+    public void observerAdded(ITaskObserver observer) {
+        mailboxes.compute(observer, (key, mailbox) -> {
+            if (mailbox == null) {
+                return new Mailbox(key);
+            }
+            mailbox.setRemoved(false);
+            return mailbox;
+        });
+    }
+    
+    /**
+     * Retires the mailbox of an unregistered observer. Its queued events are
+     * still delivered, and the mailbox is forgotten once it is idle.
+     * 
+     * @param observer the observer that was unregistered
+     */
+    @Override
+    public void observerRemoved(ITaskObserver observer) {
+        mailboxes.computeIfPresent(observer, (key, mailbox) -> mailbox.setRemoved(true) ? null : mailbox);
+    }
+    
+    /**
+     * Waits until every event dispatched so far has been delivered.
+     * 
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void flush() throws InterruptedException {
+        for (Mailbox mailbox : new ArrayList<>(mailboxes.values())) {
+            mailbox.awaitIdle();
+        }
+    }
+    
+    /**
+     * Returns the number of events discarded because an observer's queue was full,
+     * or because the executor rejected the delivery.
+     * 
+     * @return the number of dropped events
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+    
+    /**
+     * Returns the number of events queued for all observers and not yet delivered.
+     * 
+     * @return the number of pending events
+     */
+    public int getPendingEventCount() {
+        int pending = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            pending += mailbox.size();
+        }
+        return pending;
+    }
+    
+    /**
+     * Shuts down the dispatcher's own thread pool, after the queued events are delivered.
+     * An executor passed by the caller is left running.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            ((ExecutorService) executor).shutdown();
+            try {
+                ((ExecutorService) executor).awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /**
+     * The bounded queue of one observer, delivered by at most one executor task at a time.
+     */
+    private final class Mailbox {
+        
+        //private variables declaration
+        private final ITaskObserver observer;
+        private final ArrayDeque<Consumer<ITaskObserver>> events;
+        private final ReentrantLock lock;
+        private final Condition notFull;
+        private final Condition idle;
+        private boolean scheduled;
+        private boolean removed;
+        
+        Mailbox(ITaskObserver observer) {
+            this.observer = observer;
+            this.events = new ArrayDeque<>();
+            this.lock = new ReentrantLock();
+            this.notFull = lock.newCondition();
+            this.idle = lock.newCondition();
+        }
+        
+        /**
+         * Adds an event, applying the overflow policy when the queue is full.
+         * 
+         * @param event the event to add
+         */
+        void offer(Consumer<ITaskObserver> event) {
+            boolean schedule;
+            lock.lock();
+            try {
+                if (removed) {
+                    return;
+                }
+                while (events.size() >= queueCapacity) {
+                    if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                        droppedEvents.incrementAndGet();
+                        return;
+                    }
+                    if (overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+                        events.pollFirst();
+                        droppedEvents.incrementAndGet();
+                        break;
+                    }
+                    if (draining.get() != null) {
+                        //waiting here could wait for this very thread's drain
+                        break;
+                    }
+                    try {
+                        notFull.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        droppedEvents.incrementAndGet();
+                        return;
+                    }
+                }
+                events.addLast(event);
+                schedule = !scheduled;
+                scheduled = true;
+            } finally {
+                lock.unlock();
+            }
+            if (schedule) {
+                schedule();
+            }
+        }
+        
+        /**
+         * Submits a drain of this mailbox to the executor.
+         * If the executor refuses it, the queued events are dropped rather than left stuck.
+         */
+        private void schedule() {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                lock.lock();
+                try {
+                    droppedEvents.addAndGet(events.size());
+                    events.clear();
+                    scheduled = false;
+                    notFull.signalAll();
+                    idle.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                forgetIfRetired();
+            }
+        }
+        
+        /**
+         * Delivers up to a batch of events, then either goes idle or reschedules itself,
+         * so one busy observer cannot keep an executor thread forever.
+         */
+        private void drain() {
+            List<Consumer<ITaskObserver>> batch = new ArrayList<>(Math.min(DRAIN_BATCH_SIZE, queueCapacity));
+            lock.lock();
+            try {
+                while (batch.size() < DRAIN_BATCH_SIZE && !events.isEmpty()) {
+                    batch.add(events.pollFirst());
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            
+            draining.set(this);
+            try {
+                for (Consumer<ITaskObserver> event : batch) {
+                    try {
+                        event.accept(observer);
+                    } catch (RuntimeException e) {
+                        //log the error and keep delivering; one failing event must not stop the observer
+                        System.err.println("Task observer failed: " + e.getMessage());
+                    }
+                }
+            } finally {
+                draining.remove();
+            }
+            
+            boolean reschedule;
+            boolean retire = false;
+            lock.lock();
+            try {
+                reschedule = !events.isEmpty();
+                if (!reschedule) {
+                    scheduled = false;
+                    retire = removed;
+                    idle.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (reschedule) {
+                schedule();
+            } else if (retire) {
+                forgetIfRetired();
+            }
+        }
+        
+        /**
+         * Forgets a removed mailbox once it has delivered everything, unless it was added back meanwhile.
+         */
+        private void forgetIfRetired() {
+            mailboxes.computeIfPresent(observer, (key, mailbox) -> mailbox == this && mailbox.isRetired() ? null : mailbox);
+        }
+        
+        /**
+         * Marks the mailbox as removed or added back.
+         * 
+         * @param removed true if the observer was removed
+         * @return true if the mailbox is removed and idle, so it can be forgotten
+         */
+        boolean setRemoved(boolean removed) {
+            lock.lock();
+            try {
+                this.removed = removed;
+                return isRetired();
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Checks whether the mailbox is removed and has nothing left to deliver.
+         * 
+         * @return true if the mailbox can be forgotten
+         */
+        boolean isRetired() {
+            lock.lock();
+            try {
+                return removed && !scheduled;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Waits until the queue is empty and no drain is running.
+         * 
+         * @throws InterruptedException if the waiting thread is interrupted
+         */
+        void awaitIdle() throws InterruptedException {
+            lock.lock();
+            try {
+                while (scheduled) {
+                    idle.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * Returns the number of queued events.
+         * 
+         * @return the queue size
+         */
+        int size() {
+            lock.lock();
+            try {
+                return events.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
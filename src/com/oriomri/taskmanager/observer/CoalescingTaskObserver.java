@@ -0,0 +1,305 @@
+package com.oriomri.taskmanager.observer;
+
+import com.oriomri.taskmanager.model.ITask;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adapter that registers as a regular ITaskObserver and forwards the changes to an
+ * ITaskBatchObserver as coalesced change sets. Changes are collected until the set
+ * holds a maximum number of tasks, which delivers it on the notifying thread, or until
+ * the oldest collected change is a maximum delay old, which delivers it on the
+ * adapter's timer thread. Sets are delivered one at a time and in order.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class CoalescingTaskObserver implements ITaskObserver, AutoCloseable {
+    
+    //private variables declaration
+    private final ITaskBatchObserver target;
+    private final int maxBatchSize;
+    private final long maxDelayMillis;
+    private final ScheduledExecutorService timer;
+    private final Object deliveryLock;
+    private Map<Integer, PendingChange> pending;
+    private boolean cleared;
+    private ScheduledFuture<?> scheduledFlush;
+    private boolean closed;
+    
+    /**
+     * Creates an adapter.
+     * 
+     * @param target the observer that receives the change sets
+     * @param maxBatchSize the number of changed tasks that delivers a set at once
+     * @param maxDelayMillis the longest time a change waits before its set is delivered
+     */
+    public CoalescingTaskObserver(ITaskBatchObserver target, int maxBatchSize, long maxDelayMillis) {
+        if (target == null) {
+            throw new IllegalArgumentException("Batch observer cannot be null");
+        }
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Maximum batch size must be positive");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Maximum delay cannot be negative");
+        }
+        this.target = target;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMillis = maxDelayMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "task-change-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deliveryLock = new Object();
+        this.pending = new LinkedHashMap<>();
+    }
+    
+    @Override
+    public void onTaskAdded(ITask task) {
+        boolean full;
+        synchronized (this) {
+            record(task.getId(), ChangeKind.ADDED, task);
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    @Override
+    public void onTaskUpdated(ITask task) {
+        boolean full;
+        synchronized (this) {
+            record(task.getId(), ChangeKind.UPDATED, task);
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    @Override
+    public void onTaskDeleted(int taskId) {
+        boolean full;
+        synchronized (this) {
+            record(taskId, ChangeKind.DELETED, null);
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    /**
+     * Records a clear, which makes every change collected before it irrelevant.
+     */
+    @Override
+    public void onTasksCleared() {
+        synchronized (this) {
+            pending = new LinkedHashMap<>();
+            cleared = true;
+            afterRecord();
+        }
+    }
+    
+    @Override
+    public void onTasksAdded(ITask[] tasks) {
+        boolean full;
+        synchronized (this) {
+            for (ITask task : tasks) {
+                record(task.getId(), ChangeKind.ADDED, task);
+            }
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    @Override
+    public void onTasksUpdated(ITask[] tasks) {
+        boolean full;
+        synchronized (this) {
+            for (ITask task : tasks) {
+                record(task.getId(), ChangeKind.UPDATED, task);
+            }
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    @Override
+    public void onTasksDeleted(int[] taskIds) {
+        boolean full;
+        synchronized (this) {
+            for (int taskId : taskIds) {
+                record(taskId, ChangeKind.DELETED, null);
+            }
+            full = afterRecord();
+        }
+        if (full) {
+            flush();
+        }
+    }
+    
+    /**
+     * Merges a change into the change already collected for the same task, if any.
+     * 
+     * @param taskId the ID of the changed task
+     * @param kind the kind of change
+     * @param task the task in its new version, or null for a delete
+     */
+    private void record(int taskId, ChangeKind kind, ITask task) {
+        PendingChange previous = pending.get(taskId);
+        if (previous == null) {
+            pending.put(taskId, new PendingChange(kind, task));
+        } else if (kind == ChangeKind.DELETED) {
+            if (previous.kind == ChangeKind.ADDED) {
+                //added and deleted within the window: the observer never needs to see it
+                pending.remove(taskId);
+            } else {
+                previous.kind = ChangeKind.DELETED;
+                previous.task = null;
+            }
+        } else {
+            //a task added after being deleted still existed before the window, so it was replaced
+            if (previous.kind == ChangeKind.DELETED) {
+                previous.kind = ChangeKind.UPDATED;
+            }
+            previous.task = task;
+        }
+    }
+    
+    /**
+     * Starts the delay of a window that just received its first change,
+     * and checks whether the window is full. Must hold the monitor.
+     * 
+     * @return true if the collected changes should be delivered now
+     */
+    private boolean afterRecord() {
+        if (scheduledFlush == null && !closed) {
+            scheduledFlush = timer.schedule(this::flushOnTimer, maxDelayMillis, TimeUnit.MILLISECONDS);
+        }
+        return pending.size() >= maxBatchSize;
+    }
+    
+    /**
+     * Delivers the collected changes from the timer thread.
+     */
+    private void flushOnTimer() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            //log the error; the next window is delivered normally
+            System.err.println("Task batch observer failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Delivers the changes collected so far, if any, on the calling thread.
+     */
+    public void flush() {
+        synchronized (deliveryLock) {
+            TaskChangeSet changes;
+            synchronized (this) {
+                changes = drain();
+            }
+            if (changes != null) {
+                target.onTasksChanged(changes);
+            }
+        }
+    }
+    
+    /**
+     * Builds a change set from the collected changes and starts a new window. Must hold the monitor.
+     * 
+     * @return the change set, or null if nothing was collected
+     */
+    private TaskChangeSet drain() {
+        //cancel the timer of this window, so it cannot cut the next window short
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+            scheduledFlush = null;
+        }
+        if (pending.isEmpty() && !cleared) {
+            return null;
+        }
+        List<ITask> added = new ArrayList<>();
+        List<ITask> updated = new ArrayList<>();
+        int[] deleted = new int[pending.size()];
+        int deletedCount = 0;
+        for (Map.Entry<Integer, PendingChange> entry : pending.entrySet()) {
+            PendingChange change = entry.getValue();
+            if (change.kind == ChangeKind.ADDED) {
+                added.add(change.task);
+            } else if (change.kind == ChangeKind.UPDATED) {
+                updated.add(change.task);
+            } else {
+                deleted[deletedCount++] = entry.getKey();
+            }
+        }
+        TaskChangeSet changes = new TaskChangeSet(cleared, added.toArray(new ITask[0]),
+                updated.toArray(new ITask[0]), Arrays.copyOf(deleted, deletedCount));
+        pending = new LinkedHashMap<>();
+        cleared = false;
+        return changes;
+    }
+    
+    /**
+     * Gets the number of tasks with changes not yet delivered.
+     * 
+     * @return the number of pending changes
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Delivers the remaining changes and stops the timer thread.
+     * Changes received after closing are delivered only by an explicit flush.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        timer.shutdownNow();
+        flush();
+    }
+    
+    /**
+     * The net kind of change collected for one task.
+     */
+    private enum ChangeKind {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+    
+    /**
+     * The change collected for one task, updated in place as more changes arrive.
+     */
+    private static final class PendingChange {
+        
+        //private variables declaration
+        private ChangeKind kind;
+        private ITask task;
+        
+        PendingChange(ChangeKind kind, ITask task) {
+            this.kind = kind;
+            this.task = task;
+        }
+    }
+}
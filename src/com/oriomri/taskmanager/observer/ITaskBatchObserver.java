@@ -0,0 +1,21 @@
+package com.oriomri.taskmanager.observer;
+
+/**
+ * Interface for observers that receive task changes in coalesced change sets
+ * instead of one call per change, for example a view that repaints once per set.
+ * Register one through a CoalescingTaskObserver, which collects the changes
+ * within a size or time window.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+@FunctionalInterface
+public interface ITaskBatchObserver {
+    
+    /**
+     * Called with the changes collected in one window. The set is never empty.
+     * 
+     * @param changes the coalesced changes
+     */
+    void onTasksChanged(TaskChangeSet changes);
+}
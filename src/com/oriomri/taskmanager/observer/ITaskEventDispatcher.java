@@ -0,0 +1,41 @@
+package com.oriomri.taskmanager.observer;
+
+import java.util.function.Consumer;
+
+/**
+ * Strategy for delivering task events to observers.
+ * A subject hands every event to its dispatcher once per observer, and the
+ * dispatcher decides on which thread and when the observer is called.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public interface ITaskEventDispatcher {
+    
+    /**
+     * Delivers one event to one observer.
+     * Events for the same observer must be delivered in the order they are dispatched.
+     * 
+     * @param observer the observer to notify
+     * @param event the call to make on the observer
+     */
+    void dispatch(ITaskObserver observer, Consumer<ITaskObserver> event);
+    
+    /**
+     * Called when an observer is registered, before any event is dispatched to it,
+     * so the dispatcher can prepare whatever it keeps for the observer.
+     * 
+     * @param observer the observer that was registered
+     */
+    default void observerAdded(ITaskObserver observer) {
+    }
+    
+    /**
+     * Called when an observer is unregistered, so the dispatcher can release
+     * anything it keeps for the observer. Events already dispatched are still delivered.
+     * 
+     * @param observer the observer that was unregistered
+     */
+    default void observerRemoved(ITaskObserver observer) {
+    }
+}
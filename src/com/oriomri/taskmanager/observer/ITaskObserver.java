@@ -36,4 +36,40 @@ public interface ITaskObserver {
      * Called when all tasks are cleared from the system.
      */
     void onTasksCleared();
+    
+    /**
+     * Called once when a batch of tasks is added to the system.
+     * The default implementation forwards each task to onTaskAdded.
+     * 
+     * @param tasks the tasks that were added
+     */
+    default void onTasksAdded(ITask[] tasks) {
+        for (ITask task : tasks) {
+            onTaskAdded(task);
+        }
+    }
+    
+    /**
+     * Called once when a batch of tasks is updated in the system.
+     * The default implementation forwards each task to onTaskUpdated.
+     * 
+     * @param tasks the tasks that were updated
+     */
+    default void onTasksUpdated(ITask[] tasks) {
+        for (ITask task : tasks) {
+            onTaskUpdated(task);
+        }
+    }
+    
+    /**
+     * Called once when a batch of tasks is deleted from the system.
+     * The default implementation forwards each ID to onTaskDeleted.
+     * 
+     * @param taskIds the IDs of the tasks that were deleted
+     */
+    default void onTasksDeleted(int[] taskIds) {
+        for (int taskId : taskIds) {
+            onTaskDeleted(taskId);
+        }
+    }
 }
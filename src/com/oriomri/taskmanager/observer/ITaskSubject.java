@@ -50,4 +50,25 @@ public interface ITaskSubject {
      * Notifies all registered observers that all tasks were cleared.
      */
     void notifyTasksCleared();
+    
+    /**
+     * Notifies all registered observers once about a batch of added tasks.
+     * 
+     * @param tasks the tasks that were added
+     */
+    void notifyTasksAdded(ITask[] tasks);
+    
+    /**
+     * Notifies all registered observers once about a batch of updated tasks.
+     * 
+     * @param tasks the tasks that were updated
+     */
+    void notifyTasksUpdated(ITask[] tasks);
+    
+    /**
+     * Notifies all registered observers once about a batch of deleted tasks.
+     * 
+     * @param taskIds the IDs of the tasks that were deleted
+     */
+    void notifyTasksDeleted(int[] taskIds);
 }
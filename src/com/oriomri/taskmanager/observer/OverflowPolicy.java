@@ -0,0 +1,26 @@
+package com.oriomri.taskmanager.observer;
+
+/**
+ * What an asynchronous dispatcher does with a new event when the queue of an observer is full.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public enum OverflowPolicy {
+    
+    /**
+     * The dispatching thread waits until the observer has caught up (back-pressure).
+     * No events are lost, but a slow observer eventually slows down writers.
+     */
+    BLOCK,
+    
+    /**
+     * The new event is discarded and counted as dropped.
+     */
+    DROP_NEWEST,
+    
+    /**
+     * The oldest queued event is discarded and counted as dropped, making room for the new one.
+     */
+    DROP_OLDEST
+}
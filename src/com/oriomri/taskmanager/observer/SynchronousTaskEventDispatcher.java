@@ -0,0 +1,25 @@
+package com.oriomri.taskmanager.observer;
+
+import java.util.function.Consumer;
+
+/**
+ * Dispatcher that calls each observer directly on the thread that dispatches the event.
+ * Observers see a change before the mutating call returns, and a slow observer
+ * slows down that call. An exception thrown by an observer reaches the caller.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SynchronousTaskEventDispatcher implements ITaskEventDispatcher {
+    
+    /**
+     * Calls the observer on the current thread.
+     * 
+     * @param observer the observer to notify
+     * @param event the call to make on the observer
+     */
+    @Override
+    public void dispatch(ITaskObserver observer, Consumer<ITaskObserver> event) {
+        event.accept(observer);
+    }
+}
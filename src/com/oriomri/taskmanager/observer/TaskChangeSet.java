@@ -0,0 +1,101 @@
+package com.oriomri.taskmanager.observer;
+
+import com.oriomri.taskmanager.model.ITask;
+
+import java.util.Arrays;
+
+/**
+ * A coalesced set of task changes. Every task ID appears at most once: repeated
+ * changes to a task are merged into its net effect, and a task added and deleted
+ * within the same set does not appear at all. If the set is cleared, all tasks
+ * were removed first and the other changes happened after that.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class TaskChangeSet {
+    
+    //private variables declaration
+    private final boolean cleared;
+    private final ITask[] addedTasks;
+    private final ITask[] updatedTasks;
+    private final int[] deletedIds;
+    
+    /**
+     * Constructs a change set.
+     * 
+     * @param cleared true if all tasks were cleared before the other changes
+     * @param addedTasks the tasks added, in their latest version
+     * @param updatedTasks the tasks updated, in their latest version
+     * @param deletedIds the IDs of the tasks deleted
+     */
+    public TaskChangeSet(boolean cleared, ITask[] addedTasks, ITask[] updatedTasks, int[] deletedIds) {
+        if (addedTasks == null || updatedTasks == null || deletedIds == null) {
+            throw new IllegalArgumentException("Changed tasks cannot be null");
+        }
+        this.cleared = cleared;
+        this.addedTasks = Arrays.copyOf(addedTasks, addedTasks.length);
+        this.updatedTasks = Arrays.copyOf(updatedTasks, updatedTasks.length);
+        this.deletedIds = Arrays.copyOf(deletedIds, deletedIds.length);
+    }
+    
+    /**
+     * Checks whether all tasks were cleared before the other changes of the set.
+     * 
+     * @return true if the tasks were cleared
+     */
+    public boolean isCleared() {
+        return cleared;
+    }
+    
+    /**
+     * Gets the tasks added, in their latest version.
+     * 
+     * @return the added tasks
+     */
+    public ITask[] getAddedTasks() {
+        return Arrays.copyOf(addedTasks, addedTasks.length);
+    }
+    
+    /**
+     * Gets the tasks updated, in their latest version.
+     * 
+     * @return the updated tasks
+     */
+    public ITask[] getUpdatedTasks() {
+        return Arrays.copyOf(updatedTasks, updatedTasks.length);
+    }
+    
+    /**
+     * Gets the IDs of the tasks deleted.
+     * 
+     * @return the deleted IDs
+     */
+    public int[] getDeletedIds() {
+        return Arrays.copyOf(deletedIds, deletedIds.length);
+    }
+    
+    /**
+     * Gets the number of task changes in the set, not counting a clear.
+     * 
+     * @return the number of changes
+     */
+    public int size() {
+        return addedTasks.length + updatedTasks.length + deletedIds.length;
+    }
+    
+    /**
+     * Checks whether the set holds no changes at all.
+     * 
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return !cleared && size() == 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "TaskChangeSet{cleared=" + cleared + ", added=" + addedTasks.length
+                + ", updated=" + updatedTasks.length + ", deleted=" + deletedIds.length + "}";
+    }
+}
@@ -0,0 +1,137 @@
+package com.oriomri.taskmanager.search;
+
+import java.util.Arrays;
+
+/**
+ * Posting list of one term: the IDs of the tasks containing the term, in
+ * ascending order, with the weight of the term in each task.
+ * IDs and weights are kept in parallel primitive arrays, so a list costs
+ * 8 bytes per task and is scanned without touching per-entry objects.
+ * Tasks usually get increasing IDs, so adding a task is normally an append.
+ * This class is not thread-safe; callers synchronize access.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+final class PostingList {
+    
+    private static final int INITIAL_CAPACITY = 4;
+    
+    //private variables declaration
+    private final String term;
+    private int[] ids;
+    private int[] weights;
+    private int size;
+    
+    /**
+     * Constructs an empty posting list.
+     * 
+     * @param term the term the list belongs to
+     */
+    PostingList(String term) {
+        this.term = term;
+        ids = new int[INITIAL_CAPACITY];
+        weights = new int[INITIAL_CAPACITY];
+    }
+    
+    /**
+     * Gets the term the list belongs to.
+     * 
+     * @return the term
+     */
+    String getTerm() {
+        return term;
+    }
+    
+    /**
+     * Adds a task to the list, or replaces its weight if it is already present.
+     * 
+     * @param id the task ID
+     * @param weight the weight of the term in the task
+     */
+    void put(int id, int weight) {
+        if (size == 0 || ids[size - 1] < id) {
+            insertAt(size, id, weight);
+            return;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            weights[index] = weight;
+        } else {
+            insertAt(-index - 1, id, weight);
+        }
+    }
+    
+    /**
+     * Removes a task from the list.
+     * 
+     * @param id the task ID
+     */
+    void remove(int id) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if (index >= 0) {
+            System.arraycopy(ids, index + 1, ids, index, size - index - 1);
+            System.arraycopy(weights, index + 1, weights, index, size - index - 1);
+            size--;
+        }
+    }
+    
+    /**
+     * Checks whether a task is in the list, searching only from a given position.
+     * 
+     * @param id the task ID
+     * @param from the first position to search
+     * @return the position of the task if present, otherwise (-(insertion point) - 1)
+     */
+    int find(int id, int from) {
+        return Arrays.binarySearch(ids, from, size, id);
+    }
+    
+    /**
+     * Gets the task ID at a position.
+     * 
+     * @param index the position in the list
+     * @return the task ID
+     */
+    int idAt(int index) {
+        return ids[index];
+    }
+    
+    /**
+     * Gets the weight of the term in the task at a position.
+     * 
+     * @param index the position in the list
+     * @return the weight
+     */
+    int weightAt(int index) {
+        return weights[index];
+    }
+    
+    /**
+     * Gets the number of tasks containing the term.
+     * 
+     * @return the size of the list
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Inserts a task at a position, growing the arrays if needed.
+     * 
+     * @param index the position to insert at
+     * @param id the task ID
+     * @param weight the weight of the term in the task
+     */
+    private void insertAt(int index, int id, int weight) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            weights = Arrays.copyOf(weights, size * 2);
+        }
+        System.arraycopy(ids, index, ids, index + 1, size - index);
+        System.arraycopy(weights, index, weights, index + 1, size - index);
+        ids[index] = id;
+        weights[index] = weight;
+        size++;
+    }
+}
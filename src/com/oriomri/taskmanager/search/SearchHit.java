@@ -0,0 +1,53 @@
+package com.oriomri.taskmanager.search;
+
+/**
+ * One result of a ranked search: a matching task ID and its relevance score.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class SearchHit {
+    
+    //private variables declaration
+    private final int taskId;
+    private final double score;
+    
+    /**
+     * Constructs a search hit.
+     * 
+     * @param taskId the ID of the matching task
+     * @param score the relevance score of the task, higher is better
+     */
+    public SearchHit(int taskId, double score) {
+        this.taskId = taskId;
+        this.score = score;
+    }
+    
+    /**
+     * Gets the ID of the matching task.
+     * 
+     * @return the task ID
+     */
+    public int getTaskId() {
+        return taskId;
+    }
+    
+    /**
+     * Gets the relevance score of the task.
+     * 
+     * @return the score, higher is better
+     */
+    public double getScore() {
+        return score;
+    }
+    
+    /**
+     * Returns a string representation of the hit.
+     * 
+     * @return string representation of the hit
+     */
+    @Override
+    public String toString() {
+        return "SearchHit{taskId=" + taskId + ", score=" + score + "}";
+    }
+}
@@ -0,0 +1,535 @@
+package com.oriomri.taskmanager.search;
+
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.observer.ITaskObserver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over task titles and descriptions for keyword search.
+ * Titles and descriptions are split into lower-case words (runs of letters and
+ * digits), and each word maps to a posting list of the tasks containing it, so a
+ * search reads only the lists of its words instead of scanning every task.
+ * 
+ * The index is an observer: registered with a TaskManager, it is updated
+ * incrementally on every added, updated and deleted task. Searches run under
+ * a read lock and may run concurrently with each other.
+ * 
+ * Ranked searches score each task by tf-idf: a word counts TITLE_WEIGHT times
+ * in the title and once in the description, and rare words count more than
+ * common ones, so tasks matching more and rarer query words rank first.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class TaskSearchIndex implements ITaskObserver {
+    
+    /**
+     * How many times a word in the title counts compared to a word in the description.
+     */
+    public static final int TITLE_WEIGHT = 3;
+    
+    private static final PostingList[] NO_TERMS = new PostingList[0];
+    private static final SearchHit[] NO_HITS = new SearchHit[0];
+    private static final Comparator<SearchHit> BEST_FIRST = Comparator.comparingDouble(SearchHit::getScore).reversed()
+            .thenComparingInt(SearchHit::getTaskId);
+    
+    //private variables declaration
+    private final Map<String, PostingList> postings;
+    private final Map<Integer, PostingList[]> indexedTerms;
+    private final ReentrantReadWriteLock lock;
+    private Set<Integer> removedDuringBackfill;
+    private boolean clearedDuringBackfill;
+    
+    /**
+     * Constructs an empty index.
+     */
+    public TaskSearchIndex() {
+        this.postings = new HashMap<>();
+        this.indexedTerms = new HashMap<>();
+        this.lock = new ReentrantReadWriteLock();
+    }
+    
+    /**
+     * Starts filling the index from stored tasks while it already receives change events.
+     * Until endBackfill, the index remembers which tasks were deleted and whether all
+     * tasks were cleared, so indexIfAbsent does not bring back a task that was read
+     * from storage just before it was deleted.
+     */
+    public void beginBackfill() {
+        lock.writeLock().lock();
+        try {
+            removedDuringBackfill = new HashSet<>();
+            clearedDuringBackfill = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Ends the backfill started by beginBackfill and forgets the deleted tasks it remembered.
+     */
+    public void endBackfill() {
+        lock.writeLock().lock();
+        try {
+            removedDuringBackfill = null;
+            clearedDuringBackfill = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Adds a task to the index, replacing the words indexed for it before.
+     * 
+     * @param task the task to index
+     */
+    public void index(ITask task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Map<String, Integer> weights = termWeights(task);
+        lock.writeLock().lock();
+        try {
+            put(task.getId(), weights);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Adds several tasks to the index under one lock.
+     * 
+     * @param tasks the tasks to index
+     */
+    public void indexAll(ITask[] tasks) {
+        if (tasks == null) {
+            throw new IllegalArgumentException("Tasks cannot be null");
+        }
+        List<Map<String, Integer>> weights = new ArrayList<>(tasks.length);
+        for (ITask task : tasks) {
+            if (task == null) {
+                throw new IllegalArgumentException("Task cannot be null");
+            }
+            weights.add(termWeights(task));
+        }
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < tasks.length; i++) {
+                put(tasks[i].getId(), weights.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Adds a task to the index only if it is not indexed yet.
+     * Used when filling the index while it already receives change events,
+     * so a task read before a newer event does not overwrite that event.
+     * During a backfill, a task deleted since the backfill began is not added,
+     * and after all tasks were cleared nothing read from storage is added,
+     * since the events of the tasks stored after the clear index them.
+     * 
+     * @param task the task to index
+     */
+    public void indexIfAbsent(ITask task) {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        Map<String, Integer> weights = termWeights(task);
+        lock.writeLock().lock();
+        try {
+            boolean stale = removedDuringBackfill != null
+                    && (clearedDuringBackfill || removedDuringBackfill.contains(task.getId()));
+            if (!stale && !indexedTerms.containsKey(task.getId())) {
+                put(task.getId(), weights);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes a task from the index.
+     * 
+     * @param taskId the ID of the task to remove
+     */
+    public void remove(int taskId) {
+        lock.writeLock().lock();
+        try {
+            unindex(taskId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes several tasks from the index under one lock.
+     * 
+     * @param taskIds the IDs of the tasks to remove
+     */
+    public void removeAll(int[] taskIds) {
+        if (taskIds == null) {
+            throw new IllegalArgumentException("Task IDs cannot be null");
+        }
+        lock.writeLock().lock();
+        try {
+            for (int taskId : taskIds) {
+                unindex(taskId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Removes every task from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            indexedTerms.clear();
+            if (removedDuringBackfill != null) {
+                //every task read before the clear is stale, and the IDs are no longer needed
+                clearedDuringBackfill = true;
+                removedDuringBackfill.clear();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Finds the tasks that best match any word of a query, best match first.
+     * Tasks with equal scores are ordered by ID.
+     * 
+     * @param query the words to search for
+     * @param limit the maximum number of hits to return
+     * @return the best matching tasks with their scores
+     */
+    public SearchHit[] search(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Search limit must be positive");
+        }
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = listsOf(terms);
+            if (lists.length == 0) {
+                return NO_HITS;
+            }
+            double[] idf = new double[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                idf[i] = Math.log(1.0 + (double) indexedTerms.size() / lists[i].size());
+            }
+            
+            //merge the ID-ordered lists, scoring each task once, and keep the best hits in a min-heap
+            PriorityQueue<SearchHit> best = new PriorityQueue<>(Math.min(limit, 1024) + 1, BEST_FIRST.reversed());
+            int[] positions = new int[lists.length];
+            while (true) {
+                int next = Integer.MAX_VALUE;
+                boolean found = false;
+                for (int i = 0; i < lists.length; i++) {
+                    if (positions[i] < lists[i].size() && (!found || lists[i].idAt(positions[i]) < next)) {
+                        next = lists[i].idAt(positions[i]);
+                        found = true;
+                    }
+                }
+                if (!found) {
+                    break;
+                }
+                
+                double score = 0;
+                for (int i = 0; i < lists.length; i++) {
+                    if (positions[i] < lists[i].size() && lists[i].idAt(positions[i]) == next) {
+                        score += (1.0 + Math.log(lists[i].weightAt(positions[i]))) * idf[i];
+                        positions[i]++;
+                    }
+                }
+                if (best.size() < limit) {
+                    best.add(new SearchHit(next, score));
+                } else if (score > best.peek().getScore()) {
+                    best.poll();
+                    best.add(new SearchHit(next, score));
+                }
+            }
+            
+            SearchHit[] hits = best.toArray(NO_HITS);
+            Arrays.sort(hits, BEST_FIRST);
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Finds the tasks that contain every word of a query.
+     * 
+     * @param query the words to search for
+     * @return the IDs of the matching tasks in ascending order
+     */
+    public int[] searchAll(String query) {
+        Set<String> terms = new LinkedHashSet<>(tokenize(query));
+        if (terms.isEmpty()) {
+            return new int[0];
+        }
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = listsOf(terms);
+            if (lists.length < terms.size()) {
+                return new int[0];
+            }
+            //intersect starting from the shortest list, so the candidates only shrink
+            Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+            int[] candidates = new int[lists[0].size()];
+            for (int i = 0; i < candidates.length; i++) {
+                candidates[i] = lists[0].idAt(i);
+            }
+            int count = candidates.length;
+            for (int i = 1; i < lists.length && count > 0; i++) {
+                int kept = 0;
+                int from = 0;
+                for (int j = 0; j < count; j++) {
+                    int position = lists[i].find(candidates[j], from);
+                    if (position >= 0) {
+                        candidates[kept++] = candidates[j];
+                        from = position + 1;
+                    } else {
+                        from = -position - 1;
+                    }
+                }
+                count = kept;
+            }
+            return Arrays.copyOf(candidates, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Checks whether a task is indexed.
+     * 
+     * @param taskId the task ID
+     * @return true if the task is in the index
+     */
+    public boolean contains(int taskId) {
+        lock.readLock().lock();
+        try {
+            return indexedTerms.containsKey(taskId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the number of indexed tasks.
+     * 
+     * @return the number of tasks in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return indexedTerms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Gets the number of distinct words in the index.
+     * 
+     * @return the number of posting lists
+     */
+    public int getTermCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Called when a task is added to the system.
+     * 
+     * @param task the task that was added
+     */
+    @Override
+    public void onTaskAdded(ITask task) {
+        index(task);
+    }
+    
+    /**
+     * Called when a task is updated in the system.
+     * 
+     * @param task the task that was updated
+     */
+    @Override
+    public void onTaskUpdated(ITask task) {
+        index(task);
+    }
+    
+    /**
+     * Called when a task is deleted from the system.
+     * 
+     * @param taskId the ID of the task that was deleted
+     */
+    @Override
+    public void onTaskDeleted(int taskId) {
+        remove(taskId);
+    }
+    
+    /**
+     * Called when all tasks are cleared from the system.
+     */
+    @Override
+    public void onTasksCleared() {
+        clear();
+    }
+    
+    /**
+     * Called once when a batch of tasks is added to the system.
+     * 
+     * @param tasks the tasks that were added
+     */
+    @Override
+    public void onTasksAdded(ITask[] tasks) {
+        indexAll(tasks);
+    }
+    
+    /**
+     * Called once when a batch of tasks is updated in the system.
+     * 
+     * @param tasks the tasks that were updated
+     */
+    @Override
+    public void onTasksUpdated(ITask[] tasks) {
+        indexAll(tasks);
+    }
+    
+    /**
+     * Called once when a batch of tasks is deleted from the system.
+     * 
+     * @param taskIds the IDs of the tasks that were deleted
+     */
+    @Override
+    public void onTasksDeleted(int[] taskIds) {
+        removeAll(taskIds);
+    }
+    
+    /**
+     * Splits text into lower-case words made of letters and digits.
+     * 
+     * @param text the text to split, may be null
+     * @return the words in the order they appear
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    
+    /**
+     * Computes the weight of every word of a task.
+     * This runs before the write lock is taken, so tokenizing does not block searches.
+     * 
+     * @param task the task
+     * @return the weight of each word in the task
+     */
+    private static Map<String, Integer> termWeights(ITask task) {
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : tokenize(task.getTitle())) {
+            weights.merge(term, TITLE_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(task.getDescription())) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        return weights;
+    }
+    
+    /**
+     * Indexes a task under the given word weights. The caller holds the write lock.
+     * 
+     * @param taskId the task ID
+     * @param weights the weight of each word in the task
+     */
+    private void put(int taskId, Map<String, Integer> weights) {
+        unindex(taskId);
+        if (weights.isEmpty()) {
+            indexedTerms.put(taskId, NO_TERMS);
+            return;
+        }
+        PostingList[] terms = new PostingList[weights.size()];
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            PostingList list = postings.computeIfAbsent(entry.getKey(), PostingList::new);
+            list.put(taskId, entry.getValue());
+            terms[i++] = list;
+        }
+        indexedTerms.put(taskId, terms);
+    }
+    
+    /**
+     * Removes a task from the posting lists of its words. The caller holds the write lock.
+     * 
+     * @param taskId the task ID
+     */
+    private void unindex(int taskId) {
+        if (removedDuringBackfill != null && !clearedDuringBackfill) {
+            removedDuringBackfill.add(taskId);
+        }
+        PostingList[] terms = indexedTerms.remove(taskId);
+        if (terms == null) {
+            return;
+        }
+        for (PostingList list : terms) {
+            list.remove(taskId);
+            if (list.size() == 0) {
+                postings.remove(list.getTerm());
+            }
+        }
+    }
+    
+    /**
+     * Looks up the posting lists of the given words, skipping words not in the index.
+     * The caller holds the read lock.
+     * 
+     * @param terms the words
+     * @return the posting lists found
+     */
+    private PostingList[] listsOf(Set<String> terms) {
+        List<PostingList> lists = new ArrayList<>(terms.size());
+        for (String term : terms) {
+            PostingList list = postings.get(term);
+            if (list != null) {
+                lists.add(list);
+            }
+        }
+        return lists.toArray(NO_TERMS);
+    }
+}
@@ -1,14 +1,37 @@
 package com.oriomri.taskmanager.viewmodel;
 
+import com.oriomri.taskmanager.dao.BatchResult;
+import com.oriomri.taskmanager.dao.ITaskStreamHandler;
 import com.oriomri.taskmanager.dao.ITasksDAO;
+import com.oriomri.taskmanager.dao.InMemoryTasksDAO;
+import com.oriomri.taskmanager.dao.JournalTasksDAO;
+import com.oriomri.taskmanager.dao.SaveBatchResult;
+import com.oriomri.taskmanager.dao.SaveOutcome;
+import com.oriomri.taskmanager.dao.ShardedTasksDAO;
+import com.oriomri.taskmanager.dao.TaskChanges;
+import com.oriomri.taskmanager.dao.TaskProjection;
 import com.oriomri.taskmanager.dao.TasksDAO;
 import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.model.Task;
+import com.oriomri.taskmanager.model.TaskState;
+import com.oriomri.taskmanager.observer.CoalescingTaskObserver;
+import com.oriomri.taskmanager.observer.ITaskBatchObserver;
+import com.oriomri.taskmanager.observer.ITaskEventDispatcher;
 import com.oriomri.taskmanager.observer.ITaskObserver;
 import com.oriomri.taskmanager.observer.ITaskSubject;
+import com.oriomri.taskmanager.observer.SynchronousTaskEventDispatcher;
+import com.oriomri.taskmanager.search.SearchHit;
+import com.oriomri.taskmanager.search.TaskSearchIndex;
+import com.oriomri.taskmanager.exceptions.StaleTaskVersionException;
 import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.filter.ITaskFilter;
 
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Main task manager class that implements the Observer pattern.
@@ -20,18 +43,72 @@ import java.util.List;
  */
 public class TaskManager implements ITaskSubject {
     
+    private static final int DEFAULT_FETCH_SIZE = 100;
+    private static final int DEFAULT_CHANGE_LIMIT = 1000;
+    private static final String STORAGE_PROPERTY = "taskmanager.storage";
+    private static final String IN_MEMORY_STORAGE = "memory";
+    private static final String JOURNAL_STORAGE = "journal";
+    private static final String JOURNAL_FILE_PROPERTY = "taskmanager.journal.file";
+    private static final String DEFAULT_JOURNAL_FILE = "taskjournal/tasks.journal";
+    private static final String SHARDED_STORAGE = "sharded";
+    private static final String SHARDS_PROPERTY = "taskmanager.shards";
+    private static final int DEFAULT_SHARDS = 4;
+    private static final String SHARD_DATABASE_NAME = "mydb";
     private final ITasksDAO tasksDAO;
-    private final List<ITaskObserver> observers;
+    private final CopyOnWriteArrayList<ITaskObserver> observers;
+    private volatile ITaskEventDispatcher eventDispatcher;
+    private volatile WriteBehindQueue writeBehindQueue;
+    private volatile TaskSearchIndex searchIndex;
     
     /**
      * Constructor for TaskManager.
-     * Initializes the DAO and observer list.
+     * Initializes the DAO and observer list. Tasks are stored in the Derby database,
+     * unless the {@code taskmanager.storage} system property is set to {@code memory},
+     * which selects an InMemoryTasksDAO, to {@code journal}, which selects a
+     * JournalTasksDAO writing the file named by {@code taskmanager.journal.file},
+     * or to {@code sharded}, which spreads the tasks over the number of Derby
+     * databases given by {@code taskmanager.shards} (4 by default).
      * 
      * @throws TaskManagerException if initialization fails
      */
     public TaskManager() throws TaskManagerException {
-        this.tasksDAO = TasksDAO.getInstance();
-        this.observers = new ArrayList<>();
+        this(createConfiguredDAO());
+    }
+    
+    /**
+     * Constructor for TaskManager using the given DAO, for example an
+     * InMemoryTasksDAO or a CachingTasksDAO wrapping TasksDAO.
+     * 
+     * @param tasksDAO the DAO that stores the tasks
+     */
+    public TaskManager(ITasksDAO tasksDAO) {
+        if (tasksDAO == null) {
+            throw new IllegalArgumentException("Tasks DAO cannot be null");
+        }
+        this.tasksDAO = tasksDAO;
+        //copy-on-write, so notifying iterates a snapshot without locking or copying
+        this.observers = new CopyOnWriteArrayList<>();
+        this.eventDispatcher = new SynchronousTaskEventDispatcher();
+    }
+    
+    /**
+     * Creates the DAO selected by the {@code taskmanager.storage} system property.
+     * 
+     * @return the configured DAO
+     * @throws TaskManagerException if the DAO cannot be created
+     */
+    private static ITasksDAO createConfiguredDAO() throws TaskManagerException {
+        String storage = System.getProperty(STORAGE_PROPERTY);
+        if (IN_MEMORY_STORAGE.equalsIgnoreCase(storage)) {
+            return new InMemoryTasksDAO();
+        }
+        if (JOURNAL_STORAGE.equalsIgnoreCase(storage)) {
+            return new JournalTasksDAO(Paths.get(System.getProperty(JOURNAL_FILE_PROPERTY, DEFAULT_JOURNAL_FILE)), false);
+        }
+        if (SHARDED_STORAGE.equalsIgnoreCase(storage)) {
+            return ShardedTasksDAO.openDerbyShards(SHARD_DATABASE_NAME, Integer.getInteger(SHARDS_PROPERTY, DEFAULT_SHARDS));
+        }
+        return TasksDAO.getInstance();
     }
     
     /**
@@ -44,8 +121,10 @@ public class TaskManager implements ITaskSubject {
         if (observer == null) {
             throw new IllegalArgumentException("Observer cannot be null");
         }
-        if (!observers.contains(observer)) {
-            observers.add(observer);
+        synchronized (observers) {
+            //the dispatcher learns of the observer before any notification can reach it
+            eventDispatcher.observerAdded(observer);
+            observers.addIfAbsent(observer);
         }
     }
     
@@ -56,9 +135,67 @@ public class TaskManager implements ITaskSubject {
      */
     @Override
     public void unregisterObserver(ITaskObserver observer) {
-        if (observer != null) {
-            observers.remove(observer);
+        if (observer == null) {
+            return;
         }
+        synchronized (observers) {
+            if (observers.remove(observer)) {
+                eventDispatcher.observerRemoved(observer);
+            }
+        }
+    }
+    
+    /**
+     * Registers an observer that receives coalesced change sets instead of one call per change.
+     * A set is delivered once it holds the given number of changed tasks, or when its oldest
+     * change is the given delay old. Pass the returned adapter to unregisterObserver and
+     * close it to stop the notifications.
+     * 
+     * @param observer the batch observer to register
+     * @param maxBatchSize the number of changed tasks that delivers a set at once
+     * @param maxDelayMillis the longest time a change waits before its set is delivered
+     * @return the adapter registered as an observer
+     */
+    public CoalescingTaskObserver registerBatchObserver(ITaskBatchObserver observer, int maxBatchSize, long maxDelayMillis) {
+        CoalescingTaskObserver adapter = new CoalescingTaskObserver(observer, maxBatchSize, maxDelayMillis);
+        registerObserver(adapter);
+        return adapter;
+    }
+    
+    /**
+     * Sets how observers are notified. By default every observer is called
+     * synchronously on the thread that changed the tasks; an
+     * AsyncTaskEventDispatcher moves the calls to an executor instead.
+     * 
+     * @param eventDispatcher the dispatcher to use for the next notifications
+     */
+    public void setEventDispatcher(ITaskEventDispatcher eventDispatcher) {
+        if (eventDispatcher == null) {
+            throw new IllegalArgumentException("Event dispatcher cannot be null");
+        }
+        synchronized (observers) {
+            ITaskEventDispatcher previous = this.eventDispatcher;
+            if (previous == eventDispatcher) {
+                return;
+            }
+            for (ITaskObserver observer : observers) {
+                eventDispatcher.observerAdded(observer);
+            }
+            this.eventDispatcher = eventDispatcher;
+            //the previous dispatcher still delivers what it has queued, then forgets the observers
+            for (ITaskObserver observer : observers) {
+                previous.observerRemoved(observer);
+            }
+        }
+    }
+    
+    /**
+     * Gets the dispatcher used to notify observers.
+     * 
+     * @return the event dispatcher
+     */
+    public ITaskEventDispatcher getEventDispatcher() {
+        return eventDispatcher;
     }
     
     /**
@@ -68,8 +205,9 @@ public class TaskManager implements ITaskSubject {
      */
     @Override
     public void notifyTaskAdded(ITask task) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
         for (ITaskObserver observer : observers) {
-            observer.onTaskAdded(task);
+            dispatcher.dispatch(observer, o -> o.onTaskAdded(task));
         }
     }
     
@@ -80,8 +218,9 @@ public class TaskManager implements ITaskSubject {
      */
     @Override
     public void notifyTaskUpdated(ITask task) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
         for (ITaskObserver observer : observers) {
-            observer.onTaskUpdated(task);
+            dispatcher.dispatch(observer, o -> o.onTaskUpdated(task));
         }
     }
     
@@ -92,8 +231,9 @@ public class TaskManager implements ITaskSubject {
      */
     @Override
     public void notifyTaskDeleted(int taskId) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
         for (ITaskObserver observer : observers) {
-            observer.onTaskDeleted(taskId);
+            dispatcher.dispatch(observer, o -> o.onTaskDeleted(taskId));
         }
     }
     
@@ -102,54 +242,379 @@ public class TaskManager implements ITaskSubject {
      */
     @Override
     public void notifyTasksCleared() {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
         for (ITaskObserver observer : observers) {
-            observer.onTasksCleared();
+            dispatcher.dispatch(observer, o -> o.onTasksCleared());
+        }
+    }
+    
+    /**
+     * Notifies all registered observers once about a batch of added tasks.
+     * 
+     * @param tasks the tasks that were added
+     */
+    @Override
+    public void notifyTasksAdded(ITask[] tasks) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
+        for (ITaskObserver observer : observers) {
+            dispatcher.dispatch(observer, o -> o.onTasksAdded(tasks));
+        }
+    }
+    
+    /**
+     * Notifies all registered observers once about a batch of updated tasks.
+     * 
+     * @param tasks the tasks that were updated
+     */
+    @Override
+    public void notifyTasksUpdated(ITask[] tasks) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
+        for (ITaskObserver observer : observers) {
+            dispatcher.dispatch(observer, o -> o.onTasksUpdated(tasks));
+        }
+    }
+    
+    /**
+     * Notifies all registered observers once about a batch of deleted tasks.
+     * 
+     * @param taskIds the IDs of the tasks that were deleted
+     */
+    @Override
+    public void notifyTasksDeleted(int[] taskIds) {
+        ITaskEventDispatcher dispatcher = eventDispatcher;
+        for (ITaskObserver observer : observers) {
+            dispatcher.dispatch(observer, o -> o.onTasksDeleted(taskIds));
+        }
+    }
+    
+    /**
+     * Enables write-behind mode.
+     * Single-task mutations are then queued and applied by a background writer
+     * in group-committed batches, and observers are notified once they are stored.
+     * Reads through this manager still see the queued writes.
+     * 
+     * @param maxBatchSize the maximum number of mutations applied per writer cycle
+     */
+    public synchronized void enableWriteBehind(int maxBatchSize) {
+        if (writeBehindQueue == null) {
+            writeBehindQueue = new WriteBehindQueue(tasksDAO, this, maxBatchSize);
+        }
+    }
+    
+    /**
+     * Disables write-behind mode after applying every queued mutation.
+     * 
+     * @throws TaskManagerException if waiting for the queued mutations is interrupted
+     */
+    public synchronized void disableWriteBehind() throws TaskManagerException {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.close();
+            writeBehindQueue = null;
         }
     }
     
+    /**
+     * Checks whether write-behind mode is enabled.
+     * 
+     * @return true if mutations are queued for the background writer
+     */
+    public boolean isWriteBehindEnabled() {
+        return writeBehindQueue != null;
+    }
+    
+    /**
+     * Waits until every mutation queued so far has been applied (flush barrier).
+     * Does nothing when write-behind mode is disabled.
+     * 
+     * @throws TaskManagerException if waiting is interrupted
+     */
+    public void flush() throws TaskManagerException {
+        flushPendingWrites();
+    }
+    
+    /**
+     * Waits for queued writes before a read or batch that the queue cannot answer itself.
+     * 
+     * @throws TaskManagerException if waiting is interrupted
+     */
+    private void flushPendingWrites() throws TaskManagerException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.flush();
+        }
+    }
+    
+    /**
+     * Allocates a unique ID for a new task, so callers do not have to pick IDs themselves.
+     * 
+     * @return a task ID that was not allocated before
+     * @throws TaskManagerException if a new block of IDs cannot be reserved
+     */
+    public int nextTaskId() throws TaskManagerException {
+        return tasksDAO.nextTaskId();
+    }
+    
     /**
      * Adds a new task to the system and notifies observers.
+     * In write-behind mode the task is queued and this method returns immediately.
      * 
      * @param task the task to add
      * @throws TaskManagerException if adding the task fails
      */
     public void addTask(ITask task) throws TaskManagerException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.submitAdd(task);
+            return;
+        }
         tasksDAO.addTask(task);
         notifyTaskAdded(task);
     }
     
+    /**
+     * Adds a new task and returns a future completed once it is stored.
+     * 
+     * @param task the task to add
+     * @return a future completed when the task is stored, or completed exceptionally if it fails
+     */
+    public CompletableFuture<Void> addTaskAsync(ITask task) {
+        try {
+            WriteBehindQueue queue = writeBehindQueue;
+            if (queue != null) {
+                return queue.submitAdd(task);
+            }
+            addTask(task);
+            return CompletableFuture.completedFuture(null);
+        } catch (TaskManagerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
     /**
      * Updates an existing task in the system and notifies observers.
+     * In write-behind mode the update is queued and this method returns immediately.
      * 
      * @param task the task to update
      * @throws TaskManagerException if updating the task fails
      */
     public void updateTask(ITask task) throws TaskManagerException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.submitUpdate(task);
+            return;
+        }
         tasksDAO.updateTask(task);
         notifyTaskUpdated(task);
     }
     
+    /**
+     * Saves a task whether or not it exists, and notifies observers that it was
+     * added or updated depending on what the save did.
+     * Queued write-behind mutations are applied first so the existence check sees them.
+     * 
+     * @param task the task to save
+     * @return whether the task was inserted or updated
+     * @throws TaskManagerException if saving the task fails
+     */
+    public SaveOutcome saveTask(ITask task) throws TaskManagerException {
+        flushPendingWrites();
+        SaveOutcome outcome = tasksDAO.saveTask(task);
+        if (outcome == SaveOutcome.INSERTED) {
+            notifyTaskAdded(task);
+        } else {
+            notifyTaskUpdated(task);
+        }
+        return outcome;
+    }
+    
+    /**
+     * Updates an existing task only if nobody changed it since it was read, and notifies observers.
+     * Queued write-behind mutations are applied first so the version check sees them.
+     * 
+     * @param task the task to update
+     * @param expectedVersion the version of the task when it was read
+     * @return the new version of the task
+     * @throws StaleTaskVersionException if the task was changed since it was read
+     * @throws TaskManagerException if updating the task fails
+     */
+    public int updateTask(ITask task, int expectedVersion) throws TaskManagerException {
+        flushPendingWrites();
+        int version = tasksDAO.updateTask(task, expectedVersion);
+        notifyTaskUpdated(new Task(task.getId(), task.getTitle(), task.getDescription(), task.getState(), version));
+        return version;
+    }
+    
+    /**
+     * Updates an existing task and returns a future completed once the update is stored.
+     * 
+     * @param task the task to update
+     * @return a future completed when the update is stored, or completed exceptionally if it fails
+     */
+    public CompletableFuture<Void> updateTaskAsync(ITask task) {
+        try {
+            WriteBehindQueue queue = writeBehindQueue;
+            if (queue != null) {
+                return queue.submitUpdate(task);
+            }
+            updateTask(task);
+            return CompletableFuture.completedFuture(null);
+        } catch (TaskManagerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
     /**
      * Deletes a task from the system and notifies observers.
+     * In write-behind mode the deletion is queued and this method returns immediately.
      * 
      * @param taskId the ID of the task to delete
      * @throws TaskManagerException if deleting the task fails
      */
     public void deleteTask(int taskId) throws TaskManagerException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.submitDelete(taskId);
+            return;
+        }
         tasksDAO.deleteTask(taskId);
         notifyTaskDeleted(taskId);
     }
     
+    /**
+     * Deletes a task and returns a future completed once it is deleted.
+     * 
+     * @param taskId the ID of the task to delete
+     * @return a future completed when the task is deleted, or completed exceptionally if it fails
+     */
+    public CompletableFuture<Void> deleteTaskAsync(int taskId) {
+        try {
+            WriteBehindQueue queue = writeBehindQueue;
+            if (queue != null) {
+                return queue.submitDelete(taskId);
+            }
+            deleteTask(taskId);
+            return CompletableFuture.completedFuture(null);
+        } catch (TaskManagerException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
     /**
      * Deletes all tasks from the system and notifies observers.
+     * In write-behind mode the deletion is queued behind earlier mutations.
      * 
      * @throws TaskManagerException if clearing tasks fails
      */
     public void deleteAllTasks() throws TaskManagerException {
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            queue.submitClear();
+            return;
+        }
         tasksDAO.deleteTasks();
         notifyTasksCleared();
     }
     
+    /**
+     * Adds several tasks in one batch and notifies observers once
+     * with the tasks that were actually added.
+     * 
+     * @param tasks the tasks to add
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    public BatchResult addTasks(ITask[] tasks) throws TaskManagerException {
+        flushPendingWrites();
+        BatchResult result = tasksDAO.addTasks(tasks);
+        ITask[] added = succeededTasks(tasks, result);
+        if (added.length > 0) {
+            notifyTasksAdded(added);
+        }
+        return result;
+    }
+    
+    /**
+     * Updates several tasks in one batch and notifies observers once
+     * with the tasks that were actually updated.
+     * 
+     * @param tasks the tasks to update
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    public BatchResult updateTasks(ITask[] tasks) throws TaskManagerException {
+        flushPendingWrites();
+        BatchResult result = tasksDAO.updateTasks(tasks);
+        ITask[] updated = succeededTasks(tasks, result);
+        if (updated.length > 0) {
+            notifyTasksUpdated(updated);
+        }
+        return result;
+    }
+    
+    /**
+     * Saves several tasks in one batch, inserting new ones and updating existing ones,
+     * and notifies observers once with the added tasks and once with the updated tasks.
+     * 
+     * @param tasks the tasks to save
+     * @return the per-row outcome of the batch, including whether each row was inserted or updated
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    public SaveBatchResult saveTasks(ITask[] tasks) throws TaskManagerException {
+        flushPendingWrites();
+        SaveBatchResult result = tasksDAO.saveTasks(tasks);
+        List<ITask> added = new ArrayList<>(result.getInsertedCount());
+        List<ITask> updated = new ArrayList<>(result.getUpdatedCount());
+        for (int i = 0; i < tasks.length; i++) {
+            if (result.getOutcome(i) == SaveOutcome.INSERTED) {
+                added.add(tasks[i]);
+            } else if (result.getOutcome(i) == SaveOutcome.UPDATED) {
+                updated.add(tasks[i]);
+            }
+        }
+        if (!added.isEmpty()) {
+            notifyTasksAdded(added.toArray(new ITask[0]));
+        }
+        if (!updated.isEmpty()) {
+            notifyTasksUpdated(updated.toArray(new ITask[0]));
+        }
+        return result;
+    }
+    
+    /**
+     * Deletes several tasks in one batch and notifies observers once
+     * with the IDs that were actually deleted.
+     * 
+     * @param taskIds the IDs of the tasks to delete
+     * @return the per-row outcome of the batch
+     * @throws TaskManagerException if the batch cannot be executed
+     */
+    public BatchResult deleteTasks(int[] taskIds) throws TaskManagerException {
+        flushPendingWrites();
+        BatchResult result = tasksDAO.deleteTasks(taskIds);
+        int[] deleted = result.getSucceededIds();
+        if (deleted.length > 0) {
+            notifyTasksDeleted(deleted);
+        }
+        return result;
+    }
+    
+    /**
+     * Selects the tasks of a batch whose rows were applied.
+     * 
+     * @param tasks the tasks of the batch in input order
+     * @param result the outcome of the batch
+     * @return the successful tasks in input order
+     */
+    private ITask[] succeededTasks(ITask[] tasks, BatchResult result) {
+        List<ITask> succeeded = new ArrayList<>(result.getSuccessCount());
+        for (int i = 0; i < tasks.length; i++) {
+            if (result.isSucceeded(i)) {
+                succeeded.add(tasks[i]);
+            }
+        }
+        return succeeded.toArray(new ITask[0]);
+    }
+    
     /**
      * Retrieves all tasks from the system.
      * 
@@ -157,9 +622,264 @@ public class TaskManager implements ITaskSubject {
      * @throws TaskManagerException if retrieving tasks fails
      */
     public ITask[] getAllTasks() throws TaskManagerException {
+        flushPendingWrites();
         return tasksDAO.getTasks();
     }
     
+    /**
+     * Retrieves the tasks that match a filter built with TaskFilters and its combinators.
+     * The DAO lets the database evaluate whatever part of the filter it can.
+     * 
+     * @param filter the filter to match
+     * @return the matching tasks
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] findTasks(ITaskFilter filter) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.findTasks(filter);
+    }
+    
+    /**
+     * Retrieves all tasks, optionally including completed tasks the DAO has archived.
+     * 
+     * @param includeArchived true to also return archived tasks
+     * @return an array of all tasks
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getAllTasks(boolean includeArchived) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasks(includeArchived);
+    }
+    
+    /**
+     * Retrieves all tasks, reading only the columns of the given projection.
+     * List views can use SUMMARY so descriptions are only loaded when shown.
+     * 
+     * @param projection the columns to read
+     * @return an array of all tasks
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getAllTasks(TaskProjection projection) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasks(projection);
+    }
+    
+    /**
+     * Retrieves one page of tasks ordered by ID.
+     * Pass -1 for the first page and the ID of the last task of a page to get the next one.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @return up to limit tasks in ascending ID order
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getTasksPage(int afterId, int limit) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasksPage(afterId, limit, null);
+    }
+    
+    /**
+     * Retrieves one page of tasks in the given state, ordered by ID.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @return up to limit tasks in ascending ID order
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasksPage(afterId, limit, state);
+    }
+    
+    /**
+     * Retrieves one page of tasks in the given state, reading only the columns of the given projection.
+     * 
+     * @param afterId the last task ID of the previous page, or -1 for the first page
+     * @param limit the maximum number of tasks to return
+     * @param state the state to filter by, or null for tasks in any state
+     * @param projection the columns to read
+     * @return up to limit tasks in ascending ID order
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getTasksPage(int afterId, int limit, TaskState state, TaskProjection projection)
+            throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasksPage(afterId, limit, state, projection);
+    }
+    
+    /**
+     * Retrieves all tasks in the given state.
+     * 
+     * @param state the state to filter by
+     * @return the tasks in the given state, ordered by ID
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getTasksByState(TaskState state) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasksByState(state);
+    }
+    
+    /**
+     * Retrieves all tasks whose title starts with the given prefix.
+     * 
+     * @param prefix the case-sensitive title prefix
+     * @return the matching tasks, ordered by title
+     * @throws TaskManagerException if retrieving tasks fails
+     */
+    public ITask[] getTasksByTitlePrefix(String prefix) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getTasksByTitlePrefix(prefix);
+    }
+    
+    /**
+     * Reads up to DEFAULT_CHANGE_LIMIT changes after a sequence number, so a
+     * secondary view can catch up without re-reading every task.
+     * 
+     * @param sequence the last change sequence the caller has seen
+     * @return the changes read; if a resync is required the caller must re-read all tasks
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    public TaskChanges getChangesSince(long sequence) throws TaskManagerException {
+        return getChangesSince(sequence, DEFAULT_CHANGE_LIMIT);
+    }
+    
+    /**
+     * Reads the changes after a sequence number.
+     * 
+     * @param sequence the last change sequence the caller has seen
+     * @param limit the maximum number of changes to read
+     * @return the changes read; if a resync is required the caller must re-read all tasks
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    public TaskChanges getChangesSince(long sequence, int limit) throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getChangesSince(sequence, limit);
+    }
+    
+    /**
+     * Gets the sequence of the latest change, the starting point for reading changes
+     * after all tasks were read.
+     * 
+     * @return the latest change sequence
+     * @throws TaskManagerException if the change log cannot be read
+     */
+    public long getLatestChangeSequence() throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.getLatestChangeSequence();
+    }
+    
+    /**
+     * Trims the changes up to a sequence number once every consumer has read them.
+     * 
+     * @param sequence the last change sequence to trim
+     * @throws TaskManagerException if the change log cannot be trimmed
+     */
+    public void trimChanges(long sequence) throws TaskManagerException {
+        tasksDAO.trimChanges(sequence);
+    }
+    
+    /**
+     * Counts all tasks without loading them.
+     * 
+     * @return the total number of tasks
+     * @throws TaskManagerException if counting tasks fails
+     */
+    public int getTaskCount() throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.countTasks();
+    }
+    
+    /**
+     * Counts the tasks in each state without loading them, for example
+     * to show "N to do / M in progress / K completed".
+     * 
+     * @return the number of tasks per state, with an entry (possibly 0) for every state
+     * @throws TaskManagerException if counting tasks fails
+     */
+    public Map<TaskState, Integer> getTaskCountsByState() throws TaskManagerException {
+        flushPendingWrites();
+        return tasksDAO.countTasksByState();
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order without loading them all into memory.
+     * 
+     * @param handler the callback that receives each task; return false to stop early
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    public void forEachTask(ITaskStreamHandler handler) throws TaskManagerException {
+        flushPendingWrites();
+        tasksDAO.forEachTask(DEFAULT_FETCH_SIZE, handler);
+    }
+    
+    /**
+     * Streams all tasks in ascending ID order using the given fetch size.
+     * 
+     * @param fetchSize the number of rows fetched per round trip
+     * @param handler the callback that receives each task; return false to stop early
+     * @throws TaskManagerException if reading tasks or handling a task fails
+     */
+    public void forEachTask(int fetchSize, ITaskStreamHandler handler) throws TaskManagerException {
+        flushPendingWrites();
+        tasksDAO.forEachTask(fetchSize, handler);
+    }
+    
+    /**
+     * Gets the keyword search index, building it from the stored tasks on first use,
+     * archived tasks included, since getTask() still finds them.
+     * The index is registered as an observer, so it follows every later change
+     * made through this manager.
+     * 
+     * @return the search index
+     * @throws TaskManagerException if reading the tasks for the index fails
+     */
+    public synchronized TaskSearchIndex getSearchIndex() throws TaskManagerException {
+        if (searchIndex == null) {
+            TaskSearchIndex index = new TaskSearchIndex();
+            //register first, so changes made while the stored tasks are read are not lost,
+            //and backfill, so tasks deleted while they are read are not indexed again
+            index.beginBackfill();
+            registerObserver(index);
+            try {
+                flushPendingWrites();
+                tasksDAO.forEachTask(DEFAULT_FETCH_SIZE, true, task -> {
+                    index.indexIfAbsent(task);
+                    return true;
+                });
+            } catch (TaskManagerException | RuntimeException e) {
+                unregisterObserver(index);
+                throw e;
+            } finally {
+                index.endBackfill();
+            }
+            searchIndex = index;
+        }
+        return searchIndex;
+    }
+    
+    /**
+     * Searches task titles and descriptions for the words of a query.
+     * Tasks matching more and rarer words come first, and title matches count more
+     * than description matches.
+     * 
+     * @param query the words to search for
+     * @param limit the maximum number of tasks to return
+     * @return the best matching tasks, best match first
+     * @throws TaskManagerException if building the index or reading the tasks fails
+     */
+    public ITask[] searchTasks(String query, int limit) throws TaskManagerException {
+        SearchHit[] hits = getSearchIndex().search(query, limit);
+        List<ITask> tasks = new ArrayList<>(hits.length);
+        for (SearchHit hit : hits) {
+            ITask task = getTask(hit.getTaskId());
+            if (task != null) {
+                tasks.add(task);
+            }
+        }
+        return tasks.toArray(new ITask[0]);
+    }
+    
     /**
      * Retrieves a specific task by ID.
      * 
@@ -168,6 +888,14 @@ public class TaskManager implements ITaskSubject {
      * @throws TaskManagerException if retrieving the task fails
      */
     public ITask getTask(int taskId) throws TaskManagerException {
+        //answer from the write-behind queue when the task has a pending write
+        WriteBehindQueue queue = writeBehindQueue;
+        if (queue != null) {
+            WriteBehindQueue.PendingRead pending = queue.lookup(taskId);
+            if (pending.isKnown()) {
+                return pending.getTask();
+            }
+        }
         return tasksDAO.getTask(taskId);
     }
     
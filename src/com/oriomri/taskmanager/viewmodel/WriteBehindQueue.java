@@ -0,0 +1,524 @@
+package com.oriomri.taskmanager.viewmodel;
+
+import com.oriomri.taskmanager.dao.BatchResult;
+import com.oriomri.taskmanager.dao.ITasksDAO;
+import com.oriomri.taskmanager.exceptions.TaskManagerException;
+import com.oriomri.taskmanager.model.ITask;
+import com.oriomri.taskmanager.observer.ITaskSubject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Ordered queue of task mutations applied to the DAO by a background writer.
+ * Callers return as soon as a mutation is queued. The writer drains up to
+ * maxBatchSize queued mutations at a time and applies each run of consecutive
+ * mutations of the same kind with one batch call, i.e. one transaction and one
+ * commit, then notifies observers through the owning subject.
+ * 
+ * @author Ori and Omri
+ * @version 1.0
+ */
+public class WriteBehindQueue {
+    
+    //private variables declaration
+    private static final int QUEUE_CAPACITY = 10000;
+    private final ITasksDAO tasksDAO;
+    private final ITaskSubject subject;
+    private final int maxBatchSize;
+    private final BlockingQueue<PendingMutation> queue;
+    private final Map<Integer, PendingMutation> pendingById;
+    private final Thread writer;
+    private final List<PendingMutation> drained;
+    private int appliedCount;
+    private boolean running;
+    private int pendingClears;
+    private volatile boolean closed;
+    
+    /**
+     * Kinds of queued mutations.
+     */
+    private enum MutationType {
+        ADD, UPDATE, DELETE, CLEAR, FLUSH, STOP
+    }
+    
+    /**
+     * A queued mutation and the future completed once it is applied.
+     */
+    private static final class PendingMutation {
+        
+        private final MutationType type;
+        private final ITask task;
+        private final int taskId;
+        private final CompletableFuture<Void> future;
+        
+        PendingMutation(MutationType type, ITask task, int taskId) {
+            this.type = type;
+            this.task = task;
+            this.taskId = taskId;
+            this.future = new CompletableFuture<>();
+        }
+    }
+    
+    /**
+     * Result of looking up a task among the queued mutations.
+     */
+    static final class PendingRead {
+        
+        private final boolean known;
+        private final ITask task;
+        
+        private PendingRead(boolean known, ITask task) {
+            this.known = known;
+            this.task = task;
+        }
+        
+        /**
+         * Checks whether the queue determines the task's current value.
+         * 
+         * @return true if the task has a queued mutation
+         */
+        boolean isKnown() {
+            return known;
+        }
+        
+        /**
+         * Gets the task as it will be after the queued mutations are applied.
+         * 
+         * @return the pending task, or null if it is pending deletion
+         */
+        ITask getTask() {
+            return task;
+        }
+    }
+    
+    /**
+     * Constructs and starts a write-behind queue.
+     * 
+     * @param tasksDAO the DAO mutations are applied to
+     * @param subject the subject notified after mutations are applied
+     * @param maxBatchSize the maximum number of mutations applied per writer cycle
+     */
+    public WriteBehindQueue(ITasksDAO tasksDAO, ITaskSubject subject, int maxBatchSize) {
+        if (tasksDAO == null || subject == null) {
+            throw new IllegalArgumentException("DAO and subject cannot be null");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.tasksDAO = tasksDAO;
+        this.subject = subject;
+        this.maxBatchSize = maxBatchSize;
+        this.queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+        this.pendingById = new HashMap<>();
+        this.drained = new ArrayList<>(maxBatchSize);
+        this.writer = new Thread(this::runWriter, "task-write-behind");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+    
+    /**
+     * Queues the addition of a task.
+     * 
+     * @param task the task to add
+     * @return a future completed when the task is stored
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitAdd(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        return submit(new PendingMutation(MutationType.ADD, task, task.getId()));
+    }
+    
+    /**
+     * Queues the update of a task.
+     * 
+     * @param task the task to update
+     * @return a future completed when the update is stored
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitUpdate(ITask task) throws TaskManagerException {
+        if (task == null) {
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        return submit(new PendingMutation(MutationType.UPDATE, task, task.getId()));
+    }
+    
+    /**
+     * Queues the deletion of a task.
+     * 
+     * @param taskId the ID of the task to delete
+     * @return a future completed when the task is deleted
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitDelete(int taskId) throws TaskManagerException {
+        return submit(new PendingMutation(MutationType.DELETE, null, taskId));
+    }
+    
+    /**
+     * Queues the deletion of all tasks.
+     * 
+     * @return a future completed when all tasks are deleted
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    public CompletableFuture<Void> submitClear() throws TaskManagerException {
+        return submit(new PendingMutation(MutationType.CLEAR, null, -1));
+    }
+    
+    /**
+     * Waits until every mutation queued before this call has been applied.
+     * Called from the writer thread, for example by an observer that reads
+     * through the manager while being notified, the queued mutations are
+     * applied right away instead, since waiting for the writer would never return.
+     * 
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    public void flush() throws TaskManagerException {
+        if (Thread.currentThread() == writer) {
+            applyQueued();
+            return;
+        }
+        await(submit(new PendingMutation(MutationType.FLUSH, null, -1)));
+    }
+    
+    /**
+     * Looks up a task among the queued mutations, so reads see writes not yet applied.
+     * 
+     * @param taskId the task ID
+     * @return the pending state of the task
+     */
+    synchronized PendingRead lookup(int taskId) {
+        PendingMutation pending = pendingById.get(taskId);
+        if (pending != null) {
+            return new PendingRead(true, pending.type == MutationType.DELETE ? null : pending.task);
+        }
+        if (pendingClears > 0) {
+            return new PendingRead(true, null);
+        }
+        return new PendingRead(false, null);
+    }
+    
+    /**
+     * Applies all queued mutations and stops the background writer.
+     * Called from the writer thread, for example by an observer that disables
+     * write-behind while being notified, the queued mutations and the STOP marker
+     * are applied right away, and the writer stops once the notification returns.
+     * 
+     * @throws TaskManagerException if the caller is interrupted while waiting
+     */
+    public void close() throws TaskManagerException {
+        PendingMutation stop = new PendingMutation(MutationType.STOP, null, -1);
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            //closed and queued in one step, so no mutation can land behind the STOP marker
+            closed = true;
+            try {
+                enqueue(stop);
+            } catch (InterruptedException e) {
+                closed = false;
+                Thread.currentThread().interrupt();
+                throw new TaskManagerException("Interrupted while closing the write-behind queue", e);
+            }
+        }
+        if (Thread.currentThread() == writer) {
+            applyQueued();
+            return;
+        }
+        await(stop.future);
+    }
+    
+    /**
+     * Moves the queued mutations to the writer's drained list and applies them.
+     * Runs on the writer thread only.
+     */
+    private void applyQueued() {
+        queue.drainTo(drained);
+        queueDrained();
+        applyDrained();
+    }
+    
+    /**
+     * Adds a mutation to the queue, blocking while the queue is full.
+     * The closed check, the read-your-writes view and the queue are updated
+     * in one step, so the view always agrees with the queue order.
+     * 
+     * @param mutation the mutation to queue
+     * @return the future of the mutation
+     * @throws TaskManagerException if the queue is closed or the caller is interrupted
+     */
+    private synchronized CompletableFuture<Void> submit(PendingMutation mutation) throws TaskManagerException {
+        try {
+            enqueue(mutation);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskManagerException("Interrupted while queuing a task mutation", e);
+        }
+        if (mutation.type == MutationType.CLEAR) {
+            pendingById.clear();
+            pendingClears++;
+        } else if (isBatchable(mutation.type)) {
+            pendingById.put(mutation.taskId, mutation);
+        }
+        return mutation.future;
+    }
+    
+    /**
+     * Puts a mutation in the queue, waiting on this object's monitor while the
+     * queue is full; the writer notifies the monitor whenever it drains the queue.
+     * On the writer thread itself, which would wait for itself, the queued mutations
+     * are moved to the writer's drained list instead, ahead of the new one.
+     * Must hold the monitor.
+     * 
+     * @param mutation the mutation to queue
+     * @throws TaskManagerException if the queue is closed before the mutation is queued
+     * @throws InterruptedException if the caller is interrupted while waiting
+     */
+    private void enqueue(PendingMutation mutation) throws TaskManagerException, InterruptedException {
+        while (true) {
+            //checked again after every wait, since close() may run meanwhile
+            if (closed && mutation.type != MutationType.STOP) {
+                throw new TaskManagerException("Write-behind queue is closed");
+            }
+            if (queue.offer(mutation)) {
+                return;
+            }
+            if (Thread.currentThread() == writer) {
+                queue.drainTo(drained);
+            } else {
+                wait();
+            }
+        }
+    }
+    
+    /**
+     * Wakes up the callers waiting for room in the queue.
+     */
+    private synchronized void queueDrained() {
+        notifyAll();
+    }
+    
+    /**
+     * Waits for a mutation future.
+     * 
+     * @param future the future to wait for
+     * @throws TaskManagerException if the caller is interrupted
+     */
+    private void await(CompletableFuture<Void> future) throws TaskManagerException {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TaskManagerException("Interrupted while waiting for queued task mutations", e);
+        } catch (ExecutionException e) {
+            //failures of individual mutations are reported through their own futures
+        }
+    }
+    
+    /**
+     * Removes a mutation from the read-your-writes view once it is applied or dropped.
+     * 
+     * @param mutation the mutation to forget
+     */
+    private synchronized void forget(PendingMutation mutation) {
+        if (mutation.type == MutationType.CLEAR) {
+            pendingClears--;
+        } else if (pendingById.get(mutation.taskId) == mutation) {
+            pendingById.remove(mutation.taskId);
+        }
+    }
+    
+    /**
+     * Main loop of the background writer.
+     */
+    private void runWriter() {
+        running = true;
+        
+        while (running) {
+            try {
+                drained.add(queue.take());
+            } catch (InterruptedException e) {
+                //the writer only stops through a STOP mutation
+                continue;
+            }
+            queue.drainTo(drained, maxBatchSize - 1);
+            queueDrained();
+            applyDrained();
+            drained.clear();
+            appliedCount = 0;
+        }
+        
+        //nothing can be queued behind the STOP marker, but never leave a future pending
+        PendingMutation late;
+        while ((late = queue.poll()) != null) {
+            complete(late, new TaskManagerException("Write-behind queue is closed"));
+        }
+    }
+    
+    /**
+     * Applies the drained mutations not applied yet, as runs of consecutive
+     * mutations of the same kind. Runs on the writer thread only; an observer
+     * notified here may flush, which drains more mutations and applies them
+     * through a nested call, so the position is kept in a field.
+     */
+    private void applyDrained() {
+        while (appliedCount < drained.size()) {
+            int start = appliedCount;
+            MutationType type = drained.get(start).type;
+            int end = start + 1;
+            while (end < drained.size() && drained.get(end).type == type && isBatchable(type)) {
+                end++;
+            }
+            //copied, since a nested flush appends to the drained list
+            List<PendingMutation> run = new ArrayList<>(drained.subList(start, end));
+            appliedCount = end;
+            if (type == MutationType.STOP) {
+                running = false;
+            }
+            apply(type, run);
+        }
+    }
+    
+    /**
+     * Checks whether mutations of the given kind can be applied together.
+     * 
+     * @param type the mutation kind
+     * @return true for adds, updates and deletes
+     */
+    private boolean isBatchable(MutationType type) {
+        return type == MutationType.ADD || type == MutationType.UPDATE || type == MutationType.DELETE;
+    }
+    
+    /**
+     * Applies one run of mutations of the same kind and completes their futures.
+     * 
+     * @param type the kind of the mutations
+     * @param run the mutations in queue order
+     */
+    private void apply(MutationType type, List<PendingMutation> run) {
+        try {
+            switch (type) {
+                case ADD:
+                    applyTaskBatch(run, tasksDAO.addTasks(tasksOf(run)), true);
+                    break;
+                case UPDATE:
+                    applyTaskBatch(run, tasksDAO.updateTasks(tasksOf(run)), false);
+                    break;
+                case DELETE:
+                    applyDeleteBatch(run, tasksDAO.deleteTasks(idsOf(run)));
+                    break;
+                case CLEAR:
+                    tasksDAO.deleteTasks();
+                    complete(run.get(0), null);
+                    subject.notifyTasksCleared();
+                    break;
+                default:
+                    //FLUSH and STOP only mark a position in the queue
+                    complete(run.get(0), null);
+                    break;
+            }
+        } catch (TaskManagerException | RuntimeException e) {
+            for (PendingMutation mutation : run) {
+                complete(mutation, e);
+            }
+        }
+    }
+    
+    /**
+     * Completes the futures of an add or update run and notifies observers of the applied tasks.
+     * 
+     * @param run the mutations of the run
+     * @param result the outcome of the batch
+     * @param added true for adds, false for updates
+     */
+    private void applyTaskBatch(List<PendingMutation> run, BatchResult result, boolean added) {
+        List<ITask> applied = new ArrayList<>(run.size());
+        for (int i = 0; i < run.size(); i++) {
+            PendingMutation mutation = run.get(i);
+            if (result.isSucceeded(i)) {
+                applied.add(mutation.task);
+                complete(mutation, null);
+            } else {
+                complete(mutation, new TaskManagerException("Failed to " + (added ? "add" : "update") +
+                        " task with ID " + mutation.taskId));
+            }
+        }
+        if (!applied.isEmpty()) {
+            ITask[] tasks = applied.toArray(new ITask[0]);
+            if (added) {
+                subject.notifyTasksAdded(tasks);
+            } else {
+                subject.notifyTasksUpdated(tasks);
+            }
+        }
+    }
+    
+    /**
+     * Completes the futures of a delete run and notifies observers of the deleted IDs.
+     * 
+     * @param run the mutations of the run
+     * @param result the outcome of the batch
+     */
+    private void applyDeleteBatch(List<PendingMutation> run, BatchResult result) {
+        for (int i = 0; i < run.size(); i++) {
+            PendingMutation mutation = run.get(i);
+            complete(mutation, result.isSucceeded(i) ? null
+                    : new TaskManagerException("Task with ID " + mutation.taskId + " not found for deletion"));
+        }
+        int[] deleted = result.getSucceededIds();
+        if (deleted.length > 0) {
+            subject.notifyTasksDeleted(deleted);
+        }
+    }
+    
+    /**
+     * Completes a mutation and removes it from the read-your-writes view.
+     * 
+     * @param mutation the mutation
+     * @param failure the failure, or null if the mutation was applied
+     */
+    private void complete(PendingMutation mutation, Throwable failure) {
+        forget(mutation);
+        if (failure == null) {
+            mutation.future.complete(null);
+        } else {
+            mutation.future.completeExceptionally(failure);
+        }
+    }
+    
+    /**
+     * Collects the tasks of a run.
+     * 
+     * @param run the mutations
+     * @return the tasks in queue order
+     */
+    private ITask[] tasksOf(List<PendingMutation> run) {
+        ITask[] tasks = new ITask[run.size()];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = run.get(i).task;
+        }
+        return tasks;
+    }
+    
+    /**
+     * Collects the task IDs of a run.
+     * 
+     * @param run the mutations
+     * @return the task IDs in queue order
+     */
+    private int[] idsOf(List<PendingMutation> run) {
+        int[] ids = new int[run.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = run.get(i).taskId;
+        }
+        return ids;
+    }
+}